@@ -0,0 +1,72 @@
+package ca.hjalmionlabs.bench;
+
+import java.util.concurrent.ForkJoinPool;
+
+import ca.hjalmionlabs.world.gen.CaveGenerator;
+
+/**
+ * Times {@link CaveGenerator} on a 4096x4096 map with 1, 2, 4, ... threads (up to the number of cores), and 
+ * checks that every thread count carves exactly the same caves. <br>
+ * Usage: <code>java ca.hjalmionlabs.bench.CaveBenchmark [size] [passes] [max threads]</code>
+ * @author Nick Mills
+ */
+public class CaveBenchmark
+{
+	private static final long SEED = 1234L;
+	private static final int WARMUP_RUNS = 2;
+	private static final int TIMED_RUNS = 5;
+	
+	public static void main(String[] args)
+	{
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+		int passes = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+		int cores = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		byte[] out = new byte[size * size];
+		
+		System.out.println("Cave generation, " + size + "x" + size + ", " + passes + " passes, " + cores + " cores");
+		System.out.println("threads\tbest ms\tavg ms\tspeedup\tchecksum");
+		
+		double baseline = 0;
+		long expected = 0;
+		for(int threads = 1; threads <= cores; threads = threads < cores && threads * 2 > cores ? cores : threads * 2)
+		{
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			CaveGenerator caves = new CaveGenerator(SEED, 0.45, passes, pool);
+			
+			for(int i = 0; i < WARMUP_RUNS; i++)
+				caves.generate(0, 0, size, size, size, size, out);
+			
+			long best = Long.MAX_VALUE;
+			long total = 0;
+			for(int i = 0; i < TIMED_RUNS; i++)
+			{
+				long start = System.nanoTime();
+				caves.generate(0, 0, size, size, size, size, out);
+				long time = System.nanoTime() - start;
+				best = Math.min(best, time);
+				total += time;
+			}
+			pool.shutdown();
+			
+			long checksum = checksum(out);
+			if(threads == 1)
+			{
+				baseline = best;
+				expected = checksum;
+			}
+			System.out.printf("%d\t%.1f\t%.1f\t%.2fx\t%016x%s%n", threads, best / 1e6, total / 1e6 / TIMED_RUNS, 
+					baseline / best, checksum, checksum == expected ? "" : "  MISMATCH");
+			
+			if(threads == cores)
+				break;
+		}
+	}
+	
+	private static long checksum(byte[] cells)
+	{
+		long hash = 1125899906842597L;
+		for(byte cell : cells)
+			hash = 31 * hash + cell;
+		return hash;
+	}
+}
@@ -0,0 +1,107 @@
+package ca.hjalmionlabs.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.ChunkCodec;
+import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.UnderWorld;
+import ca.hjalmionlabs.world.World;
+
+/**
+ * Measures how small {@link ChunkCodec} makes the Chunks of a generated {@link OverWorld} and {@link UnderWorld}
+ * (plus uniform and random Chunks as the best and worst case), and how fast it encodes and decodes them. Every
+ * Chunk is decoded again and checked against the original. <br>
+ * Usage: <code>java ca.hjalmionlabs.bench.ChunkCodecBenchmark [rounds]</code>
+ * @author Nick Mills
+ */
+public class ChunkCodecBenchmark
+{
+	private static final long SEED = 1234L;
+	private static final int WARMUP_ROUNDS = 20;
+
+	public static void main(String[] args)
+	{
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+
+		System.out.println("Chunk encoding, " + Chunk.SIZE + "x" + Chunk.SIZE + " Tiles, " + rounds + " rounds");
+		System.out.println("chunks\traw KB\tpacked KB\tratio\tavg B\tmin B\tmax B\tenc MB/s\tdec MB/s\tset");
+
+		run("OverWorld", generate(new OverWorld("Overworld", SEED)), rounds);
+		run("UnderWorld", generate(new UnderWorld("Underworld", SEED)), rounds);
+
+		byte[][] uniform = new byte[64][Chunk.SIZE * Chunk.SIZE];
+		for(byte[] tiles : uniform)
+			Arrays.fill(tiles, (byte)3);
+		run("uniform", uniform, rounds);
+
+		Random random = new Random(SEED);
+		byte[][] noise = new byte[64][Chunk.SIZE * Chunk.SIZE];
+		for(byte[] tiles : noise)
+			for(int i = 0; i < tiles.length; i++)
+				tiles[i] = (byte)random.nextInt(6);
+		run("random", noise, rounds);
+	}
+
+	/* Generates every Chunk of the World */
+	private static byte[][] generate(World world)
+	{
+		int chunksX = (world.getWidth() + Chunk.SIZE - 1) / Chunk.SIZE;
+		int chunksY = (world.getHeight() + Chunk.SIZE - 1) / Chunk.SIZE;
+		byte[][] chunks = new byte[chunksX * chunksY][];
+		for(int cy = 0; cy < chunksY; cy++)
+		{
+			for(int cx = 0; cx < chunksX; cx++)
+			{
+				Chunk chunk = new Chunk(cx, cy);
+				world.generateChunk(chunk);
+				chunks[cy * chunksX + cx] = chunk.getTiles();
+			}
+		}
+		return chunks;
+	}
+
+	private static void run(String name, byte[][] chunks, int rounds)
+	{
+		byte[][] encoded = new byte[chunks.length][];
+		byte[] decoded = new byte[Chunk.SIZE * Chunk.SIZE];
+
+		for(int r = 0; r < WARMUP_ROUNDS; r++)
+			for(int i = 0; i < chunks.length; i++)
+				ChunkCodec.decode(encoded[i] = ChunkCodec.encode(chunks[i]), decoded);
+
+		long start = System.nanoTime();
+		for(int r = 0; r < rounds; r++)
+			for(int i = 0; i < chunks.length; i++)
+				encoded[i] = ChunkCodec.encode(chunks[i]);
+		long encodeTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for(int r = 0; r < rounds; r++)
+			for(int i = 0; i < chunks.length; i++)
+				ChunkCodec.decode(encoded[i], decoded);
+		long decodeTime = System.nanoTime() - start;
+
+		long raw = 0;
+		long packed = 0;
+		int min = Integer.MAX_VALUE;
+		int max = 0;
+		int broken = 0;
+		for(int i = 0; i < chunks.length; i++)
+		{
+			raw += chunks[i].length;
+			packed += encoded[i].length;
+			min = Math.min(min, encoded[i].length);
+			max = Math.max(max, encoded[i].length);
+			ChunkCodec.decode(encoded[i], decoded);
+			if(!Arrays.equals(chunks[i], decoded))
+				broken++;
+		}
+
+		double megabytes = (double)raw * rounds / (1024 * 1024);
+		System.out.printf("%d\t%.1f\t%.2f\t\t%.1fx\t%d\t%d\t%d\t%.0f\t\t%.0f\t\t%s%s%n", chunks.length, raw / 1024.0, packed / 1024.0,
+				(double)raw / packed, packed / chunks.length, min, max, megabytes / (encodeTime / 1e9), megabytes / (decodeTime / 1e9),
+				name, broken == 0 ? "" : "  " + broken + " MISMATCHED");
+	}
+}
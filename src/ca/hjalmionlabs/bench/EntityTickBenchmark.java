@@ -0,0 +1,76 @@
+package ca.hjalmionlabs.bench;
+
+import java.util.concurrent.ForkJoinPool;
+
+import ca.hjalmionlabs.entities.EntityStore;
+import ca.hjalmionlabs.entities.Player;
+import ca.hjalmionlabs.handlers.EntityHandler;
+import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.tiles.Tile;
+
+/**
+ * Measures how long {@link EntityHandler#tick()} takes for an {@link OverWorld} full of Zombies walking towards the
+ * Player, ticked on the game thread and then on pools with more and more threads. Every run starts from the same
+ * Zombies, and has to end with exactly the same positions and velocities as the run on the game thread. <br>
+ * Usage: <code>java ca.hjalmionlabs.bench.EntityTickBenchmark [zombies] [ticks] [max threads]</code>
+ * @author Nick Mills
+ */
+public class EntityTickBenchmark
+{
+	private static final long SEED = 1234L;
+	private static final int WARMUP_TICKS = 20;
+
+	public static void main(String[] args)
+	{
+		int zombies = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		int ticks = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+		int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(2, Runtime.getRuntime().availableProcessors());
+
+		System.out.println("Entity ticks, " + zombies + " Zombies, " + ticks + " ticks, " + Runtime.getRuntime().availableProcessors() + " cores");
+		System.out.println("threads\tms/tick\tspeedup\tstate");
+
+		long expected = 0;
+		double serialTime = 0;
+		for(int threads = 0; threads <= maxThreads; threads = threads == 0 ? 2 : threads * 2)
+		{
+			ForkJoinPool pool = threads == 0 ? null : new ForkJoinPool(threads);
+			OverWorld world = new OverWorld("Overworld", SEED);
+			new Player("Player", world, world.getWidth() * Tile.TILEWIDTH / 2, world.getHeight() * Tile.TILEHEIGHT / 2, 5);
+			world.populateWorld(zombies);
+			EntityStore store = world.getEntityHandler().getStore();
+			world.getEntityHandler().setPool(pool);
+
+			for(int t = 0; t < WARMUP_TICKS; t++)
+				world.tickAllHandlers();
+			long start = System.nanoTime();
+			for(int t = 0; t < ticks; t++)
+				world.tickAllHandlers();
+			double time = (System.nanoTime() - start) / 1e6 / ticks;
+
+			long state = checksum(store);
+			if(threads == 0)
+			{
+				expected = state;
+				serialTime = time;
+			}
+			System.out.printf("%s\t%.2f\t%.2fx\t%s%n", threads == 0 ? "serial" : String.valueOf(threads), time, serialTime / time,
+					state == expected ? "same" : "DIFFERENT");
+			if(pool != null)
+				pool.shutdown();
+		}
+	}
+
+	/* Mixes the position and velocity of every Entity, in index order */
+	private static long checksum(EntityStore store)
+	{
+		long hash = 1;
+		for(int i = 0; i < store.size(); i++)
+		{
+			hash = hash * 31 + store.getX(i);
+			hash = hash * 31 + store.getY(i);
+			hash = hash * 31 + store.getVelocityX(i);
+			hash = hash * 31 + store.getVelocityY(i);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,103 @@
+package ca.hjalmionlabs.bench;
+
+import java.util.Random;
+
+import ca.hjalmionlabs.world.SpatialHash;
+import ca.hjalmionlabs.world.tiles.Tile;
+
+/**
+ * Compares finding every overlapping pair of Zombie-sized boxes with a {@link SpatialHash} against checking every box
+ * against every other box, for more and more boxes. The boxes are spread over a World-sized area (as densely as the
+ * number of boxes needs) and all move a little between rounds, like Zombies walking around. Both ways have to find the
+ * same number of pairs. <br>
+ * Usage: <code>java ca.hjalmionlabs.bench.SpatialHashBenchmark [rounds]</code>
+ * @author Nick Mills
+ */
+public class SpatialHashBenchmark
+{
+	private static final long SEED = 1234L;
+	private static final int SIZE = 25;
+	/* Stop timing the brute force way once it gets this slow, in ms per round */
+	private static final double BRUTE_FORCE_LIMIT = 500;
+
+	private static int pairs;
+
+	public static void main(String[] args)
+	{
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+
+		System.out.println("Broad phase, " + SIZE + "x" + SIZE + " boxes, " + rounds + " rounds");
+		System.out.println("boxes\tpairs\tgrid ms\tbrute ms\tspeedup");
+
+		boolean bruteForce = true;
+		for(int count = 250; count <= 64000; count *= 2)
+		{
+			Random random = new Random(SEED);
+			int side = (int)Math.sqrt(count) * Tile.TILEWIDTH;	// About one box per Tile
+			int[] xs = new int[count];
+			int[] ys = new int[count];
+			for(int i = 0; i < count; i++)
+			{
+				xs[i] = random.nextInt(side);
+				ys[i] = random.nextInt(side);
+			}
+
+			SpatialHash grid = new SpatialHash(Tile.TILEWIDTH, Tile.TILEHEIGHT);
+			SpatialHash.PairVisitor counter = new SpatialHash.PairVisitor()
+			{
+				@Override
+				public void visit(int first, int second)
+				{
+					pairs++;
+				}
+			};
+
+			long gridTime = 0;
+			long bruteTime = 0;
+			int gridPairs = 0;
+			int brutePairs = 0;
+			for(int r = 0; r < rounds + 5; r++)	// The first 5 rounds are warmup
+			{
+				for(int i = 0; i < count; i++)
+				{
+					xs[i] += random.nextInt(7) - 3;
+					ys[i] += random.nextInt(7) - 3;
+				}
+
+				long start = System.nanoTime();
+				for(int i = 0; i < count; i++)
+					grid.update(i, xs[i], ys[i], SIZE, SIZE);
+				pairs = 0;
+				grid.queryPairs(counter);
+				if(r >= 5)
+					gridTime += System.nanoTime() - start;
+				gridPairs = pairs;
+
+				if(bruteForce)
+				{
+					start = System.nanoTime();
+					brutePairs = 0;
+					for(int a = 0; a < count; a++)
+						for(int b = a + 1; b < count; b++)
+							if(xs[a] < xs[b] + SIZE && xs[b] < xs[a] + SIZE && ys[a] < ys[b] + SIZE && ys[b] < ys[a] + SIZE)
+								brutePairs++;
+					if(r >= 5)
+						bruteTime += System.nanoTime() - start;
+					if(gridPairs != brutePairs)
+						System.out.println("MISMATCH in round " + r + ": grid found " + gridPairs + " pairs, brute force found " + brutePairs);
+				}
+			}
+
+			double gridMs = gridTime / 1e6 / rounds;
+			if(bruteForce)
+			{
+				double bruteMs = bruteTime / 1e6 / rounds;
+				System.out.printf("%d\t%d\t%.3f\t%.3f\t\t%.1fx%n", count, gridPairs, gridMs, bruteMs, bruteMs / gridMs);
+				bruteForce = bruteMs < BRUTE_FORCE_LIMIT;
+			} else
+			{
+				System.out.printf("%d\t%d\t%.3f\t-\t\t-%n", count, gridPairs, gridMs);
+			}
+		}
+	}
+}
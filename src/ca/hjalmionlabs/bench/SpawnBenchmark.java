@@ -0,0 +1,107 @@
+package ca.hjalmionlabs.bench;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+import ca.hjalmionlabs.entities.Entity;
+import ca.hjalmionlabs.entities.EntityType;
+import ca.hjalmionlabs.entities.Player;
+import ca.hjalmionlabs.entities.Zombie;
+import ca.hjalmionlabs.handlers.EntityHandler;
+import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.tiles.Tile;
+
+/**
+ * Counts how many bytes the game thread allocates to spawn and despawn Zombies over and over, with a new Zombie every
+ * time, with {@link EntityHandler#spawn} and {@link EntityHandler#despawn} (which reuse the despawned Zombies), and
+ * with spawn and despawn while the World is being ticked. Each cycle despawns a batch of Zombies and spawns the same
+ * number again, so the World always has the same number of them. Once warmed up, the pooled cycles should allocate
+ * nothing. <br>
+ * Needs a JVM that can measure the allocations of a thread (com.sun.management.ThreadMXBean). <br>
+ * Usage: <code>java ca.hjalmionlabs.bench.SpawnBenchmark [zombies] [batch] [cycles]</code>
+ * @author Nick Mills
+ */
+public class SpawnBenchmark
+{
+	private static final long SEED = 1234L;
+	private static final int WARMUP_CYCLES = 200;
+
+	private static com.sun.management.ThreadMXBean threads;
+
+	public static void main(String[] args)
+	{
+		int zombies = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+		int batch = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+		int cycles = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+
+		try
+		{
+			threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+			threads.setThreadAllocatedMemoryEnabled(true);
+		} catch(ClassCastException | UnsupportedOperationException e)
+		{
+			System.out.println("This JVM can't measure how much a thread allocates");
+			e.printStackTrace();
+			return;
+		}
+
+		System.out.println("Spawn and despawn, " + zombies + " Zombies, " + batch + " per cycle, " + cycles + " cycles");
+		System.out.println("way\t\tbytes/cycle\tms/cycle");
+		for(int way = 0; way < 3; way++)
+		{
+			OverWorld world = new OverWorld("Overworld", SEED);
+			new Player("Player", world, world.getWidth() * Tile.TILEWIDTH / 2, world.getHeight() * Tile.TILEHEIGHT / 2, 5);
+			EntityHandler handler = world.getEntityHandler();
+			handler.setPool(null);	// Forking tasks allocates, and isn't what is being measured
+
+			/* Every position is picked before anything is measured */
+			Random random = new Random(SEED);
+			int[] xs = new int[batch * 16];
+			int[] ys = new int[batch * 16];
+			for(int i = 0; i < xs.length; i++)
+			{
+				xs[i] = random.nextInt(world.getWidth() * Tile.TILEWIDTH);
+				ys[i] = random.nextInt(world.getHeight() * Tile.TILEHEIGHT);
+			}
+			Entity[] alive = new Entity[zombies];
+			for(int i = 0; i < zombies; i++)
+				alive[i] = handler.spawn(EntityType.ZOMBIE, xs[i % xs.length], ys[i % xs.length]);
+
+			int next = 0;
+			long bytes = 0;
+			long time = 0;
+			for(int c = 0; c < WARMUP_CYCLES + cycles; c++)
+			{
+				long startBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+				long start = System.nanoTime();
+				for(int i = 0; i < batch; i++)
+				{
+					int victim = next;
+					next = (next + 1) % zombies;
+					int position = (c * batch + i) % xs.length;
+					if(way == 0)
+					{
+						alive[victim].remove();
+						alive[victim] = new Zombie("Zombie", world, xs[position], ys[position]);
+					} else
+					{
+						handler.despawn(alive[victim]);
+						alive[victim] = handler.spawn(EntityType.ZOMBIE, xs[position], ys[position]);
+					}
+				}
+				if(way == 2)
+					world.tickAllHandlers();
+				long end = System.nanoTime();
+				long endBytes = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+				if(c >= WARMUP_CYCLES)
+				{
+					bytes += endBytes - startBytes;
+					time += end - start;
+				}
+			}
+
+			String name = way == 0 ? "new\t" : way == 1 ? "pooled\t" : "pooled+tick";
+			System.out.printf("%s\t%d\t\t%.3f%n", name, bytes / cycles, time / 1e6 / cycles);
+		}
+	}
+}
@@ -1,47 +1,51 @@
 package ca.hjalmionlabs.entities;
 
-import java.awt.Dimension;
-
 import ca.hjalmionlabs.world.World;
 import ca.hjalmionlabs.world.tiles.Tile;
 
 /**
  * Abstract class that represents an Entity in the game. Contains basic information 
- * that can be accessed by any instantiated Entities.
+ * that can be accessed by any instantiated Entities. <br><br>
+ * The position, velocity and size of an Entity are kept in its {@link World}'s {@link EntityStore}, and this 
+ * object only views them through the Entity's handle. An Entity is added to its World's EntityStore as soon as it is created
  * @author Nick Mills
  */
 public abstract class Entity {
 
 	protected String name;
-	protected int x;
-	protected int y;
 	protected int oX;
 	protected int oY;
 	protected int tileX;
 	protected int tileY;
 	protected int speed;
-	protected int width;
-	protected int height;
 	protected World world;
 	protected java.awt.Color color;
 	
+	/* What kind of Entity this is */
+	protected final EntityType type;
+	/* Where this Entity's state is kept, and its handle in there */
+	protected EntityStore store;
+	protected int handle;
+	
 	/**
-	 * Creates a new Entity.
+	 * Creates a new Entity, with the size of its {@link EntityType}, and adds it to the supplied {@link World}
 	 * @param name - The name of the Entity
 	 * @param world - The {@link World} that this Entity lives in
+	 * @param type - What kind of Entity this is
 	 * @param x - X coord to spawn this Entity at
 	 * @param y - Y coord to spawn this Entity at
 	 */
-	public Entity(String name, World world, int x, int y)
+	public Entity(String name, World world, EntityType type, int x, int y)
 	{
 		this.name = name;
 		this.world = world;
-		this.x = x;
-		this.y = y;
-		this.oX = this.x;
-		this.oY = this.y;
+		this.type = type;
+		this.oX = x;
+		this.oY = y;
 		this.tileX = x * Tile.TILEWIDTH;
 		this.tileY = y * Tile.TILEHEIGHT;
+		this.store = world.getEntityHandler().getStore();
+		this.handle = store.add(this, type, x, y, type.getWidth(), type.getHeight());
 	}
 	
 	/**
@@ -50,10 +54,28 @@ public abstract class Entity {
 	public abstract void tick();
 	
 	/**
-	 * Draw the Entity to the current {@link Display} using the provided {@link Graphics} object
+	 * Called on the game thread when this Entity wakes up after sleeping (see {@link EntityStore#SLEEPING}), just before 
+	 * its next {@link Entity#tick()}, so it can make up for the ticks it missed in one go. Does nothing unless the child 
+	 * Entity class overrides it, so a sleeping Entity just stays the way it was
+	 * @param ticks - How many ticks this Entity slept for
+	 */
+	public void catchUp(int ticks)
+	{
+		
+	}
+	
+	/**
+	 * Draw the Entity to the current {@link Display} using the provided {@link Graphics} object. Entities draw themselves 
+	 * in world coordinates; the {@link World}'s {@link ca.hjalmionlabs.world.Camera} is already applied to <i>g</i>. 
+	 * Called on the render thread with the position from a {@link ca.hjalmionlabs.rendering.FrameSnapshot FrameSnapshot}, while the game 
+	 * thread keeps ticking, so it must only read things about this Entity that never change (like its color)
 	 * @param g - {@link Graphics} object to draw this Entity with
+	 * @param x - x-coord to draw this Entity at
+	 * @param y - y-coord to draw this Entity at
+	 * @param width - Width to draw this Entity with
+	 * @param height - Height to draw this Entity with
 	 */
-	public abstract void render(java.awt.Graphics g);
+	public abstract void render(java.awt.Graphics g, int x, int y, int width, int height);
 	
 	/**
 	 * Gets the name of this Entity
@@ -64,12 +86,32 @@ public abstract class Entity {
 		return name;
 	}
 	
-	public void detectCollision(Entity ent1, Entity ent2)
+	/**
+	 * Checks whether or not this Entity's bounds overlap the bounds of the supplied Entity. Entities that only touch 
+	 * edges don't collide
+	 * @param other - The Entity to check against
+	 * @return true if the two Entities overlap, false otherwise
+	 */
+	public boolean detectCollision(Entity other)
+	{
+		int index = index();
+		int otherIndex = other.index();
+		int x = store.getX(index);
+		int y = store.getY(index);
+		int otherX = other.store.getX(otherIndex);
+		int otherY = other.store.getY(otherIndex);
+		return x < otherX + other.store.getWidth(otherIndex) && otherX < x + store.getWidth(index)
+				&& y < otherY + other.store.getHeight(otherIndex) && otherY < y + store.getHeight(index);
+	}
+	
+	/**
+	 * Called by the {@link ca.hjalmionlabs.handlers.EntityHandler EntityHandler} once per tick for every Entity that this 
+	 * Entity overlaps, after every Entity has moved. Does nothing unless the child Entity class overrides it
+	 * @param other - The Entity that this Entity collided with
+	 */
+	public void onCollision(Entity other)
 	{
-		Dimension center1 = new Dimension(ent1.getX() + (ent1.getWidth() / 2), ent1.getY() + (ent1.getHeight() / 2));
-		Dimension center2 = new Dimension(ent2.getX() + (ent2.getWidth() / 2), ent2.getY() + (ent2.getHeight() / 2));
 		
-//		center1.
 	}
 	
 	public int center()
@@ -84,14 +126,134 @@ public abstract class Entity {
 		tileY = tile.getTileY();
 	}
 	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Moves this Entity into a different {@link World}, taking it out of the old World's {@link EntityStore}. 
+	 * Its coordinates, velocity and size are kept as they are
+	 * @param world - The World that this Entity now lives in
+	 */
+	public void setWorld(World world)
+	{
+		if(world == this.world)
+			return;
+		int index = index();
+		int x = store.getX(index);
+		int y = store.getY(index);
+		int velocityX = store.getVelocityX(index);
+		int velocityY = store.getVelocityY(index);
+		int width = store.getWidth(index);
+		int height = store.getHeight(index);
+		store.remove(handle);
+		
+		this.world = world;
+		store = world.getEntityHandler().getStore();
+		handle = store.add(this, type, x, y, width, height);
+		store.setVelocity(store.indexOf(handle), velocityX, velocityY);
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link World} that this Entity lives in
+	 * @return this Entity's World
+	 */
+	public World getWorld()
+	{
+		return world;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets what kind of Entity this is
+	 * @return this Entity's EntityType
+	 */
+	public EntityType getType()
+	{
+		return type;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets this Entity's handle in its World's {@link EntityStore}
+	 * @return the handle of this Entity
+	 */
+	public int getHandle()
+	{
+		return handle;
+	}
+	
+	/**
+	 * Whether or not this Entity is in its {@link World}. An Entity that was removed isn't, until it is spawned again
+	 * @return true if this Entity is in its World's {@link EntityStore}, false otherwise
+	 */
+	public boolean isAlive()
+	{
+		return store.isValid(handle);
+	}
+	
+	/**
+	 * Takes this Entity out of its {@link World}'s {@link EntityStore}. The Entity object can be put back with 
+	 * {@link Entity#respawn(int, int)}, which is what {@link ca.hjalmionlabs.handlers.EntityHandler#despawn(Entity) EntityHandler.despawn(Entity)} 
+	 * does to reuse it
+	 */
+	public void remove()
+	{
+		store.remove(handle);
+		handle = EntityStore.NONE;
+	}
+	
+	/**
+	 * Puts this Entity back into its {@link World} at the specified position after it was removed, as if it had just been 
+	 * created there (with the size of its {@link EntityType} and no velocity)
+	 * @param x - X coord to spawn this Entity at
+	 * @param y - Y coord to spawn this Entity at
+	 */
+	public void respawn(int x, int y)
+	{
+		oX = x;
+		oY = y;
+		handle = store.add(this, type, x, y, type.getWidth(), type.getHeight());
+		reset();
+	}
+	
+	/**
+	 * Called by {@link Entity#respawn(int, int)} so the child Entity class can clear anything that it remembers from 
+	 * before it was removed. Does nothing unless it is overridden
+	 */
+	protected void reset()
+	{
+		
+	}
+	
 	public int getWidth()
 	{
-		return width;
+		return store.getWidth(index());
 	}
 	
 	public int getHeight()
 	{
-		return height;
+		return store.getHeight(index());
+	}
+	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Changes the size of this Entity
+	 * @param width - The new width, in pixels
+	 * @param height - The new height, in pixels
+	 */
+	public void setSize(int width, int height)
+	{
+		store.setSize(index(), width, height);
+	}
+	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets how far this Entity moves on its own every tick
+	 * @param velocityX - Distance to move along the x-axis, in pixels per tick
+	 * @param velocityY - Distance to move along the y-axis, in pixels per tick
+	 */
+	public void setVelocity(int velocityX, int velocityY)
+	{
+		store.setVelocity(index(), velocityX, velocityY);
 	}
 	
 	/**
@@ -101,7 +263,7 @@ public abstract class Entity {
 	 */
 	public void setX(int x)
 	{
-		this.x = x;
+		store.setX(index(), x);
 	}
 	
 	/**
@@ -111,7 +273,7 @@ public abstract class Entity {
 	 */
 	public int getX()
 	{
-		return x;
+		return store.getX(index());
 	}
 	
 	/**
@@ -122,7 +284,7 @@ public abstract class Entity {
 	 */
 	public int getTileX()
 	{
-		return x / Tile.TILEWIDTH;
+		return getX() / Tile.TILEWIDTH;
 	}
 	
 	/**
@@ -142,7 +304,7 @@ public abstract class Entity {
 	 */
 	public void setY(int y)
 	{
-		this.y = y;
+		store.setY(index(), y);
 	}
 	
 	/**
@@ -152,7 +314,7 @@ public abstract class Entity {
 	 */
 	public int getY()
 	{
-		return y;
+		return store.getY(index());
 	}
 	
 	/**
@@ -162,7 +324,7 @@ public abstract class Entity {
 	 */
 	public int getTileY()
 	{
-		return y / Tile.TILEHEIGHT;
+		return getY() / Tile.TILEHEIGHT;
 	}
 	
 	/**
@@ -190,9 +352,22 @@ public abstract class Entity {
 	 */
 	public void keepInBounds()
 	{
+		int index = index();
+		int maxX = world.getWidth() * Tile.TILEWIDTH - store.getWidth(index);
+		int maxY = world.getHeight() * Tile.TILEHEIGHT - store.getHeight(index);
+		int x = store.getX(index);
+		int y = store.getY(index);
 		if(x < 0) x = 0;
-		if(x > world.getWidth()) x = world.getWidth();
+		if(x > maxX) x = maxX;
 		if(y < 0) y = 0;
-		if(y > world.getHeight()) y = world.getHeight();
+		if(y > maxY) y = maxY;
+		store.setX(index, x);
+		store.setY(index, y);
+	}
+	
+	/* Where this Entity is in its EntityStore right now */
+	protected int index()
+	{
+		return store.indexOf(handle);
 	}
 }
@@ -0,0 +1,398 @@
+package ca.hjalmionlabs.entities;
+
+import java.util.Arrays;
+
+import ca.hjalmionlabs.handlers.TileHandler;
+
+/**
+ * Holds the state of every {@link Entity} in one {@link ca.hjalmionlabs.world.World World}, with one array per field
+ * instead of one object per Entity. The Entities are packed into indices 0 to {@link EntityStore#size()} - 1 with no
+ * gaps, so going over all of them (like {@link EntityStore#move} does) is one pass over a few arrays. The Entity
+ * objects are only views that read and write these arrays.
+ * <br><br>
+ * Removing an Entity moves the last Entity into its index, so an index is only good until the next add or remove.
+ * To hold on to an Entity, keep its handle instead: a handle always finds the same Entity, and stops being valid once
+ * that Entity is removed, even if its slot is reused by a new Entity.
+ * <br><br>
+ * Every Entity also has a level of detail, which decides how often it is ticked (see
+ * {@link ca.hjalmionlabs.handlers.EntityHandler#tick() EntityHandler.tick()}), and how many ticks it moves for the
+ * next time the store is moved.
+ * @author Nick Mills
+ */
+public class EntityStore
+{
+	/** A handle that never belongs to an Entity */
+	public static final int NONE = -1;
+
+	/* The low bits of a handle are the slot, the high bits count how many times the slot has been reused. 
+	 * EntityTickTask fits an index into this many bits too */
+	static final int SLOT_BITS = 20;
+	private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+	private static final int GENERATION_MASK = (1 << (31 - SLOT_BITS)) - 1;
+	/** Most Entities that one store can hold */
+	public static final int MAX_ENTITIES = 1 << SLOT_BITS;
+
+	/** Levels of detail: ticked every tick, ticked every few ticks, or not ticked at all */
+	public static final byte ACTIVE = 0, REDUCED = 1, SLEEPING = 2;
+	/** Tick number of an Entity that was never ticked */
+	public static final int NEVER = Integer.MIN_VALUE;
+
+	/* State of each Entity, by index */
+	private int[] xs = new int[64];
+	private int[] ys = new int[64];
+	/* Position of each Entity before the last move, so a frame can be drawn between the two */
+	private int[] previousXs = new int[64];
+	private int[] previousYs = new int[64];
+	private int[] velocityXs = new int[64];
+	private int[] velocityYs = new int[64];
+	private int[] widths = new int[64];
+	private int[] heights = new int[64];
+	private byte[] types = new byte[64];
+	private Entity[] entities = new Entity[64];
+	private int[] handles = new int[64];
+	/* Level of detail, the last tick that each Entity was ticked on, and how many ticks it is ticked for this time (0 if it isn't) */
+	private byte[] levels = new byte[64];
+	private int[] lastTicks = new int[64];
+	private int[] steps = new int[64];
+	private int size;
+
+	/* Index of the Entity in each slot (NONE if the slot is free), and how many times each slot has been used */
+	private int[] indices = new int[64];
+	private int[] generations = new int[64];
+	private int[] freeSlots = new int[64];
+	private int freeCount;
+	private int slotCount;
+
+	/**
+	 * Adds an Entity to the store
+	 * @param entity - The Entity object that views this Entity
+	 * @param type - What kind of Entity it is
+	 * @param x - x-coord, in world coordinates
+	 * @param y - y-coord, in world coordinates
+	 * @param width - Width, in pixels
+	 * @param height - Height, in pixels
+	 * @return the handle of the new Entity
+	 * @throws IllegalStateException if the store already holds {@link EntityStore#MAX_ENTITIES} Entities
+	 */
+	public int add(Entity entity, EntityType type, int x, int y, int width, int height)
+	{
+		int slot;
+		if(freeCount > 0)
+			slot = freeSlots[--freeCount];
+		else
+		{
+			if(slotCount == MAX_ENTITIES)
+				throw new IllegalStateException("An EntityStore can't hold more than " + MAX_ENTITIES + " Entities");
+			slot = slotCount++;
+			if(slot == indices.length)
+			{
+				indices = Arrays.copyOf(indices, slot * 2);
+				generations = Arrays.copyOf(generations, slot * 2);
+			}
+		}
+
+		if(size == xs.length)
+			grow(size * 2);
+		int index = size++;
+		int handle = (generations[slot] << SLOT_BITS) | slot;
+		indices[slot] = index;
+		xs[index] = x;
+		ys[index] = y;
+		previousXs[index] = x;
+		previousYs[index] = y;
+		velocityXs[index] = 0;
+		velocityYs[index] = 0;
+		widths[index] = width;
+		heights[index] = height;
+		types[index] = type.getID();
+		entities[index] = entity;
+		handles[index] = handle;
+		levels[index] = ACTIVE;
+		lastTicks[index] = NEVER;
+		steps[index] = 0;
+		return handle;
+	}
+
+	/**
+	 * Removes the Entity with the supplied handle. The last Entity is moved into its index
+	 * @param handle - Handle of the Entity to remove
+	 * @return true if it was removed, false if the handle wasn't valid
+	 */
+	public boolean remove(int handle)
+	{
+		int index = indexOf(handle);
+		if(index < 0)
+			return false;
+		int slot = handle & SLOT_MASK;
+		int last = --size;
+		if(index != last)
+		{
+			xs[index] = xs[last];
+			ys[index] = ys[last];
+			previousXs[index] = previousXs[last];
+			previousYs[index] = previousYs[last];
+			velocityXs[index] = velocityXs[last];
+			velocityYs[index] = velocityYs[last];
+			widths[index] = widths[last];
+			heights[index] = heights[last];
+			types[index] = types[last];
+			entities[index] = entities[last];
+			handles[index] = handles[last];
+			levels[index] = levels[last];
+			lastTicks[index] = lastTicks[last];
+			steps[index] = steps[last];
+			indices[handles[index] & SLOT_MASK] = index;
+		}
+		entities[last] = null;
+
+		indices[slot] = NONE;
+		generations[slot] = (generations[slot] + 1) & GENERATION_MASK;
+		if(freeCount == freeSlots.length)
+			freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+		freeSlots[freeCount++] = slot;
+		return true;
+	}
+
+	/**
+	 * Gets the index of the Entity with the supplied handle
+	 * @param handle - Handle of the Entity
+	 * @return its index, or -1 if the handle isn't valid (anymore)
+	 */
+	public int indexOf(int handle)
+	{
+		if(handle < 0)
+			return -1;
+		int slot = handle & SLOT_MASK;
+		if(slot >= slotCount || generations[slot] != handle >>> SLOT_BITS)
+			return -1;
+		return indices[slot];
+	}
+
+	/**
+	 * Whether or not the supplied handle still belongs to an Entity in this store
+	 * @param handle - The handle to check
+	 * @return true if it does, false if the Entity was removed
+	 */
+	public boolean isValid(int handle)
+	{
+		return indexOf(handle) >= 0;
+	}
+
+	/**
+	 * Moves every Entity by its velocity, once for every tick that it is ticked for this time, in one pass over the position 
+	 * arrays. Each Entity moves along the x-axis and then along the y-axis, and stops at the first {@link ca.hjalmionlabs.world.tiles.TileType#isSolid() solid} 
+	 * Tile in its way (see {@link TileHandler#sweepX} and {@link TileHandler#sweepY}). Where every Entity was before is 
+	 * kept (see {@link EntityStore#getPreviousX})
+	 * @param tiles - The Tiles of the World that the Entities are in
+	 */
+	public void move(TileHandler tiles)
+	{
+		for(int i = 0; i < size; i++)
+		{
+			previousXs[i] = xs[i];
+			previousYs[i] = ys[i];
+			int distanceX = velocityXs[i] * steps[i];
+			int distanceY = velocityYs[i] * steps[i];
+			if(distanceX != 0)
+				xs[i] = tiles.sweepX(xs[i], ys[i], widths[i], heights[i], distanceX);
+			if(distanceY != 0)
+				ys[i] = tiles.sweepY(xs[i], ys[i], widths[i], heights[i], distanceY);
+		}
+	}
+
+	/**
+	 * Gets how many Entities are in the store
+	 * @return the number of Entities. Their indices are 0 to this - 1
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the Entity object that views the Entity at the supplied index
+	 * @param index - Index of the Entity
+	 * @return the Entity
+	 */
+	public Entity getEntity(int index)
+	{
+		return entities[index];
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the handle of the Entity at the supplied index
+	 * @param index - Index of the Entity
+	 * @return the Entity's handle
+	 */
+	public int getHandle(int index)
+	{
+		return handles[index];
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the type of the Entity at the supplied index
+	 * @param index - Index of the Entity
+	 * @return the Entity's type
+	 */
+	public EntityType getType(int index)
+	{
+		return EntityType.fromID(types[index]);
+	}
+
+	public int getX(int index)
+	{
+		return xs[index];
+	}
+
+	public void setX(int index, int x)
+	{
+		xs[index] = x;
+	}
+
+	public int getY(int index)
+	{
+		return ys[index];
+	}
+
+	public void setY(int index, int y)
+	{
+		ys[index] = y;
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the x-coord that the Entity at the supplied index had before the last {@link EntityStore#move}
+	 * @param index - Index of the Entity
+	 * @return the previous x-coord, or the current one if the Entity was added since
+	 */
+	public int getPreviousX(int index)
+	{
+		return previousXs[index];
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the y-coord that the Entity at the supplied index had before the last {@link EntityStore#move}
+	 * @param index - Index of the Entity
+	 * @return the previous y-coord, or the current one if the Entity was added since
+	 */
+	public int getPreviousY(int index)
+	{
+		return previousYs[index];
+	}
+
+	public int getVelocityX(int index)
+	{
+		return velocityXs[index];
+	}
+
+	public int getVelocityY(int index)
+	{
+		return velocityYs[index];
+	}
+
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets how far the Entity at the supplied index moves every {@link EntityStore#move}
+	 * @param index - Index of the Entity
+	 * @param velocityX - Distance to move along the x-axis, in pixels per tick
+	 * @param velocityY - Distance to move along the y-axis, in pixels per tick
+	 */
+	public void setVelocity(int index, int velocityX, int velocityY)
+	{
+		velocityXs[index] = velocityX;
+		velocityYs[index] = velocityY;
+	}
+
+	public int getWidth(int index)
+	{
+		return widths[index];
+	}
+
+	public int getHeight(int index)
+	{
+		return heights[index];
+	}
+
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets the size of the Entity at the supplied index
+	 * @param index - Index of the Entity
+	 * @param width - Width, in pixels
+	 * @param height - Height, in pixels
+	 */
+	public void setSize(int index, int width, int height)
+	{
+		widths[index] = width;
+		heights[index] = height;
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the level of detail of the Entity at the supplied index
+	 * @param index - Index of the Entity
+	 * @return {@link EntityStore#ACTIVE}, {@link EntityStore#REDUCED} or {@link EntityStore#SLEEPING}
+	 */
+	public byte getLevel(int index)
+	{
+		return levels[index];
+	}
+
+	public void setLevel(int index, byte level)
+	{
+		levels[index] = level;
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the last tick that the Entity at the supplied index was ticked on
+	 * @param index - Index of the Entity
+	 * @return the tick number, or {@link EntityStore#NEVER}
+	 */
+	public int getLastTick(int index)
+	{
+		return lastTicks[index];
+	}
+
+	public void setLastTick(int index, int tick)
+	{
+		lastTicks[index] = tick;
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets how many ticks the Entity at the supplied index is ticked for this time
+	 * @param index - Index of the Entity
+	 * @return the number of ticks, or 0 if it isn't ticked this time
+	 */
+	public int getSteps(int index)
+	{
+		return steps[index];
+	}
+
+	public void setSteps(int index, int steps)
+	{
+		this.steps[index] = steps;
+	}
+
+	private void grow(int capacity)
+	{
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		previousXs = Arrays.copyOf(previousXs, capacity);
+		previousYs = Arrays.copyOf(previousYs, capacity);
+		velocityXs = Arrays.copyOf(velocityXs, capacity);
+		velocityYs = Arrays.copyOf(velocityYs, capacity);
+		widths = Arrays.copyOf(widths, capacity);
+		heights = Arrays.copyOf(heights, capacity);
+		types = Arrays.copyOf(types, capacity);
+		entities = Arrays.copyOf(entities, capacity);
+		handles = Arrays.copyOf(handles, capacity);
+		levels = Arrays.copyOf(levels, capacity);
+		lastTicks = Arrays.copyOf(lastTicks, capacity);
+		steps = Arrays.copyOf(steps, capacity);
+	}
+}
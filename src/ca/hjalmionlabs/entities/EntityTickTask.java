@@ -0,0 +1,129 @@
+package ca.hjalmionlabs.entities;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Ticks the Entities of an {@link EntityStore} that are due this tick on a {@link ForkJoinPool}, grouped by the {@link ca.hjalmionlabs.world.Chunk Chunk}
+ * they are in. The groups are split in half until each task only has a few Entities left, which are then ticked one
+ * after another, so Entities that are close together are ticked by the same thread. Splits only happen between Chunks.
+ * <br><br>
+ * Entities are ticked at the same time as each other, so {@link Entity#tick()} may only change its own Entity. Anything
+ * that involves more than one Entity has to wait for the merge step that runs on the game thread afterwards
+ * (see {@link ca.hjalmionlabs.handlers.EntityHandler#tick()}). That way the result is the same as ticking them one
+ * after another, no matter how many threads there are.
+ * @author Nick Mills
+ */
+public class EntityTickTask extends RecursiveAction
+{
+	private static final long serialVersionUID = -6264510311836003284L;
+
+	/* Groups with this many Entities or less are ticked without splitting them any further */
+	private static final int THRESHOLD = 512;
+	/* How many bits of a key are the Entity's index. An index is never bigger than a slot of the store */
+	private static final int INDEX_BITS = EntityStore.SLOT_BITS;
+	private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+	/* Chunk coordinates get half of the bits that are left (without the sign bit, so keys sort as positive numbers). 
+	 * They are clamped to a signed number of this many bits, then biased so they are never negative */
+	private static final int COORD_BITS = (Long.SIZE - 1 - INDEX_BITS) / 2;
+	private static final long COORD_MASK = (1L << COORD_BITS) - 1;
+	private static final int COORD_LIMIT = (1 << (COORD_BITS - 1)) - 1;
+
+	static
+	{
+		if(COORD_BITS < 2 || COORD_BITS > Integer.SIZE)
+			throw new IllegalStateException(INDEX_BITS + " index bits leave no room for Chunk coordinates in a key");
+	}
+
+	private final EntityStore store;
+	private final long[] keys;
+	private final int[] starts;
+	private final int from;
+	private final int to;
+
+	/**
+	 * Creates a task that ticks groups <i>from</i> up to (but not including) <i>to</i>
+	 * @param store - The Entities to tick
+	 * @param keys - The Entities, sorted by Chunk, as made by {@link EntityTickTask#sort}
+	 * @param starts - Where each group starts in <i>keys</i>, as found by {@link EntityTickTask#group}
+	 * @param from - First group to tick
+	 * @param to - Group after the last group to tick
+	 */
+	public EntityTickTask(EntityStore store, long[] keys, int[] starts, int from, int to)
+	{
+		this.store = store;
+		this.keys = keys;
+		this.starts = starts;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Sorts the Entities of the supplied store that are due this tick (see {@link EntityStore#getSteps}) by Chunk 
+	 * (row by row), and by index inside of each Chunk
+	 * @param store - The Entities to sort
+	 * @param keys - Array for the sorted keys. Must have room for every Entity that is due
+	 * @param chunkWidth - Width of a Chunk, in pixels
+	 * @param chunkHeight - Height of a Chunk, in pixels
+	 * @return how many keys there are
+	 */
+	public static int sort(EntityStore store, long[] keys, int chunkWidth, int chunkHeight)
+	{
+		int count = 0;
+		for(int i = 0; i < store.size(); i++)
+		{
+			if(store.getSteps(i) == 0)
+				continue;
+			keys[count++] = key(Math.floorDiv(store.getX(i), chunkWidth), Math.floorDiv(store.getY(i), chunkHeight), i);
+		}
+		Arrays.sort(keys, 0, count);
+		return count;
+	}
+
+	/**
+	 * Makes the sort key of an Entity. Keys sort by <i>chunkY</i>, then <i>chunkX</i>, then <i>index</i>, negative 
+	 * coordinates included
+	 * @param chunkX - X coordinate of the Entity's Chunk. Clamped to the range that fits in a key
+	 * @param chunkY - Y coordinate of the Entity's Chunk. Clamped to the range that fits in a key
+	 * @param index - Index of the Entity in its store
+	 * @return the key
+	 */
+	static long key(int chunkX, int chunkY, int index)
+	{
+		long x = (Math.max(-COORD_LIMIT, Math.min(COORD_LIMIT, chunkX)) + COORD_LIMIT) & COORD_MASK;
+		long y = (Math.max(-COORD_LIMIT, Math.min(COORD_LIMIT, chunkY)) + COORD_LIMIT) & COORD_MASK;
+		return (y << (INDEX_BITS + COORD_BITS)) | (x << INDEX_BITS) | (index & INDEX_MASK);
+	}
+
+	/**
+	 * Finds where each Chunk's group of Entities starts in keys sorted by {@link EntityTickTask#sort}. Group <i>g</i> is
+	 * <code>keys[starts[g]]</code> up to (but not including) <code>keys[starts[g + 1]]</code>
+	 * @param keys - The sorted keys
+	 * @param size - How many keys there are
+	 * @param starts - Array for the starts. Must have room for <i>size</i> + 1 of them
+	 * @return the number of groups
+	 */
+	public static int group(long[] keys, int size, int[] starts)
+	{
+		int count = 0;
+		for(int i = 0; i < size; i++)
+			if(i == 0 || keys[i] >>> INDEX_BITS != keys[i - 1] >>> INDEX_BITS)
+				starts[count++] = i;
+		starts[count] = size;
+		return count;
+	}
+
+	@Override
+	protected void compute()
+	{
+		if(to - from <= 1 || starts[to] - starts[from] <= THRESHOLD)
+		{
+			for(int i = starts[from]; i < starts[to]; i++)
+				store.getEntity((int)(keys[i] & INDEX_MASK)).tick();
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new EntityTickTask(store, keys, starts, from, middle), new EntityTickTask(store, keys, starts, middle, to));
+	}
+}
@@ -0,0 +1,73 @@
+package ca.hjalmionlabs.entities;
+
+/**
+ * The kinds of {@link Entity} in the game. Every Entity in an {@link EntityStore} has one, stored as its id
+ * @author Nick Mills
+ */
+public enum EntityType
+{
+	PLAYER("PLAYER", (byte)00, 30, 30),
+	ZOMBIE("ZOMBIE", (byte)01, 25, 25);
+	
+	/* Lookup table from an EntityType's id to the EntityType itself */
+	private static final EntityType[] BY_ID = new EntityType[values().length];
+	
+	static
+	{
+		for(EntityType type : values())
+			BY_ID[type.id] = type;
+	}
+	
+	private String name;
+	private byte id;
+	private int width;
+	private int height;
+	
+	EntityType(String name, byte id, int width, int height)
+	{
+		this.name = name;
+		this.id = id;
+		this.width = width;
+		this.height = height;
+	}
+	
+	public String getName()
+	{
+		return name;
+	}
+	
+	public byte getID()
+	{
+		return id;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the width that Entities of this type are created with
+	 * @return the width, in pixels
+	 */
+	public int getWidth()
+	{
+		return width;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the height that Entities of this type are created with
+	 * @return the height, in pixels
+	 */
+	public int getHeight()
+	{
+		return height;
+	}
+	
+	/**
+	 * Gets the EntityType that has the specified id
+	 * @param id - The id of the EntityType, as returned by {@link EntityType#getID()}
+	 * @return the matching EntityType
+	 */
+	public static EntityType fromID(byte id)
+	{
+		return BY_ID[id];
+	}
+}
@@ -12,18 +12,19 @@ public abstract class Mob extends Entity
 	 * Create a new Mob in the specified {@link World}
 	 * @param name - String representation of the name of this Mob
 	 * @param world - The {@link World} that this Mob belongs in
+	 * @param type - What kind of Mob this is
 	 * @param x - The x-coord that this Mob should be created at
 	 * @param y - The y-coord that this Mob should be created at
 	 */
-	public Mob(String name, World world, int x, int y)
+	public Mob(String name, World world, EntityType type, int x, int y)
 	{
-		super(name, world, x, y);
+		super(name, world, type, x, y);
 		this.color = java.awt.Color.RED;
 	}
 
 	@Override
 	public abstract void tick();
 	@Override
-	public abstract void render(java.awt.Graphics g);
+	public abstract void render(java.awt.Graphics g, int x, int y, int width, int height);
 
 }
@@ -18,10 +18,21 @@ public class Player extends Entity
 	
 	public Player(String name, World world, int x, int y, int speed)
 	{
-		super(name, world, x, y);
+		super(name, world, EntityType.PLAYER, x, y);
 		this.speed = speed;
-		this.width = radius;
-		this.height = radius;
+		setSize(radius, radius);
+		world.getFlowField().setTarget(this);
+	}
+
+	/**
+	 * Moves this Player into a different {@link World}. The Mobs of the new World follow this Player from now on
+	 * @param world - The World that this Player now lives in
+	 */
+	@Override
+	public void setWorld(World world)
+	{
+		super.setWorld(world);
+		world.getFlowField().setTarget(this);
 	}
 
 	@Override
@@ -31,7 +42,7 @@ public class Player extends Entity
 	}
 
 	@Override
-	public void render(Graphics g)
+	public void render(Graphics g, int x, int y, int width, int height)
 	{
 		g.setColor(color);
 		g.fillOval(x, y, width, height);
@@ -1,6 +1,8 @@
 package ca.hjalmionlabs.entities;
 
+import ca.hjalmionlabs.world.FlowField;
 import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.Tile;
 
 /**
  * Zombie is the first hostile {@link Mob} added to the game.
@@ -9,6 +11,12 @@ import ca.hjalmionlabs.world.World;
  */
 public class Zombie extends Mob 
 {
+	/* Which way this Zombie wanders while there is no Player in its World to walk to, and for how many more ticks */
+	private int wanderDirection = FlowField.NONE;
+	private int wanderTicks;
+	/* This Zombie's own xorshift random numbers, so where it wanders doesn't depend on the other Zombies or on which thread ticks it */
+	private int random;
+	
 	/**
 	 * Create a new Zombie in the specified {@link World}
 	 * @param name - String representation of this Zombie's name
@@ -18,20 +26,66 @@ public class Zombie extends Mob
 	 */
 	public Zombie(String name, World world, int x, int y)
 	{
-		super(name, world, x, y);
-		width = 25;
-		height = 25;
+		super(name, world, EntityType.ZOMBIE, x, y);
+		speed = 2;
+		random = handle * 0x9E3779B9 | 1;
 	}
 
+	/**
+	 * Zombies walk towards the Player, one Tile at a time, by following their {@link World}'s {@link FlowField}. 
+	 * They stand still once they are on the Player's Tile, or if there is no way to get to the Player. While walking 
+	 * along one axis they also drift to the middle of their Tile on the other axis, so they don't catch on the corners 
+	 * of solid Tiles next to the way the field leads. If the field doesn't lead anywhere (the Player is in another 
+	 * World), they wander around instead
+	 */
 	@Override
 	public void tick()
 	{
-		x = oX + world.xOffset;
-		y = oY + world.yOffset;
+		int index = index();
+		if(!world.getFlowField().isValid())
+		{
+			wander(index);
+			keepInBounds();
+			return;
+		}
+		int centerX = store.getX(index) + store.getWidth(index) / 2;
+		int centerY = store.getY(index) + store.getHeight(index) / 2;
+		int tileX = Math.floorDiv(centerX, Tile.TILEWIDTH);
+		int tileY = Math.floorDiv(centerY, Tile.TILEHEIGHT);
+		int direction = world.getFlowField().getDirection(tileX, tileY);
+		int velocityX = FlowField.stepX(direction) * speed;
+		int velocityY = FlowField.stepY(direction) * speed;
+		if(direction == FlowField.UP || direction == FlowField.DOWN)
+			velocityX = Math.max(-speed, Math.min(speed, tileX * Tile.TILEWIDTH + Tile.TILEWIDTH / 2 - centerX));
+		else if(direction != FlowField.NONE)
+			velocityY = Math.max(-speed, Math.min(speed, tileY * Tile.TILEHEIGHT + Tile.TILEHEIGHT / 2 - centerY));
+		store.setVelocity(index, velocityX, velocityY);
+		keepInBounds();
+	}
+	
+	/* Walks one way (or stands still) for a few seconds, then picks again. Counts every tick that this tick stands in for */
+	private void wander(int index)
+	{
+		if(wanderTicks <= 0)
+		{
+			random ^= random << 13;
+			random ^= random >>> 17;
+			random ^= random << 5;
+			wanderDirection = (random >>> 1) % 5 - 1;	// NONE, UP, LEFT, RIGHT or DOWN
+			wanderTicks = 60 + (random >>> 8) % 120;
+		}
+		wanderTicks -= Math.max(1, store.getSteps(index));
+		store.setVelocity(index, FlowField.stepX(wanderDirection) * speed, FlowField.stepY(wanderDirection) * speed);
+	}
+	
+	@Override
+	protected void reset()
+	{
+		wanderTicks = 0;
 	}
 	
 	@Override
-	public void render(java.awt.Graphics g)
+	public void render(java.awt.Graphics g, int x, int y, int width, int height)
 	{
 		g.setColor(color);
 		g.fillOval(x, y, width, height);
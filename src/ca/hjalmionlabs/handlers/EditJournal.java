@@ -0,0 +1,267 @@
+package ca.hjalmionlabs.handlers;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import ca.hjalmionlabs.world.TileListener;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * Write-ahead journal of every Tile that is replaced after the last save. Edits are recorded into a buffer on the
+ * game thread and appended to the journal file by the save thread every few ticks (see {@link FileHandler#tick}),
+ * so a crash only loses the edits since the last flush. Every save starts a new journal, and loading the game
+ * replays the journal on top of the save. Tiles are only ever replaced on the game thread (clicks are queued by the
+ * {@link InputHandler} and placed there), so an edit is always recorded entirely before or entirely after a save
+ * starts a new journal.
+ * <br><br>
+ * <strong>Format (version 1)</strong>, big-endian:
+ * <pre>
+ * int    magic ("HJJN")
+ * short  version
+ * long   number of the save checkpoint that this journal follows
+ * byte   palette size, then for each TileType: byte id, string name
+ * then records, each starting with a byte kind:
+ * 1 WORLD  byte world id, string World name
+ * 2 TILE   byte world id, int xTile, int yTile, byte TileType id
+ * </pre>
+ * A record that was only partly written when the game crashed is thrown away when the journal is replayed.
+ * @author Nick Mills
+ */
+public class EditJournal implements TileListener
+{
+	/* "HJJN" */
+	private static final int MAGIC = 0x484A4A4E;
+	private static final short VERSION = 1;
+
+	private static final byte WORLD = 1;
+	private static final byte TILE = 2;
+
+	private final File file;
+
+	/* Edits that haven't been handed to the save thread yet. Only used on the game thread, which is where every Tile is replaced */
+	private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+	private final DataOutputStream out = new DataOutputStream(bytes);
+	/* Ids of the Worlds that have a WORLD record in the current journal */
+	private final Map<String, Integer> worldIds = new HashMap<String, Integer>();
+	/* Whether or not edits are being recorded. Nothing is recorded until there is a save for the journal to follow */
+	private boolean recording;
+
+	/* The journal file, kept open between appends. Only used on the save thread, or while it is idle */
+	private FileChannel channel;
+
+	/**
+	 * Creates a journal that is written to the supplied file
+	 * @param file - The journal file
+	 */
+	public EditJournal(File file)
+	{
+		this.file = file;
+	}
+
+	@Override
+	public void tileChanged(World world, int tileX, int tileY, TileType oldType, TileType newType)
+	{
+		if(!recording)
+			return;
+		try
+		{
+			Integer id = worldIds.get(world.getName());
+			if(id == null)
+			{
+				id = worldIds.size();
+				worldIds.put(world.getName(), id);
+				out.writeByte(WORLD);
+				out.writeByte(id);
+				out.writeUTF(world.getName());
+			}
+			out.writeByte(TILE);
+			out.writeByte(id);
+			out.writeInt(tileX);
+			out.writeInt(tileY);
+			out.writeByte(newType.getID());
+		} catch(IOException ioe)	// Can't happen, it's an in-memory stream
+		{
+			ioe.printStackTrace();
+		}
+	}
+
+	/**
+	 * Starts a new journal after a save was snapshotted. Edits that weren't flushed yet are thrown away, so they have to 
+	 * be flushed first: they are in the snapshot, but if writing the save fails they are only in the old journal.
+	 * Must be called on the game thread
+	 */
+	public void startNew()
+	{
+		bytes.reset();
+		worldIds.clear();
+		recording = true;
+	}
+
+	/**
+	 * Takes the edits recorded since the last call, to be appended to the file with {@link EditJournal#append}.
+	 * Must be called on the game thread
+	 * @return the recorded bytes, or null if nothing was recorded
+	 */
+	public byte[] drain()
+	{
+		if(bytes.size() == 0)
+			return null;
+		byte[] data = bytes.toByteArray();
+		bytes.reset();
+		return data;
+	}
+
+	/**
+	 * Appends edits taken with {@link EditJournal#drain()} to the journal file, and flushes them to the disk
+	 * @param data - The bytes to append
+	 * @throws IOException if the journal couldn't be written
+	 */
+	public synchronized void append(byte[] data) throws IOException
+	{
+		FileChannel channel = open();
+		ByteBuffer buffer = ByteBuffer.wrap(data);
+		channel.position(channel.size());
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		channel.force(false);
+	}
+
+	/**
+	 * Empties the journal file, and starts it again with a header for the supplied save checkpoint
+	 * @param checkpoint - Number of the checkpoint that was just saved
+	 * @throws IOException if the journal couldn't be written
+	 */
+	public synchronized void reset(long checkpoint) throws IOException
+	{
+		FileChannel channel = open();
+		channel.truncate(0);
+		ByteBuffer buffer = ByteBuffer.allocate(1024);
+		buffer.putInt(MAGIC);
+		buffer.putShort(VERSION);
+		buffer.putLong(checkpoint);
+		FileHandler.putPalette(buffer);
+		buffer.flip();
+		channel.position(0);
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		channel.force(false);
+	}
+
+	/**
+	 * Replays the journal onto the Worlds that were just loaded from the save with the supplied checkpoint number.
+	 * A journal that follows a different checkpoint is out of date (its edits are already in the save) and is
+	 * emptied instead. Afterwards new edits are recorded after the replayed ones. Must be called on the game thread
+	 * while the save thread is idle
+	 * @param checkpoint - Number of the checkpoint that was loaded
+	 * @param wh - WorldHandler holding the loaded Worlds
+	 * @return the number of edits that were replayed
+	 * @throws IOException if the journal couldn't be read
+	 */
+	public synchronized int replay(long checkpoint, WorldHandler wh) throws IOException
+	{
+		bytes.reset();
+		worldIds.clear();
+		recording = true;
+		if(!file.exists())
+		{
+			reset(checkpoint);
+			return 0;
+		}
+
+		FileChannel channel = open();
+		ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+		channel.position(0);
+		while(buffer.hasRemaining() && channel.read(buffer) >= 0);
+		buffer.flip();
+
+		int end = 0;
+		int edits = 0;
+		recording = false;	// The replayed edits are already in the journal
+		try
+		{
+			if(buffer.getInt() != MAGIC || buffer.getShort() != VERSION || buffer.getLong() != checkpoint)
+			{
+				recording = true;
+				reset(checkpoint);
+				return 0;
+			}
+			byte[] remap = FileHandler.getPalette(buffer);
+			end = buffer.position();
+
+			Map<Integer, World> worlds = new HashMap<Integer, World>();
+			while(buffer.hasRemaining())
+			{
+				byte kind = buffer.get();
+				if(kind == WORLD)
+				{
+					int id = buffer.get() & 0xFF;
+					String name = FileHandler.getString(buffer);
+					for(World world : wh.getWorlds())
+						if(world.getName().equals(name))
+							worlds.put(id, world);
+				} else if(kind == TILE)
+				{
+					World world = worlds.get(buffer.get() & 0xFF);
+					int tileX = buffer.getInt();
+					int tileY = buffer.getInt();
+					TileType type = TileType.fromID(remap[buffer.get() & 0xFF]);
+					if(world != null)
+					{
+						world.replaceTile(tileX, tileY, type);
+						edits++;
+					}
+				} else
+				{
+					break;
+				}
+				end = buffer.position();
+			}
+		} catch(BufferUnderflowException e)
+		{
+			// The last record was cut off by a crash
+		} finally
+		{
+			recording = true;
+		}
+		channel.truncate(end);	// So new edits don't end up behind a broken record
+		return edits;
+	}
+
+	/**
+	 * Closes the journal file. It is opened again the next time it is written to
+	 */
+	public synchronized void close()
+	{
+		if(channel == null)
+			return;
+		try
+		{
+			channel.close();
+		} catch(IOException ioe)
+		{
+			ioe.printStackTrace();
+		}
+		channel = null;
+	}
+
+	private FileChannel open() throws IOException
+	{
+		if(channel == null || !channel.isOpen())
+		{
+			File dir = file.getParentFile();
+			if(dir != null && !dir.exists())
+				dir.mkdirs();
+			channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		}
+		return channel;
+	}
+}
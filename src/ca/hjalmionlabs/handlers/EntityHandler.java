@@ -1,47 +1,374 @@
 package ca.hjalmionlabs.handlers;
 
+import java.awt.Rectangle;
 import java.io.Serializable;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import ca.hjalmionlabs.entities.Entity;
+import ca.hjalmionlabs.entities.EntityStore;
+import ca.hjalmionlabs.entities.EntityType;
+import ca.hjalmionlabs.entities.EntityTickTask;
+import ca.hjalmionlabs.entities.Zombie;
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.FlowField;
+import ca.hjalmionlabs.world.SpatialHash;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.Tile;
 
+/**
+ * Handles the Entities of one {@link World}. Their state is kept in an {@link EntityStore}, and a {@link SpatialHash}
+ * keeps track of which Tile they are on
+ * @author Nick Mills
+ */
 public class EntityHandler implements Serializable
 {
 	/**
-	 * ArrayList holding a bunch of Entities
+	 * Every Entity in the World. An Entity's id in the {@link EntityHandler#grid} is its index in here
 	 */
-	private static List<Entity> entities = new ArrayList<Entity>();
+	private final EntityStore store = new EntityStore();
+	/**
+	 * Which Tile every Entity in {@link EntityHandler#store} is on
+	 */
+	private final SpatialHash grid = new SpatialHash(Tile.TILEWIDTH, Tile.TILEHEIGHT);
+	/* How many ids were in the grid after the last tick. Entities that were removed since then leave ids past the end of the store */
+	private int gridSize;
+	/* The World whose Entities these are */
+	private final World world;
+	
+	/* Entities closer than this to the Player (in pixels) are ticked every tick, ones closer than REDUCED_RADIUS every few ticks, and the rest sleep */
+	private static final int ACTIVE_RADIUS = 20 * Tile.TILEWIDTH;
+	private static final int REDUCED_RADIUS = FlowField.RADIUS * Tile.TILEWIDTH;
+	/* How many ticks apart Entities at the REDUCED level are ticked. Must be a power of 2 */
+	private static final int REDUCED_INTERVAL = 4;
+	/* Number of this handler's current tick */
+	private int tickNumber;
+	/* How many Entities were at each level of detail on the last tick */
+	private final int[] levelCounts = new int[3];
+	
+	/* Despawned Entities waiting to be spawned again, by EntityType id */
+	private final Entity[][] pools = new Entity[EntityType.values().length][16];
+	private final int[] pooled = new int[EntityType.values().length];
+	/* Entities despawned during a tick. They are only removed once the tick is over, so no Entity changes index while the Entities are gone over */
+	private Entity[] despawned = new Entity[16];
+	private int despawnedCount;
+	private boolean ticking;
+	
+	/* Tells the Entity at index collider and every Entity that it overlaps about each other. Each pair is only told once */
+	private int collider;
+	private final SpatialHash.Visitor collisions = new SpatialHash.Visitor()
+	{
+		@Override
+		public void visit(int id)
+		{
+			if(id == collider || (id < collider && store.getLevel(id) != EntityStore.SLEEPING))
+				return;
+			Entity a = store.getEntity(collider);
+			Entity b = store.getEntity(id);
+			a.onCollision(b);
+			b.onCollision(a);
+		}
+	};
+	
+	/* Ticks with at least this many Entities to tick are ticked on the pool */
+	private static final int PARALLEL_THRESHOLD = 2048;
+	/* Ticks the Entities, or null to always tick them on the game thread */
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+	/* The Entities sorted by Chunk, and where each Chunk starts. Kept between ticks so they don't have to be allocated again */
+	private long[] keys = new long[0];
+	private int[] starts = new int[1];
 	
 	/**
-	 * Used to tick all of the {@link Entity} that are in the {@link EntityHandler#entities} ArrayList
+	 * Creates an empty handler for the Entities of the supplied {@link World}
+	 * @param world - The World that the Entities live in
+	 */
+	public EntityHandler(World world)
+	{
+		this.world = world;
+	}
+	
+	/**
+	 * Used to tick all of the {@link Entity} that are in the {@link EntityHandler#store}, then move every Entity by its 
+	 * velocity. Once they have all moved, every pair of Entities that overlap is told about it with {@link Entity#onCollision(Entity)}
+	 * <br><br>
+	 * How often an Entity is ticked depends on how far it is from the Player that the World's {@link FlowField} leads to. 
+	 * Entities near the Player are {@link EntityStore#ACTIVE} and ticked every tick. Further away they are 
+	 * {@link EntityStore#REDUCED}, and only ticked every few ticks, but then moved for all of the ticks since the last one. 
+	 * Past that they are {@link EntityStore#SLEEPING}, and not ticked or moved at all until they wake up and 
+	 * {@link Entity#catchUp(int)}, and only collide with Entities that are awake. Players are always active, and every 
+	 * Entity sleeps if the World has no Player in it (unless it is ticked with {@link EntityHandler#tickInBackground(int)})
+	 * <br><br>
+	 * Big groups of Entities are ticked on the pool, one {@link ca.hjalmionlabs.world.Chunk Chunk} at a time (see 
+	 * {@link EntityTickTask}), so {@link Entity#tick()} may only change its own Entity. Everything after that (moving, 
+	 * and every interaction between Entities, even ones in different Chunks) is the merge step, and runs on the game 
+	 * thread in the same order every time, so the result is the same no matter how many threads ticked the Entities
 	 */
 	public void tick()
 	{
-		for(Entity e : entities)
+		tick(1, false);
+	}
+	
+	/**
+	 * Ticks the Entities of a {@link World} that isn't the current World, in place of the supplied number of ticks. 
+	 * There is no Player to measure how far away they are from, so instead of sleeping every Entity is 
+	 * {@link EntityStore#REDUCED}, and ticked and moved for all of the ticks at once, every time. That way the World keeps 
+	 * going at the same speed as the game, for the cost of a tick every few ticks
+	 * @param ticks - How many ticks this stands in for
+	 */
+	public void tickInBackground(int ticks)
+	{
+		tick(ticks, true);
+	}
+	
+	/* Plans and ticks the Entities for the supplied number of ticks, then runs the merge step */
+	private void tick(int ticks, boolean background)
+	{
+		ticking = true;
+		int size = store.size();
+		tickNumber += ticks;
+		int due = plan(tickNumber, ticks, background);
+		if(pool != null && due >= PARALLEL_THRESHOLD && pool.getParallelism() > 1)
+		{
+			if(keys.length < due)
+				keys = new long[Math.max(due, keys.length * 2)];
+			if(starts.length < due + 1)
+				starts = new int[Math.max(due + 1, starts.length * 2)];
+			int count = EntityTickTask.sort(store, keys, Tile.TILEWIDTH << Chunk.SHIFT, Tile.TILEHEIGHT << Chunk.SHIFT);
+			int groups = EntityTickTask.group(keys, count, starts);
+			pool.invoke(new EntityTickTask(store, keys, starts, 0, groups));
+		} else
+		{
+			for(int i = 0; i < size; i++)
+			{
+				if(store.getSteps(i) > 0)
+					store.getEntity(i).tick();
+			}
+		}
+		
+		/* Merge step */
+		store.move(world.getTileHandler());
+		for(int i = 0; i < store.size(); i++)
+			grid.update(i, store.getX(i), store.getY(i), store.getWidth(i), store.getHeight(i));
+		for(int i = store.size(); i < gridSize; i++)
+			grid.remove(i);
+		gridSize = store.size();
+		
+		/* Sleeping Entities don't move, so only pairs with at least one Entity that is awake can start overlapping */
+		for(int i = 0; i < store.size(); i++)
+		{
+			if(store.getLevel(i) == EntityStore.SLEEPING)
+				continue;
+			collider = i;
+			grid.queryRect(store.getX(i), store.getY(i), store.getWidth(i), store.getHeight(i), collisions);
+		}
+		
+		ticking = false;
+		for(int i = 0; i < despawnedCount; i++)
+		{
+			release(despawned[i]);
+			despawned[i] = null;
+		}
+		despawnedCount = 0;
+	}
+	
+	/* Works out the level of detail of every Entity, and how many ticks each one is ticked for this tick, which stands in for the supplied number 
+	 * of ticks. In the background, Entities are reduced instead of sleeping when there is no Player, and ticked every time. Returns how many are ticked */
+	private int plan(int now, int ticks, boolean background)
+	{
+		int due = 0;
+		Entity focus = world.getFlowField().getTarget();
+		boolean hasFocus = focus != null && focus.getWorld() == world;
+		long focusX = hasFocus ? focus.getX() + focus.getWidth() / 2 : 0;
+		long focusY = hasFocus ? focus.getY() + focus.getHeight() / 2 : 0;
+		long active = (long)ACTIVE_RADIUS * ACTIVE_RADIUS;
+		long reduced = (long)REDUCED_RADIUS * REDUCED_RADIUS;
+		levelCounts[EntityStore.ACTIVE] = levelCounts[EntityStore.REDUCED] = levelCounts[EntityStore.SLEEPING] = 0;
+		
+		for(int i = 0; i < store.size(); i++)
 		{
-			e.tick();
+			byte level;
+			if(store.getType(i) == EntityType.PLAYER)
+				level = EntityStore.ACTIVE;
+			else if(!hasFocus)
+				level = background ? EntityStore.REDUCED : EntityStore.SLEEPING;
+			else
+			{
+				long dx = store.getX(i) + store.getWidth(i) / 2 - focusX;
+				long dy = store.getY(i) + store.getHeight(i) / 2 - focusY;
+				long distance = dx * dx + dy * dy;
+				level = distance <= active ? EntityStore.ACTIVE : distance <= reduced ? EntityStore.REDUCED : EntityStore.SLEEPING;
+			}
+			levelCounts[level]++;
+			
+			int last = store.getLastTick(i);
+			if(last == EntityStore.NEVER)
+				last = now - ticks;
+			else if(store.getLevel(i) == EntityStore.SLEEPING && level != EntityStore.SLEEPING && last < now - ticks)
+			{
+				store.getEntity(i).catchUp(now - ticks - last);
+				last = now - ticks;
+			}
+			store.setLastTick(i, last);
+			store.setLevel(i, level);
+			
+			/* Spread the reduced Entities over the ticks by their handles, so they aren't all ticked on the same tick */
+			int steps = 0;
+			if(level == EntityStore.ACTIVE || (level == EntityStore.REDUCED && (background || ((now + store.getHandle(i)) & (REDUCED_INTERVAL - 1)) == 0)))
+				steps = now - last;
+			store.setSteps(i, steps);
+			if(steps > 0)
+			{
+				store.setLastTick(i, now);
+				due++;
+			}
 		}
+		return due;
 	}
 	
 	/**
-	 * Draw all of the {@link Entity} that are in the {@link EntityHandler#entities} ArrayList by using the supplied {@link Graphics} object
-	 * @param g - Graphics object to draw the Entities with
+	 * Gets how many Entities were at the supplied level of detail on the last tick
+	 * @param level - {@link EntityStore#ACTIVE}, {@link EntityStore#REDUCED} or {@link EntityStore#SLEEPING}
+	 * @return the number of Entities at that level
 	 */
-	public void render(java.awt.Graphics g)
+	public int getLevelCount(byte level)
 	{
-		for(Entity e : entities)
+		return levelCounts[level];
+	}
+	
+	/**
+	 * Add an {@link Entity} to this handler's {@link EntityHandler#store}. Entities are added to the World they are 
+	 * created in by themselves, so this only does something for an Entity from a different World, which is moved into this one
+	 * @param e - The Entity to add
+	 */
+	public void addEntity(Entity e)
+	{
+		e.setWorld(world);
+	}
+	
+	/**
+	 * Spawns an {@link Entity} of the supplied type in this handler's {@link World}. An Entity of that type that was 
+	 * despawned before is reused if there is one, so spawning and despawning the same number of Entities over and over 
+	 * doesn't create any garbage. Must be called on the game thread, but not from {@link Entity#tick()}
+	 * @param type - What kind of Entity to spawn
+	 * @param x - x-coord to spawn the Entity at, in world coordinates
+	 * @param y - y-coord to spawn the Entity at, in world coordinates
+	 * @return the spawned Entity
+	 * @throws IllegalArgumentException if Entities of that type can't be spawned (like {@link EntityType#PLAYER})
+	 */
+	public Entity spawn(EntityType type, int x, int y)
+	{
+		int id = type.getID();
+		if(pooled[id] > 0)
+		{
+			Entity e = pools[id][--pooled[id]];
+			pools[id][pooled[id]] = null;
+			e.respawn(x, y);
+			return e;
+		}
+		switch(type)
 		{
-			e.render(g);
+			case ZOMBIE:
+				return new Zombie("Zombie", world, x, y);
+			default:
+				throw new IllegalArgumentException(type.getName() + " can't be spawned");
 		}
 	}
 	
 	/**
-	 * Add an {@link Entity} to this handler's {@link EntityHandler#entities} ArrayList
-	 * @param e - The Entity to add to the ArrayList
+	 * Takes an {@link Entity} out of this handler's {@link World}, and keeps it to be reused by {@link EntityHandler#spawn}. 
+	 * Entities that are despawned while the Entities are being ticked stay until the tick is over. Must be called on the 
+	 * game thread, but not from {@link Entity#tick()}
+	 * @param e - The Entity to despawn. Nothing happens if it isn't in this World
 	 */
-	public void addEntity(Entity e)
+	public void despawn(Entity e)
+	{
+		if(e.getWorld() != world || !e.isAlive())
+			return;
+		if(ticking)
+		{
+			if(despawnedCount == despawned.length)
+				despawned = Arrays.copyOf(despawned, despawnedCount * 2);
+			despawned[despawnedCount++] = e;
+			return;
+		}
+		release(e);
+	}
+	
+	/* Removes a despawned Entity, keeps the grid in step with the Entity that moves into its index, and pools it */
+	private void release(Entity e)
+	{
+		if(!e.isAlive())
+			return;	// Despawned twice in one tick
+		int index = store.indexOf(e.getHandle());
+		int last = store.size() - 1;
+		e.remove();
+		grid.remove(last);
+		if(index != last && index < gridSize)
+			grid.update(index, store.getX(index), store.getY(index), store.getWidth(index), store.getHeight(index));
+		gridSize = Math.min(gridSize, store.size());
+		
+		int id = e.getType().getID();
+		if(pooled[id] == pools[id].length)
+			pools[id] = Arrays.copyOf(pools[id], pooled[id] * 2);
+		pools[id][pooled[id]++] = e;
+	}
+	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets the {@link ForkJoinPool} that big groups of Entities are ticked on. The common pool is used by default
+	 * @param pool - The pool to tick on, or null to always tick on the game thread
+	 */
+	public void setPool(ForkJoinPool pool)
+	{
+		this.pool = pool;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link EntityStore} that holds the state of this handler's Entities
+	 * @return the EntityStore
+	 */
+	public EntityStore getStore()
+	{
+		return store;
+	}
+	
+	/**
+	 * Finds every {@link Entity} that overlaps the supplied area. Uses the positions from the end of the last tick
+	 * @param area - The area to look in, in world coordinates
+	 * @param found - List to add the Entities that were found to
+	 */
+	public void getEntitiesIn(Rectangle area, final List<Entity> found)
 	{
-		entities.add(e);
+		grid.queryRect(area.x, area.y, area.width, area.height, new SpatialHash.Visitor()
+		{
+			@Override
+			public void visit(int id)
+			{
+				if(id < store.size())
+					found.add(store.getEntity(id));
+			}
+		});
+	}
+	
+	/**
+	 * Finds every {@link Entity} that is within the specified distance of a point. Uses the positions from the end of the last tick
+	 * @param x - x-coord of the point, in world coordinates
+	 * @param y - y-coord of the point, in world coordinates
+	 * @param radius - How far away an Entity can be, in pixels
+	 * @param found - List to add the Entities that were found to
+	 */
+	public void getEntitiesNear(int x, int y, int radius, final List<Entity> found)
+	{
+		grid.queryRadius(x, y, radius, new SpatialHash.Visitor()
+		{
+			@Override
+			public void visit(int id)
+			{
+				if(id < store.size())
+					found.add(store.getEntity(id));
+			}
+		});
 	}
 }
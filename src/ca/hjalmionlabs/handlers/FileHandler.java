@@ -1,117 +1,714 @@
 package ca.hjalmionlabs.handlers;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.reflect.Constructor;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
-import ca.hjalmionlabs.main.Game;
+import ca.hjalmionlabs.entities.Entity;
+import ca.hjalmionlabs.entities.EntityStore;
+import ca.hjalmionlabs.entities.Player;
+import ca.hjalmionlabs.profiling.GameMetrics;
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.region.RegionFile;
+import ca.hjalmionlabs.world.region.RegionStore;
+import ca.hjalmionlabs.world.tiles.TileType;
 
+/**
+ * Saves and loads the game in a small, versioned binary format, written and read in bulk through a {@link FileChannel}.
+ * <br><br>
+ * <strong>Format (version 3)</strong>, big-endian:
+ * <pre>
+ * int    magic ("HJSV")
+ * short  version
+ * byte   palette size, then for each TileType: byte id, string name
+ * then records, each starting with a byte kind:
+ * 1 WORLD   byte world id, string class name, string name, int width, int height, long seed
+ * 2 STATE   string name of the current World, int Player x, int Player y,
+ *           byte number of Worlds, then for each World: byte world id, int camera x offset, int camera y offset
+ * 3 COMMIT  long checkpoint number
+ * </pre>
+ * Strings are a short length followed by that many UTF-8 bytes. The palette maps the ids in the file to
+ * TileType names, so ids can change between versions of the game without breaking old saves.
+ * <br><br>
+ * The {@link Chunk}s themselves are kept in {@link RegionFile}s, in a directory per World next to the save file 
+ * (see {@link RegionStore}). Only Chunks that were modified are saved, since every other Chunk is generated again 
+ * from the World's seed. Loading only reads this file; the Chunks around the Player are read from their regions 
+ * as they are needed, so even a huge World is ready to play right away.
+ * <br><br>
+ * Every save is a checkpoint. The first one writes every modified Chunk; after that a checkpoint only writes the Chunks 
+ * that changed since the last one, then appends a STATE and a COMMIT record to this file, so a save costs about as 
+ * much as what changed. Records after the last COMMIT (from a save that was cut off) are ignored, and once the file 
+ * gets big it is written again from scratch. Between checkpoints every Tile edit goes to the {@link EditJournal}, 
+ * which is replayed when the game is loaded, so a crash only loses the last few ticks.
+ * <br><br>
+ * Saves asked for with {@link FileHandler#requestSave()} (or made by the autosave) are snapshotted at the end of a 
+ * tick and written on a background thread, so saving doesn't hold up the game. The snapshot is only consistent because 
+ * nothing changes the Worlds outside of the game thread's tick: clicks are queued by the {@link InputHandler} until the 
+ * next tick, and the Worlds that are ticked in the background are waited for first. Anything new that changes a World 
+ * from another thread has to go through the game thread the same way.
+ */
 public class FileHandler
 {
-	private static File file;
-	private static ObjectOutputStream output;
-	private static FileOutputStream outStream;
-	private static ObjectInputStream input;
-	private static FileInputStream inputStream;
+	/** The file that the game is saved to */
+	public static final File SAVE_FILE = new File("worlds", "save.world");
+	/** The file that Tile edits are journaled to between saves */
+	public static final File JOURNAL_FILE = new File("worlds", "save.journal");
+	/** Ticks between autosaves, once the game has been saved or loaded */
+	public static final int AUTOSAVE_TICKS = 60 * 60;
+	/** Ticks between journal flushes. This is the most that a crash can lose */
+	public static final int JOURNAL_FLUSH_TICKS = 10;
+
+	/* "HJSV" */
+	private static final int MAGIC = 0x484A5356;
+	private static final short VERSION = 3;
+	/* Size of the buffer used to write to / read from the file. The file is written again once it is bigger than this */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	
+	/* Record kinds */
+	private static final byte WORLD = 1;
+	private static final byte STATE = 2;
+	private static final byte COMMIT = 3;
+	
+	/* Writes saves and journal flushes in the background, one at a time and in order */
+	private static final ExecutorService saver = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "SAVE_THREAD");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private static final EditJournal journal = new EditJournal(JOURNAL_FILE);
+	
+	/* Set by requestSave() / requestLoad() on any thread, carried out by tick() on the game thread */
+	private static volatile boolean saveRequested;
+	private static volatile boolean loadRequested;
+	
+	/* The save that is being written (or was written last) */
+	private static volatile Future<?> pendingSave;
+	private static volatile float saveProgress = 1;
+	/* Ticks since the game started, counted by tick() */
+	private static int ticks;
+	
+	/* What is in SAVE_FILE. Only changed while holding the FileHandler lock */
+	/* Number of the last checkpoint that was committed */
+	private static volatile long checkpoint;
+	/* Length of the file up to the end of the last COMMIT */
+	private static volatile long fileLength;
+	/* Whether or not the next save has to write the whole file, because the last one failed */
+	private static volatile boolean rewriteNeeded;
+	/* Ids of the Worlds that have a WORLD record in the file */
+	private static final Map<String, Integer> fileWorldIds = new HashMap<String, Integer>();
+	
+	/* Whether or not the game hasn't been saved or loaded yet. The first save replaces any old save */
+	private static volatile boolean newGame = true;
+	/* The RegionStore of each World, by World name */
+	private static final Map<String, RegionStore> regionStores = new HashMap<String, RegionStore>();
+
+	/**
+	 * Asks for the game to be saved. The save happens at the end of the next tick (see {@link FileHandler#tick}), 
+	 * so this is safe to call from any thread, like the AWT thread that handles key presses
+	 */
+	public static void requestSave()
+	{
+		saveRequested = true;
+	}
+	
+	/**
+	 * Asks for the game to be loaded. The load happens at the end of the next tick (see {@link FileHandler#tick}), 
+	 * after any save that is still being written has finished
+	 */
+	public static void requestLoad()
+	{
+		loadRequested = true;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the journal that Tile edits are recorded to. It has to be added to every World as a 
+	 * {@link ca.hjalmionlabs.world.TileListener TileListener}
+	 * @return the EditJournal
+	 */
+	public static EditJournal getJournal()
+	{
+		return journal;
+	}
+	
+	/**
+	 * Carries out any save or load that was asked for, flushes the journal every {@link FileHandler#JOURNAL_FLUSH_TICKS} 
+	 * ticks and autosaves every {@link FileHandler#AUTOSAVE_TICKS} ticks. Must be called on the game thread, at the end 
+	 * of a tick. A save only takes a {@link SaveSnapshot} here; writing 
+	 * it happens on the save thread. If a save is still being written, a new one waits for the next tick
+	 * @param wh - WorldHandler holding the Worlds
+	 * @param player - The Player
+	 */
+	public static void tick(WorldHandler wh, Player player)
+	{
+		ticks++;
+		if(ticks % AUTOSAVE_TICKS == 0 && !newGame)
+			saveRequested = true;
+		if(ticks % JOURNAL_FLUSH_TICKS == 0)
+			flushJournal();
+		
+		if(saveRequested && !isSaving())
+		{
+			saveRequested = false;
+			saveGameAsync(wh, player);
+		}
+		if(loadRequested && !isSaving())
+		{
+			loadRequested = false;
+			loadGame(wh, player);
+		}
+	}
+	
+	/**
+	 * Hands the Tile edits recorded since the last flush to the save thread, which appends them to the journal
+	 */
+	public static void flushJournal()
+	{
+		final byte[] edits = journal.drain();
+		if(edits == null)
+			return;
+		saver.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					journal.append(edits);
+				} catch(IOException ioe)
+				{
+					System.err.println(ioe.getMessage());
+					ioe.printStackTrace();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Takes a {@link SaveSnapshot} of the game right away and writes it on the save thread. The snapshot only has 
+	 * the Chunks that changed since the last save, unless this is the first save of a new game
+	 * @param wh - WorldHandler holding the Worlds to save
+	 * @param player - The Player, whose position is saved
+	 * @return a Future that completes once the save is on the disk
+	 */
+	public static Future<?> saveGameAsync(WorldHandler wh, Player player)
+	{
+		final long number = checkpoint + 1;
+		final SaveSnapshot snapshot = takeSnapshot(wh, player);
+		saveProgress = 0;
+		pendingSave = saver.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				writeSave(snapshot, number);
+			}
+		});
+		return pendingSave;
+	}
+	
+	/**
+	 * Save the game to the hard drive, on the calling thread
+	 * @param wh - WorldHandler holding the Worlds to save
+	 * @param player - The Player, whose position is saved
+	 */
+	public static void saveGame(WorldHandler wh, Player player)
+	{
+		long number = checkpoint + 1;
+		writeSave(takeSnapshot(wh, player), number);
+	}
 	
-	private static List<Object> save = new ArrayList<Object>();
-	private static List<Object> load = new ArrayList<Object>();
+	/**
+	 * Whether or not a save is still being written
+	 * @return true if the save thread is busy, false otherwise
+	 */
+	public static boolean isSaving()
+	{
+		return pendingSave != null && !pendingSave.isDone();
+	}
 	
 	/**
-	 * Puts what needs to be saved into a {@link List} for easy save and load
-	 * @param gui - GUIHandler
-	 * @param wh - WorldHandler
-	 * @return a List<Object> that holds the stuff we need to save the game
+	 * <strong>Getter</strong><br>
+	 * Gets how far along the current (or last) save is
+	 * @return a value from 0 (just started) to 1 (done)
 	 */
-	public static List<Object> prepareGame(GUIHandler gui, WorldHandler wh)
+	public static float getSaveProgress()
 	{
-		save.add(gui);
-		save.add(wh);
-		return save;
+		return saveProgress;
 	}
 	
 	/**
-	 * Save the game to the hard drive
-	 * @param game
+	 * Gets the {@link RegionStore} that the supplied World's {@link Chunk}s are saved to
+	 * @param name - Name of the World
+	 * @return the RegionStore, in a directory with the World's name next to {@link FileHandler#SAVE_FILE}
+	 */
+	public static RegionStore getRegionStore(String name)
+	{
+		synchronized(regionStores)
+		{
+			RegionStore store = regionStores.get(name);
+			if(store == null)
+			{
+				store = new RegionStore(new File(SAVE_FILE.getParentFile(), name));
+				regionStores.put(name, store);
+			}
+			return store;
+		}
+	}
+	
+	/* 
+	 * Takes a snapshot for the next checkpoint and hands its Chunks to the RegionStores. The first save of a new game 
+	 * throws away the old game's regions and has every modified Chunk; after that only the Chunks that changed. 
+	 * Must be called on the game thread, between ticks. The snapshot is consistent as long as only the game thread 
+	 * changes the Worlds, which is why clicks are queued and the background Worlds are waited for here
 	 */
-	public static void saveGame(Game game)
+	private static SaveSnapshot takeSnapshot(WorldHandler wh, Player player)
 	{
+		wh.awaitBackground();	// The Worlds that aren't current mustn't change while their Chunks are copied
+		boolean full = newGame;
+		for(World world : wh.getWorlds())
+		{
+			RegionStore store = getRegionStore(world.getName());
+			if(full)
+				store.delete();
+			world.getTileHandler().setRegionStore(store);
+		}
+		newGame = false;
+		
+		SaveSnapshot snapshot = new SaveSnapshot(wh, player, full);
+		for(SaveSnapshot.WorldState world : snapshot.worlds)
+		{
+			RegionStore store = getRegionStore(world.name);
+			for(int i = 0; i < world.chunkCount(); i++)
+				store.stage(world.chunkCoords[i * 2], world.chunkCoords[i * 2 + 1], world.chunkTiles[i]);
+		}
+		/* Everything recorded so far is in the snapshot, but it is only safe once the snapshot is committed. Until then 
+		 * it has to be in the old journal, which the save thread only empties once the checkpoint is on the disk */
+		flushJournal();
+		journal.startNew();
+		System.out.printf("Saving %d %s chunks (snapshot took %.2f ms)...%n", snapshot.totalChunks(), full ? "modified" : "changed", snapshot.captureTime / 1e6);
+		return snapshot;
+	}
+	
+	/**
+	 * Writes a {@link SaveSnapshot} to the hard drive as the supplied checkpoint, and then starts a new journal. The 
+	 * staged Chunks are written to their regions first. Then a new save file is written to a temporary file and flushed 
+	 * to the disk, which then replaces {@link FileHandler#SAVE_FILE}, so a failed save never leaves a half written file 
+	 * behind; or, if the save file isn't too big yet, the checkpoint is appended to it, and only counts once its COMMIT 
+	 * record is on the disk
+	 * @param snapshot - The snapshot to write
+	 * @param number - Number of the checkpoint
+	 */
+	private static synchronized void writeSave(SaveSnapshot snapshot, long number)
+	{
+		long start = System.nanoTime();
 		try
-		{	
-			File dir = new File("D:\\Programming\\Java\\workspace\\CompSciFinal\\worlds\\");
-			
+		{
+			File dir = SAVE_FILE.getParentFile();
 			if(!dir.exists())
 			{
 				System.out.println("Directory doesn't exist.. Creating it now!");
 				dir.mkdirs();
 			}
 			
-			file = new File(dir, "test.world");
-			if(!file.exists())
+			int written = 0;
+			for(int i = 0; i < snapshot.worlds.size(); i++)
 			{
-				System.out.println("File doesn't exist... Creating it now!");
-				file.createNewFile();
+				written += getRegionStore(snapshot.worlds.get(i).name).write();
+				saveProgress = (i + 1f) / (snapshot.worlds.size() + 1);
+				System.out.println("Saving... " + (int)(saveProgress * 100) + "%");
 			}
-			
-			outStream = new FileOutputStream(file);
-			output = new ObjectOutputStream(outStream);
-			
-			output.writeObject(save);
-			
-			System.out.println("Object written to " + file.getName() + "!");
-			
-			output.close();
-			outStream.close();
-			
-		} catch(NullPointerException e)
-		{
-			System.err.println(e.getMessage());
-			e.printStackTrace();
+
+			if(snapshot.full || rewriteNeeded || fileLength > BUFFER_SIZE || !SAVE_FILE.exists())
+			{
+				File temp = new File(dir, SAVE_FILE.getName() + ".tmp");
+				try(FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))
+				{
+					ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+					buffer.putInt(MAGIC);
+					buffer.putShort(VERSION);
+					putPalette(buffer);
+					
+					fileWorldIds.clear();
+					writeCheckpoint(channel, buffer, snapshot, number);
+					fileLength = channel.position();
+				}
+				Files.move(temp.toPath(), SAVE_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} else
+			{
+				try(FileChannel channel = FileChannel.open(SAVE_FILE.toPath(), StandardOpenOption.WRITE))
+				{
+					channel.truncate(fileLength);	// Throw away anything left behind by a save that didn't finish
+					channel.position(fileLength);
+					writeCheckpoint(channel, ByteBuffer.allocateDirect(BUFFER_SIZE), snapshot, number);
+					fileLength = channel.position();
+				}
+			}
+			checkpoint = number;
+			rewriteNeeded = false;
+			journal.reset(number);
+
+			saveProgress = 1;
+			long nanos = System.nanoTime() - start;
+			GameMetrics.saved(number, written, nanos);
+			System.out.printf("Checkpoint %d (%d chunks) written in %.2f ms!%n", number, written, nanos / 1e6);
+
 		} catch(IOException ioe)
 		{
+			rewriteNeeded = true;	// Chunks that weren't written stay staged, and are written by the next save
+			fileWorldIds.clear();
 			System.err.println(ioe.getMessage());
 			ioe.printStackTrace();
 		}
 	}
 	
-	public List<Object> loadGame(Game game)
+	/* Writes the records of one checkpoint, ending with its COMMIT, and flushes them to the disk */
+	private static void writeCheckpoint(FileChannel channel, ByteBuffer buffer, SaveSnapshot snapshot, long number) throws IOException
+	{
+		for(SaveSnapshot.WorldState world : snapshot.worlds)
+		{
+			Integer id = fileWorldIds.get(world.name);
+			if(id == null)
+			{
+				id = fileWorldIds.size();
+				ensureSpace(channel, buffer, 1024);
+				buffer.put(WORLD);
+				buffer.put(id.byteValue());
+				putString(buffer, world.className);
+				putString(buffer, world.name);
+				buffer.putInt(world.width);
+				buffer.putInt(world.height);
+				buffer.putLong(world.seed);
+				fileWorldIds.put(world.name, id);
+			}
+		}
+		
+		ensureSpace(channel, buffer, 1024);
+		buffer.put(STATE);
+		putString(buffer, snapshot.currentWorld);
+		buffer.putInt(snapshot.playerX);
+		buffer.putInt(snapshot.playerY);
+		buffer.put((byte)snapshot.worlds.size());
+		for(SaveSnapshot.WorldState world : snapshot.worlds)
+		{
+			ensureSpace(channel, buffer, 9);
+			buffer.put(fileWorldIds.get(world.name).byteValue());
+			buffer.putInt(world.xOffset);
+			buffer.putInt(world.yOffset);
+		}
+		flush(channel, buffer);
+		channel.force(true);	// Everything before the COMMIT has to be on the disk before the COMMIT is
+		
+		buffer.put(COMMIT);
+		buffer.putLong(number);
+		flush(channel, buffer);
+		channel.force(true);
+	}
+
+	/**
+	 * Load the game from the hard drive, and replay the journal on top of it. Every saved {@link World} replaces the 
+	 * World with the same name in the supplied {@link WorldHandler}, and the Player is moved back to where it was saved. 
+	 * Entities aren't saved, so the other Entities of a replaced World are moved into the loaded World as they are. 
+	 * The Worlds start out with no {@link Chunk}s loaded; they are read from the Worlds' {@link RegionStore}s as they 
+	 * are needed. Since every edit is journaled, this brings back the game as it was at the last journal flush
+	 * @param wh - WorldHandler to put the loaded Worlds in
+	 * @param player - The Player to move
+	 * @return true if the game was loaded, false if there was no save or it couldn't be read
+	 */
+	public static boolean loadGame(WorldHandler wh, Player player)
 	{
+		if(!SAVE_FILE.exists())
+		{
+			System.out.println("Can't load a world that doesn't exist!");
+			return false;
+		}
+
 		try
 		{
-			File dir = new File(game.getClass().getClassLoader().getResource(File.separator).getPath());
-			
-			file = new File(dir, File.separator + "worlds" + File.separator + "test.world");
-			
-			System.out.println(file.getAbsolutePath());
-			
-			if(!file.exists())
+			flushJournal();
+			saver.submit(new Runnable()	// Wait for every journal flush to be written
 			{
-				System.out.println("Can't load a world that doesn't exist!");
+				@Override
+				public void run() {}
+			}).get();
+			journal.close();
+		} catch(InterruptedException | ExecutionException e)
+		{
+			e.printStackTrace();
+		}
+		return readSave(wh, player);
+	}
+	
+	/* Reads SAVE_FILE and the journal into the supplied WorldHandler, once the save thread is idle */
+	private static synchronized boolean readSave(WorldHandler wh, Player player)
+	{
+		long start = System.nanoTime();
+		wh.awaitBackground();
+		try(FileChannel channel = FileChannel.open(SAVE_FILE.toPath(), StandardOpenOption.READ))
+		{
+			ByteBuffer buffer = ByteBuffer.allocate((int)channel.size());
+			while(buffer.hasRemaining() && channel.read(buffer) >= 0);
+			buffer.flip();
+
+			if(buffer.remaining() < 6 || buffer.getInt() != MAGIC)
+			{
+				System.out.println(SAVE_FILE.getName() + " is not a save file (or was made by an old version of the game)");
+				return false;
 			}
+			short version = buffer.getShort();
+			if(version != VERSION)
+			{
+				System.out.println("Can't load save version " + version + ", only version " + VERSION);
+				return false;
+			}
+			getPalette(buffer);	// The Chunks are in the regions, which have their own palette
+
+			/* Find the end of the last checkpoint that was committed, then read everything up to it */
+			int records = buffer.position();
+			Loader scan = new Loader(false);
+			readRecords(buffer, scan);
+			if(scan.committedEnd == 0)
+			{
+				System.out.println(SAVE_FILE.getName() + " doesn't have a finished save in it");
+				return false;
+			}
+			buffer.position(records);
+			buffer.limit(scan.committedEnd);
+			Loader loader = new Loader(true);
+			readRecords(buffer, loader);
+
+			for(World world : loader.worlds.values())
+			{
+				RegionStore store = getRegionStore(world.getName());
+				store.discardStaged();
+				world.getTileHandler().setRegionStore(store);
+				moveEntities(wh, world);
+				wh.replace(world);
+			}
+			World current = wh.get(loader.currentName);
+			player.setWorld(current);
+			player.setX(loader.playerX);
+			player.setY(loader.playerY);
 			
-			inputStream = new FileInputStream(file);
-			input = new ObjectInputStream(inputStream);
-			
-			load = (List<Object>) input.readObject();
-			
-			System.out.println("World successfully loaded!");
+			checkpoint = loader.checkpoint;
+			fileLength = loader.committedEnd;
+			newGame = false;
+			fileWorldIds.clear();
+			for(Map.Entry<Integer, World> entry : loader.worlds.entrySet())
+				fileWorldIds.put(entry.getValue().getName(), entry.getKey());
 			
-			return load;
-		} catch(IOException ioe)
-		{
-			System.err.println(ioe.getMessage());
-			ioe.printStackTrace();
-			return null;
-		} catch (ClassNotFoundException e)
+			int edits = journal.replay(checkpoint, wh);
+
+			long nanos = System.nanoTime() - start;
+			GameMetrics.loaded(checkpoint, edits, nanos);
+			System.out.printf("World successfully loaded from checkpoint %d, replayed %d journaled edits (%.2f ms)!%n", checkpoint, edits, nanos / 1e6);
+			return true;
+		} catch(IOException | ReflectiveOperationException | RuntimeException e)
 		{
 			System.err.println(e.getMessage());
 			e.printStackTrace();
-			return null;
+			return false;
+		}
+	}
+	
+	/* Entities aren't saved, so the Entities of the World that a loaded World replaces are moved into it, where they were */
+	private static void moveEntities(WorldHandler wh, World loaded)
+	{
+		for(World old : wh.getWorlds())
+		{
+			if(old == loaded || !old.getName().equals(loaded.getName()))
+				continue;
+			EntityStore store = old.getEntityHandler().getStore();
+			Entity[] entities = new Entity[store.size()];	// Moving an Entity takes it out of the store, so copy them first
+			for(int i = 0; i < entities.length; i++)
+				entities[i] = store.getEntity(i);
+			for(Entity entity : entities)
+				entity.setWorld(loaded);
+		}
+	}
+	
+	/**
+	 * What has been read from the records of a save file so far. If it doesn't load, it only finds the last COMMIT
+	 */
+	private static class Loader
+	{
+		private final boolean load;
+		private final Map<Integer, World> worlds = new LinkedHashMap<Integer, World>();
+		private String currentName;
+		private int playerX;
+		private int playerY;
+		private long checkpoint;
+		/* Position just after the last COMMIT record */
+		private int committedEnd;
+		
+		private Loader(boolean load)
+		{
+			this.load = load;
+		}
+	}
+	
+	/* Reads records until the end of the buffer, a record that is cut off or an unknown record */
+	private static void readRecords(ByteBuffer buffer, Loader loader) throws ReflectiveOperationException
+	{
+		boolean load = loader.load;
+		try
+		{
+			while(buffer.hasRemaining())
+			{
+				byte kind = buffer.get();
+				if(kind == WORLD)
+				{
+					int id = buffer.get() & 0xFF;
+					String className = getString(buffer);
+					String name = getString(buffer);
+					int width = buffer.getInt();
+					int height = buffer.getInt();
+					long seed = buffer.getLong();
+					if(load)
+					{
+						World world = createWorld(className, name, seed);
+						if(world.getWidth() != width || world.getHeight() != height)
+							System.out.println("Warning: " + name + " was saved as " + width + "x" + height + " but is now " + world.getWidth() + "x" + world.getHeight());
+						loader.worlds.put(id, world);
+					}
+				} else if(kind == STATE)
+				{
+					loader.currentName = getString(buffer);
+					loader.playerX = buffer.getInt();
+					loader.playerY = buffer.getInt();
+					int count = buffer.get() & 0xFF;
+					for(int i = 0; i < count; i++)
+					{
+						World world = loader.worlds.get(buffer.get() & 0xFF);
+						int xOffset = buffer.getInt();
+						int yOffset = buffer.getInt();
+						if(load)
+						{
+							world.getCamera().setXOffset(xOffset);
+							world.getCamera().setYOffset(yOffset);
+						}
+					}
+				} else if(kind == COMMIT)
+				{
+					loader.checkpoint = buffer.getLong();
+					loader.committedEnd = buffer.position();
+				} else
+				{
+					System.out.println("Unknown record " + kind + " in " + SAVE_FILE.getName() + ", ignoring the rest of it");
+					return;
+				}
+			}
+		} catch(BufferUnderflowException e)
+		{
+			// The last record was cut off, by a save that didn't finish
+		}
+	}
+
+	/**
+	 * Writes every {@link TileType}'s id and name, so saved ids can be mapped back to TileTypes with {@link FileHandler#getPalette}
+	 * @param buffer - Buffer to write the palette to
+	 */
+	public static void putPalette(ByteBuffer buffer)
+	{
+		TileType[] types = TileType.values();
+		buffer.put((byte)types.length);
+		for(TileType type : types)
+		{
+			buffer.put(type.getID());
+			putString(buffer, type.getName());
 		}
 	}
+
+	/**
+	 * Reads a palette written by {@link FileHandler#putPalette}, and maps the ids in it to the ids of the {@link TileType}s 
+	 * with the same names. Names that no longer exist map to {@link TileType#NULL}
+	 * @param buffer - Buffer to read the palette from
+	 * @return a table of 256 TileType ids, indexed by (unsigned) saved id
+	 */
+	public static byte[] getPalette(ByteBuffer buffer)
+	{
+		byte[] remap = new byte[256];
+		int paletteSize = buffer.get() & 0xFF;
+		for(int i = 0; i < paletteSize; i++)
+		{
+			int id = buffer.get() & 0xFF;
+			String name = getString(buffer);
+			TileType type = TileType.NULL;
+			for(TileType t : TileType.values())
+				if(t.getName().equals(name))
+					type = t;
+			remap[id] = type.getID();
+		}
+		return remap;
+	}
+
+	/* Creates an empty World of the saved class, using its (String name, long seed) constructor */
+	private static World createWorld(String className, String name, long seed) throws ReflectiveOperationException
+	{
+		Class<? extends World> type = Class.forName(className).asSubclass(World.class);
+		Constructor<? extends World> constructor = type.getConstructor(String.class, long.class);
+		return constructor.newInstance(name, seed);
+	}
+
+	/* Writes out the buffer if there is less than the specified amount of space left in it */
+	private static void ensureSpace(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException
+	{
+		if(buffer.remaining() < bytes)
+			flush(channel, buffer);
+	}
+
+	/* Writes everything in the buffer to the file and empties the buffer */
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException
+	{
+		buffer.flip();
+		while(buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	}
+
+	/**
+	 * Writes a String as a short length followed by that many UTF-8 bytes
+	 * @param buffer - Buffer to write to
+	 * @param string - String to write
+	 */
+	public static void putString(ByteBuffer buffer, String string)
+	{
+		byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+		buffer.putShort((short)bytes.length);
+		buffer.put(bytes);
+	}
+
+	/**
+	 * Reads a String written by {@link FileHandler#putString}
+	 * @param buffer - Buffer to read from
+	 * @return the String that was read
+	 */
+	public static String getString(ByteBuffer buffer)
+	{
+		byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
 }
@@ -4,20 +4,23 @@ import java.awt.event.KeyEvent;
 import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.util.Arrays;
 import java.util.List;
 
 import ca.hjalmionlabs.main.Game;
 import ca.hjalmionlabs.rendering.gui.toolbar.Toolbar;
 import ca.hjalmionlabs.rendering.gui.toolbar.ToolbarBox;
+import ca.hjalmionlabs.world.Camera;
 import ca.hjalmionlabs.world.World;
 import ca.hjalmionlabs.world.tiles.Tile;
 import ca.hjalmionlabs.world.tiles.TileType;
 
 /**
- * Instantiates the InputHandler and adds this to the {@link Game} as the {@link KeyListener} and {@link MouseListener}
+ * Instantiates the InputHandler and adds this to the {@link Game} as the {@link KeyListener}, {@link MouseListener} and {@link MouseMotionListener}
  * @param game - Game to add this to
  */
-public class InputHandler implements KeyListener, MouseListener
+public class InputHandler implements KeyListener, MouseListener, MouseMotionListener
 {	
 	private Game game;
 	
@@ -26,6 +29,7 @@ public class InputHandler implements KeyListener, MouseListener
 		this.game = game;
 		game.addKeyListener(this);
 		game.addMouseListener(this);
+		game.addMouseMotionListener(this);
 	}
 	
 	/**
@@ -93,58 +97,20 @@ public class InputHandler implements KeyListener, MouseListener
 	
 	/* Other Keys */
 	public final Key KEY_K = new Key();
+	public final Key KEY_L = new Key();
+	
+	/* The last Tile that was painted while dragging the mouse, so fast drags don't leave gaps */
+	private int lastPaintX;
+	private int lastPaintY;
+	
+	/* Tiles that were clicked or dragged over, waiting to be placed on the game thread: xTile, yTile and TileType id for each one */
+	private int[] queuedTiles = new int[3 * 64];
+	private int queuedCount;
+	/* The Tiles that the game thread is placing. Swapped with queuedTiles, so the AWT thread never waits for the World */
+	private int[] placingTiles = new int[3 * 64];
 	
 	@Override
-	public void mouseClicked(MouseEvent e)
-	{
-		int button = e.getButton();
-		if(button == MouseEvent.BUTTON1)
-		{
-			int x = e.getX() / Tile.TILEWIDTH - (int)Math.ceil((((WorldHandler)(Game.handlers.get("world"))).getCurrentWorld().xOffset / Tile.TILEWIDTH));	// Puts the x as a x Tile coordinate with consideration to any offset
-			int y = e.getY() / Tile.TILEHEIGHT - (int)Math.ceil((((WorldHandler)(Game.handlers.get("world"))).getCurrentWorld().yOffset / Tile.TILEHEIGHT));	// Puts the y as a y Tile coordinate with consideration to any offset
-			
-			System.out.println("Clicked at (" + x + ", " + y + ")");
-			
-			/* Loops over the World */
-			for(int i = 0; i < Game.currentWorld.getSize(); i++)
-			{
-				World currentWorld = ((WorldHandler)(Game.handlers.get("world"))).getCurrentWorld();	// Get the current World
-				Tile currentTile = currentWorld.getTile(i);	// Get the tile at this position
-				if(currentTile.getTileX() == x && currentTile.getTileY() == y)	// If user clicked in the Tile
-				{
-					System.out.println("Replace " + currentTile.getType() + " with " + currentType);
-					int tileX = currentTile.getTileX();
-					int tileY = currentTile.getTileY();
-					switch(currentType)
-					{
-						case DIRT:
-							currentWorld.replaceTile(i, TileType.DIRT);
-							System.out.println("Placed a DIRT tile at (" + tileX + ", " + tileY + ")");
-							break;
-						case GRASS:
-							currentWorld.replaceTile(i, TileType.GRASS);
-							System.out.println("Placed a GRASS tile at (" + tileX + ", " + tileY + ")");
-							break;
-						case STONE:
-							currentWorld.replaceTile(i, TileType.STONE);
-							System.out.println("Placed a STONE tile at (" + tileX + ", " + tileY + ")");
-							break;
-						case WATER:
-							currentWorld.replaceTile(i, TileType.WATER);
-							System.out.println("Placed a WATER tile at (" + tileX + ", " + tileY + ")");
-							break;
-						case LAVA:
-							currentWorld.replaceTile(i, TileType.LAVA);
-							System.out.println("Placed a LAVA tile at (" + tileX + ", " + tileY + ")");
-							break;
-						default:	// TileType.NULL ; Place a Stone Tile instead
-							currentWorld.replaceTile(i, TileType.STONE);
-							System.out.println("Placed a LAVA tile at (" + tileX + ", " + tileY + ")");
-					}
-				}
-			}
-		}
-	}
+	public void mouseClicked(MouseEvent e) {}
 	
 	@Override
 	public void mouseEntered(MouseEvent e) {
@@ -157,10 +123,118 @@ public class InputHandler implements KeyListener, MouseListener
 	}
 
 	@Override
-	public void mousePressed(MouseEvent arg0) {}
+	public void mousePressed(MouseEvent e)
+	{
+		if(e.getButton() == MouseEvent.BUTTON1)
+		{
+			World currentWorld = ((WorldHandler)(Game.handlers.get("world"))).getCurrentWorld();	// Get the current World
+			Camera camera = currentWorld.getCamera();
+			int x = Math.floorDiv(camera.toWorldX(e.getX()), Tile.TILEWIDTH);	// Puts the x as a x Tile coordinate with consideration to the Camera
+			int y = Math.floorDiv(camera.toWorldY(e.getY()), Tile.TILEHEIGHT);	// Puts the y as a y Tile coordinate with consideration to the Camera
+			
+			System.out.println("Clicked at (" + x + ", " + y + ")");
+			
+			queueTile(x, y);
+			lastPaintX = x;
+			lastPaintY = y;
+			
+			System.out.println("Placing a " + placedType() + " tile at (" + x + ", " + y + ")");
+		}
+	}
 
 	@Override
 	public void mouseReleased(MouseEvent arg0) {}
+	
+	@Override
+	public void mouseDragged(MouseEvent e)
+	{
+		if((e.getModifiersEx() & MouseEvent.BUTTON1_DOWN_MASK) == 0)
+			return;
+		
+		World currentWorld = ((WorldHandler)(Game.handlers.get("world"))).getCurrentWorld();
+		Camera camera = currentWorld.getCamera();
+		int x = Math.floorDiv(camera.toWorldX(e.getX()), Tile.TILEWIDTH);
+		int y = Math.floorDiv(camera.toWorldY(e.getY()), Tile.TILEHEIGHT);
+		if(x == lastPaintX && y == lastPaintY)
+			return;
+		
+		/* Walk from the last painted Tile to this one (Bresenham), so that moving the mouse quickly still paints a line */
+		int dx = Math.abs(x - lastPaintX);
+		int dy = -Math.abs(y - lastPaintY);
+		int stepX = lastPaintX < x ? 1 : -1;
+		int stepY = lastPaintY < y ? 1 : -1;
+		int error = dx + dy;
+		int tileX = lastPaintX;
+		int tileY = lastPaintY;
+		while(tileX != x || tileY != y)
+		{
+			int error2 = 2 * error;
+			if(error2 >= dy)
+			{
+				error += dy;
+				tileX += stepX;
+			}
+			if(error2 <= dx)
+			{
+				error += dx;
+				tileY += stepY;
+			}
+			queueTile(tileX, tileY);
+		}
+		lastPaintX = x;
+		lastPaintY = y;
+	}
+	
+	@Override
+	public void mouseMoved(MouseEvent e) {}
+	
+	/**
+	 * Queues the currently selected {@link TileType} to be placed at the specified Tile coordinates. Mouse events 
+	 * are handled on the AWT thread, which must never touch the World while the game thread ticks it, so the Tile 
+	 * is only placed by {@link InputHandler#placeQueuedTiles(World)} at the start of the next tick, the same way 
+	 * {@link FileHandler#requestSave()} waits for the tick
+	 * @param tileX - xTile-coord to place the Tile at
+	 * @param tileY - yTile-coord to place the Tile at
+	 */
+	private synchronized void queueTile(int tileX, int tileY)
+	{
+		if(queuedCount + 3 > queuedTiles.length)
+			queuedTiles = Arrays.copyOf(queuedTiles, queuedTiles.length * 2);
+		queuedTiles[queuedCount++] = tileX;
+		queuedTiles[queuedCount++] = tileY;
+		queuedTiles[queuedCount++] = placedType().getID();
+	}
+	
+	/**
+	 * Places every {@link Tile} that was clicked or dragged over since the last call, in the order they were queued. 
+	 * Tiles that already have the right type are left alone. Must be called on the game thread
+	 * @param world - The World to place the Tiles in
+	 */
+	public void placeQueuedTiles(World world)
+	{
+		int[] tiles;
+		int count;
+		synchronized(this)
+		{
+			tiles = queuedTiles;
+			count = queuedCount;
+			queuedTiles = placingTiles;
+			queuedCount = 0;
+			placingTiles = tiles;
+		}
+		for(int i = 0; i < count; i += 3)
+		{
+			TileType type = TileType.fromID((byte)tiles[i + 2]);
+			if(world.getTypeAt(tiles[i], tiles[i + 1]) != type)
+				world.replaceTile(tiles[i], tiles[i + 1], type);
+		}
+	}
+	
+	/* The TileType that clicking places. TileType.NULL can't be placed, so a Stone Tile is placed instead */
+	private TileType placedType()
+	{
+		return currentType == TileType.NULL ? TileType.STONE : currentType;
+	}
 
 	@Override
 	public void keyPressed(KeyEvent e)
@@ -202,9 +276,17 @@ public class InputHandler implements KeyListener, MouseListener
 		{
 			if(isPressed)
 			{
-				/* Save the game to the HD */
-				FileHandler.prepareGame((GUIHandler)Game.handlers.get("gui"), (WorldHandler)Game.handlers.get("world"));
-				FileHandler.saveGame(game);
+				/* Save the game to the HD. The game thread takes a snapshot at the end of the tick, and the save thread writes it */
+				FileHandler.requestSave();
+			}
+		}
+		if(keyCode == KeyEvent.VK_L)
+		{
+			KEY_L.toggle(isPressed);
+			if(isPressed)
+			{
+				/* Load the game from the HD at the end of the tick */
+				FileHandler.requestLoad();
 			}
 		}
 		if(keyCode == KeyEvent.VK_1)
@@ -0,0 +1,136 @@
+package ca.hjalmionlabs.handlers;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ca.hjalmionlabs.entities.Player;
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.ChunkMap;
+import ca.hjalmionlabs.world.World;
+
+/**
+ * A copy of everything that goes into a save, taken between two ticks. Taking it only copies the modified {@link Chunk}s 
+ * (1 KB each), so it is cheap enough to do on the game thread, and afterwards the save can be written on another thread 
+ * while the game keeps changing the real Worlds. An incremental snapshot only copies the Chunks that changed since 
+ * the last one. It is only a consistent picture of one moment if nothing but the game thread changes the 
+ * Worlds while it is taken (see {@link FileHandler}).
+ * @author Nick Mills
+ */
+public class SaveSnapshot
+{
+	/**
+	 * The saved state of one {@link World}
+	 */
+	public static class WorldState
+	{
+		public final String className;
+		public final String name;
+		public final int width;
+		public final int height;
+		public final long seed;
+		public final int xOffset;
+		public final int yOffset;
+		/* Chunk coordinates of each saved Chunk, as chunkX, chunkY pairs */
+		public final int[] chunkCoords;
+		/* Copies of the saved Chunks' Tiles, in the same order as chunkCoords */
+		public final byte[][] chunkTiles;
+		
+		private WorldState(World world, boolean full)
+		{
+			className = world.getClass().getName();
+			name = world.getName();
+			width = world.getWidth();
+			height = world.getHeight();
+			seed = world.getSeed();
+			xOffset = world.getCamera().getXOffset();
+			yOffset = world.getCamera().getYOffset();
+			
+			ChunkMap chunks = world.getTileHandler().getChunks();
+			int saved = 0;
+			for(int slot = 0; slot < chunks.capacity(); slot++)
+			{
+				Chunk chunk = chunks.at(slot);
+				if(chunk != null && chunk.isModified() && (full || chunk.isUnsaved()))
+					saved++;
+			}
+			
+			chunkCoords = new int[saved * 2];
+			chunkTiles = new byte[saved][];
+			int i = 0;
+			for(int slot = 0; slot < chunks.capacity(); slot++)
+			{
+				Chunk chunk = chunks.at(slot);
+				if(chunk == null || !chunk.isModified() || !(full || chunk.isUnsaved()))
+					continue;
+				chunkCoords[i * 2] = chunk.getChunkX();
+				chunkCoords[i * 2 + 1] = chunk.getChunkY();
+				chunkTiles[i] = chunk.copyTiles();
+				chunk.setUnsaved(false);
+				i++;
+			}
+		}
+		
+		/**
+		 * Gets how many Chunks are saved for this World
+		 * @return the number of saved Chunks
+		 */
+		public int chunkCount()
+		{
+			return chunkTiles.length;
+		}
+	}
+	
+	public final String currentWorld;
+	public final int playerX;
+	public final int playerY;
+	public final List<WorldState> worlds;
+	/* Whether this snapshot has every modified Chunk, or only the ones that changed since the last snapshot */
+	public final boolean full;
+	/* How long it took to take this snapshot, in nanoseconds */
+	public final long captureTime;
+	
+	/**
+	 * Takes a full snapshot of the supplied Worlds and Player. Must be called on the game thread, between ticks
+	 * @param wh - WorldHandler holding the Worlds to save
+	 * @param player - The Player, whose position is saved
+	 */
+	public SaveSnapshot(WorldHandler wh, Player player)
+	{
+		this(wh, player, true);
+	}
+	
+	/**
+	 * Takes a snapshot of the supplied Worlds and Player. Must be called on the game thread, between ticks. 
+	 * Every Chunk that is copied stops being {@link Chunk#isUnsaved() unsaved}
+	 * @param wh - WorldHandler holding the Worlds to save
+	 * @param player - The Player, whose position is saved
+	 * @param full - true to copy every modified Chunk, false to only copy the Chunks that changed since the last snapshot
+	 */
+	public SaveSnapshot(WorldHandler wh, Player player, boolean full)
+	{
+		this.full = full;
+		long start = System.nanoTime();
+		currentWorld = wh.getCurrentWorld().getName();
+		playerX = player.getX();
+		playerY = player.getY();
+		
+		List<WorldState> states = new ArrayList<WorldState>();
+		for(World world : wh.getWorlds())
+			states.add(new WorldState(world, full));
+		worlds = Collections.unmodifiableList(states);
+		captureTime = System.nanoTime() - start;
+	}
+	
+	/**
+	 * Gets how many Chunks are saved across every World
+	 * @return the total number of saved Chunks
+	 */
+	public int totalChunks()
+	{
+		int total = 0;
+		for(WorldState world : worlds)
+			total += world.chunkCount();
+		return total;
+	}
+}
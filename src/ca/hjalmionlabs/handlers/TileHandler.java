@@ -1,101 +1,486 @@
 package ca.hjalmionlabs.handlers;
 
-import java.awt.Graphics;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
 
+import ca.hjalmionlabs.profiling.GameMetrics;
+import ca.hjalmionlabs.world.Camera;
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.ChunkMap;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.gen.ChunkGenerationTask;
+import ca.hjalmionlabs.world.region.RegionStore;
 import ca.hjalmionlabs.world.tiles.Tile;
 import ca.hjalmionlabs.world.tiles.TileType;
 
 /**
- * Handles the updating and rendering of {@link Tile}s which are stored as an {@link ArrayList}. Use this object
- * to interact with any Tiles.
+ * Handles the updating and rendering of {@link Tile}s. The Tiles are stored in {@link Chunk}s of {@link TileType} ids 
+ * (one byte per Tile) instead of one object per Tile. Chunks are read from the World's {@link RegionStore} (once the game 
+ * has been saved or loaded) or generated by the {@link World} the first time they are needed, and unloaded again once 
+ * they are far away from the Player. Use this object to interact with any Tiles.
  */
 public class TileHandler implements Serializable 
 {
+	private static final long serialVersionUID = -2990347740632963051L;
 
+	/** How many Chunks around the Player's Chunk are kept loaded, in every direction */
+	public static final int LOAD_RADIUS = 2;
+	/** Chunks further away than this many Chunks from the Player's Chunk are unloaded */
+	public static final int UNLOAD_RADIUS = 4;
+	/** Chunks further away than this many Chunks from the Player's Chunk don't keep their cached image */
+	public static final int IMAGE_RADIUS = 1;
+	
+	/* The World that these Tiles belong to */
+	private final World world;
+	/* Width of the World, in Tiles */
+	private final int width;
+	/* Height of the World, in Tiles */
+	private final int height;
+	
+	/**
+	 * The loaded {@link Chunk}s, by Chunk coordinates
+	 */
+	private final ChunkMap chunks = new ChunkMap();
+	
+	/* The last Chunk that was looked up. Most lookups hit the same Chunk as the one before */
+	private transient Chunk lastChunk;
+	
+	/* How many getChunk() calls found their Chunk loaded, and how many had to load or generate it. Not exact when Tiles are looked up from more than one thread */
+	private transient long chunkHits;
+	private transient long chunkMisses;
+	
+	/* Chunks that loadAround() is about to generate */
+	private final Chunk[] pending = new Chunk[(2 * LOAD_RADIUS + 1) * (2 * LOAD_RADIUS + 1)];
+	
+	/* The Chunk that the loaded area was last centered on */
+	private int centerChunkX = Integer.MIN_VALUE;
+	private int centerChunkY = Integer.MIN_VALUE;
+	
+	/* Reusable view handed out by getTileAt(), so that looking a Tile up doesn't create a new object */
+	private final Tile view;
+	
+	/* Where saved Chunks are read from, or null if the World hasn't been saved */
+	private transient RegionStore regionStore;
+	
+	/* Whether or not Chunks outside of LOAD_RADIUS are packed to save memory */
+	private boolean packColdChunks = true;
+	
 	/**
-	 * {@link ArrayList} of {@link Tile}s.
+	 * Creates a handler with no {@link Chunk}s loaded for the supplied {@link World}
+	 * @param world - The World that this handler holds the Tiles for
 	 */
-	private List<Tile> tiles = new ArrayList<Tile>();
+	public TileHandler(World world)
+	{
+		this.world = world;
+		this.width = world.getWidth();
+		this.height = world.getHeight();
+		this.view = new Tile(TileType.NULL, world, 0, 0);
+	}
 	
 	/**
-	 * Draw all of the {@link Tile}s in the {@link ArrayList} to the screen using the supplied {@link Graphics} object
-	 * @param g - Graphics object to draw the Tiles with
+	 * Update all of the {@link Tile}s. Tiles are static and the World's {@link Camera} moves them on the screen 
+	 * when they are drawn, so the only thing to do here is to load the Chunks around the middle of the screen 
+	 * and unload the ones that are too far away
 	 */
-	public void render(java.awt.Graphics g)
+	public void tick()
 	{
-		for(Tile tile : tiles)
+		Camera camera = world.getCamera();
+		loadAround(Math.floorDiv(camera.getCenterX(), Tile.TILEWIDTH), Math.floorDiv(camera.getCenterY(), Tile.TILEHEIGHT));
+	}
+	
+	/**
+	 * Makes sure that every {@link Chunk} within {@link TileHandler#LOAD_RADIUS} of the specified Tile is loaded (reading 
+	 * saved ones from the {@link RegionStore} and generating the rest in parallel with {@link ChunkGenerationTask}), and 
+	 * unloads any Chunks that are further away than {@link TileHandler#UNLOAD_RADIUS} and can be loaded again. Chunks further 
+	 * away than {@link TileHandler#IMAGE_RADIUS} throw away their cached image, and the ones that stay loaded outside of 
+	 * {@link TileHandler#LOAD_RADIUS} are {@link Chunk#pack() packed} (see {@link TileHandler#setPackColdChunks}). Does nothing if the Tile is in the same 
+	 * Chunk as last time
+	 * @param tileX - xTile-coord to load around
+	 * @param tileY - yTile-coord to load around
+	 */
+	public void loadAround(int tileX, int tileY)
+	{
+		int chunkX = tileX >> Chunk.SHIFT;
+		int chunkY = tileY >> Chunk.SHIFT;
+		if(chunkX == centerChunkX && chunkY == centerChunkY)
+			return;
+		centerChunkX = chunkX;
+		centerChunkY = chunkY;
+		
+		/* Generate all of the missing Chunks that weren't saved at once, so they can be spread over every core */
+		int missing = 0;
+		for(int cy = chunkY - LOAD_RADIUS; cy <= chunkY + LOAD_RADIUS; cy++)
+		{
+			for(int cx = chunkX - LOAD_RADIUS; cx <= chunkX + LOAD_RADIUS; cx++)
+			{
+				if(!chunkInBounds(cx, cy) || chunks.get(cx, cy) != null)
+					continue;
+				Chunk chunk = new Chunk(cx, cy);
+				if(regionStore != null && regionStore.load(chunk))
+					chunks.put(chunk);
+				else
+					pending[missing++] = chunk;
+			}
+		}
+		if(missing > 0)
+		{
+			long start = System.nanoTime();
+			ChunkGenerationTask.generate(world, pending, missing);
+			GameMetrics.worldGenerated(world, missing, System.nanoTime() - start);
+		}
+		for(int i = 0; i < missing; i++)
 		{
-			tile.render(g);
+			chunks.put(pending[i]);
+			pending[i] = null;
+		}
+		
+		for(int slot = 0; slot < chunks.capacity(); slot++)
+		{
+			Chunk chunk = chunks.at(slot);
+			if(chunk == null)
+				continue;
+			if(Math.abs(chunk.getChunkX() - chunkX) > IMAGE_RADIUS || Math.abs(chunk.getChunkY() - chunkY) > IMAGE_RADIUS)
+				chunk.setImage(null);	// Can't be on the screen any more, so don't hold on to the image
+			if(packColdChunks && (Math.abs(chunk.getChunkX() - chunkX) > LOAD_RADIUS || Math.abs(chunk.getChunkY() - chunkY) > LOAD_RADIUS))
+				chunk.pack();
+			if(chunk.isModified() && (regionStore == null || chunk.isUnsaved()))	// Modified Chunks can't be regenerated, so they stay in memory until they are saved
+				continue;
+			if(Math.abs(chunk.getChunkX() - chunkX) > UNLOAD_RADIUS || Math.abs(chunk.getChunkY() - chunkY) > UNLOAD_RADIUS)
+			{
+				chunks.remove(chunk.getChunkX(), chunk.getChunkY());
+				if(chunk == lastChunk)
+					lastChunk = null;
+				slot--;	// Removing shifts the following Chunks back, so look at this slot again
+			}
 		}
 	}
 	
 	/**
-	 * Update all of the {@link Tile}s in the {@link ArrayList} of Tiles
+	 * Gets the {@link Chunk} at the specified Chunk coordinates, loading or generating it if it isn't loaded yet
+	 * @param chunkX - x-coord of the Chunk, in Chunks
+	 * @param chunkY - y-coord of the Chunk, in Chunks
+	 * @return the Chunk at those coordinates
 	 */
-	public void tick()
+	public Chunk getChunk(int chunkX, int chunkY)
 	{
-		for(Tile tile : tiles)
+		Chunk chunk = lastChunk;
+		if(chunk != null && chunk.getChunkX() == chunkX && chunk.getChunkY() == chunkY)
 		{
-			tile.tick();
+			chunkHits++;
+			return chunk;
 		}
+		chunk = chunks.get(chunkX, chunkY);
+		if(chunk != null)
+			chunkHits++;
+		else
+		{
+			chunkMisses++;
+			chunk = new Chunk(chunkX, chunkY);
+			if(regionStore == null || !regionStore.load(chunk))
+				world.generateChunk(chunk);
+			chunks.put(chunk);
+		}
+		lastChunk = chunk;
+		return chunk;
 	}
 	
 	/**
-	 * Gets the {@link Tile} that is at the specified position, <i>index</i>
-	 * @param index - Where in the ArrayList to get the {@link Tile}
+	 * Puts an already filled {@link Chunk} into this handler, replacing any Chunk that was loaded at its coordinates
+	 * @param chunk - The Chunk to add
+	 */
+	public void putChunk(Chunk chunk)
+	{
+		chunks.put(chunk);
+		if(lastChunk != null && lastChunk.getChunkX() == chunk.getChunkX() && lastChunk.getChunkY() == chunk.getChunkY())
+			lastChunk = chunk;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link RegionStore} that saved {@link Chunk}s are read from
+	 * @return the RegionStore, or null if the World hasn't been saved or loaded
+	 */
+	public RegionStore getRegionStore()
+	{
+		return regionStore;
+	}
+	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets the {@link RegionStore} that saved {@link Chunk}s are read from. Once a World has one, modified Chunks 
+	 * are unloaded like any other Chunk after they were saved
+	 * @param regionStore - The RegionStore, or null to only generate Chunks
+	 */
+	public void setRegionStore(RegionStore regionStore)
+	{
+		this.regionStore = regionStore;
+	}
+	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets whether or not loaded {@link Chunk}s outside of {@link TileHandler#LOAD_RADIUS} are packed with 
+	 * {@link ca.hjalmionlabs.world.ChunkCodec ChunkCodec}. Packed Chunks take a few bytes instead of 1 KB, but have to be 
+	 * unpacked when they are used again. On by default
+	 * @param packColdChunks - true to pack Chunks that aren't being used, false to keep every Chunk unpacked
+	 */
+	public void setPackColdChunks(boolean packColdChunks)
+	{
+		this.packColdChunks = packColdChunks;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the loaded {@link Chunk}s. Don't add or remove Chunks through the returned map
+	 * @return the map of loaded Chunks
+	 */
+	public ChunkMap getChunks()
+	{
+		return chunks;
+	}
+	
+	/**
+	 * Gets the {@link Tile} that is at the specified position, <i>index</i>. <br>
+	 * The returned Tile is a view that is reused by the next call to this method, so don't hold on to it
+	 * @param index - Where in the World to get the {@link Tile} (<code>tileY * width + tileX</code>)
 	 * @return the Tile at the specified position
 	 */
 	public Tile getTileAt(int index)
 	{
-		return tiles.get(index);
+		return getTileAt(index % width, index / width);
+	}
+	
+	/**
+	 * Gets the {@link Tile} that is at the specified Tile coordinates. <br>
+	 * The returned Tile is a view that is reused by the next call to this method, so don't hold on to it
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return the Tile at the specified position
+	 */
+	public Tile getTileAt(int tileX, int tileY)
+	{
+		view.moveTo(getTypeAt(tileX, tileY), tileX, tileY);
+		return view;
+	}
+	
+	/**
+	 * Gets the {@link TileType} of the Tile at the specified Tile coordinates, without going through a {@link Tile}
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return the TileType at that position, or {@link TileType#NULL} if the position is outside of the World
+	 */
+	public TileType getTypeAt(int tileX, int tileY)
+	{
+		if(!inBounds(tileX, tileY))
+			return TileType.NULL;
+		return TileType.fromID(getChunk(tileX >> Chunk.SHIFT, tileY >> Chunk.SHIFT).get(tileX & Chunk.MASK, tileY & Chunk.MASK));
+	}
+	
+	/**
+	 * Whether or not the Tile at the specified Tile coordinates is {@link TileType#isSolid() solid}. Reads one bit of 
+	 * the Chunk's solidity instead of its {@link TileType}. Tiles outside of the World are solid, so nothing can leave it
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return true if Entities can't walk on the Tile, false otherwise
+	 */
+	public boolean isSolid(int tileX, int tileY)
+	{
+		if(!inBounds(tileX, tileY))
+			return true;
+		return getChunk(tileX >> Chunk.SHIFT, tileY >> Chunk.SHIFT).isSolid(tileX & Chunk.MASK, tileY & Chunk.MASK);
+	}
+	
+	/**
+	 * Whether or not a box overlaps any {@link TileType#isSolid() solid} Tile (or sticks out of the World)
+	 * @param x - x-coord of the box, in world coordinates
+	 * @param y - y-coord of the box, in world coordinates
+	 * @param width - Width of the box, in pixels
+	 * @param height - Height of the box, in pixels
+	 * @return true if the box overlaps a solid Tile, false if it is all on Tiles that can be walked on
+	 */
+	public boolean overlapsSolid(int x, int y, int width, int height)
+	{
+		return anySolid(Math.floorDiv(x, Tile.TILEWIDTH), Math.floorDiv(y, Tile.TILEHEIGHT),
+				Math.floorDiv(x + width - 1, Tile.TILEWIDTH), Math.floorDiv(y + height - 1, Tile.TILEHEIGHT));
 	}
 	
 	/**
-	 * Replaces the {@link Tile} at the specified position, <i>index</i> with the supplied Tile
-	 * @param index - Position to replace 
-	 * @param tile - Tile to replace existing Tile with
+	 * Moves a box along the x-axis until it runs into a {@link TileType#isSolid() solid} Tile. Only the columns of Tiles 
+	 * that the box's leading edge moves into are checked, so a box that doesn't cross into a new column costs nothing. 
+	 * A box that already overlaps a solid Tile can still move out of it
+	 * @param x - x-coord of the box, in world coordinates
+	 * @param y - y-coord of the box, in world coordinates
+	 * @param width - Width of the box, in pixels
+	 * @param height - Height of the box, in pixels
+	 * @param distance - How far to move the box, in pixels (negative to move left)
+	 * @return the x-coord that the box ends up at
+	 */
+	public int sweepX(int x, int y, int width, int height, int distance)
+	{
+		if(distance == 0)
+			return x;
+		int firstRow = Math.floorDiv(y, Tile.TILEHEIGHT);
+		int lastRow = Math.floorDiv(y + height - 1, Tile.TILEHEIGHT);
+		if(distance > 0)
+		{
+			int edge = x + width - 1;
+			for(int column = Math.floorDiv(edge, Tile.TILEWIDTH) + 1; column <= Math.floorDiv(edge + distance, Tile.TILEWIDTH); column++)
+				if(anySolid(column, firstRow, column, lastRow))
+					return column * Tile.TILEWIDTH - width;
+		} else
+		{
+			for(int column = Math.floorDiv(x, Tile.TILEWIDTH) - 1; column >= Math.floorDiv(x + distance, Tile.TILEWIDTH); column--)
+				if(anySolid(column, firstRow, column, lastRow))
+					return (column + 1) * Tile.TILEWIDTH;
+		}
+		return x + distance;
+	}
+	
+	/**
+	 * Moves a box along the y-axis until it runs into a {@link TileType#isSolid() solid} Tile, the same way as {@link TileHandler#sweepX}
+	 * @param x - x-coord of the box, in world coordinates
+	 * @param y - y-coord of the box, in world coordinates
+	 * @param width - Width of the box, in pixels
+	 * @param height - Height of the box, in pixels
+	 * @param distance - How far to move the box, in pixels (negative to move up)
+	 * @return the y-coord that the box ends up at
+	 */
+	public int sweepY(int x, int y, int width, int height, int distance)
+	{
+		if(distance == 0)
+			return y;
+		int firstColumn = Math.floorDiv(x, Tile.TILEWIDTH);
+		int lastColumn = Math.floorDiv(x + width - 1, Tile.TILEWIDTH);
+		if(distance > 0)
+		{
+			int edge = y + height - 1;
+			for(int row = Math.floorDiv(edge, Tile.TILEHEIGHT) + 1; row <= Math.floorDiv(edge + distance, Tile.TILEHEIGHT); row++)
+				if(anySolid(firstColumn, row, lastColumn, row))
+					return row * Tile.TILEHEIGHT - height;
+		} else
+		{
+			for(int row = Math.floorDiv(y, Tile.TILEHEIGHT) - 1; row >= Math.floorDiv(y + distance, Tile.TILEHEIGHT); row--)
+				if(anySolid(firstColumn, row, lastColumn, row))
+					return (row + 1) * Tile.TILEHEIGHT;
+		}
+		return y + distance;
+	}
+	
+	/* Whether or not any Tile in the rectangle of Tiles from (firstX, firstY) to (lastX, lastY) is solid */
+	private boolean anySolid(int firstX, int firstY, int lastX, int lastY)
+	{
+		for(int tileY = firstY; tileY <= lastY; tileY++)
+			for(int tileX = firstX; tileX <= lastX; tileX++)
+				if(isSolid(tileX, tileY))
+					return true;
+		return false;
+	}
+	
+	/**
+	 * Replaces the {@link Tile} at the specified position, <i>index</i> with a Tile of the supplied type
+	 * @param index - Position to replace (<code>tileY * width + tileX</code>)
+	 * @param type - TileType to replace existing Tile with
 	 */
 	public void replaceTile(int index, TileType type)
 	{
-		tiles.get(index).setType(type);
+		replaceTile(index % width, index / width, type);
+	}
+	
+	/**
+	 * Replaces the {@link Tile} at the specified Tile coordinates with a Tile of the supplied type. 
+	 * Does nothing if the position is outside of the World
+	 * @param tileX - xTile-coord of the Tile to replace
+	 * @param tileY - yTile-coord of the Tile to replace
+	 * @param type - TileType to replace existing Tile with
+	 */
+	public void replaceTile(int tileX, int tileY, TileType type)
+	{
+		if(!inBounds(tileX, tileY))
+			return;
+		getChunk(tileX >> Chunk.SHIFT, tileY >> Chunk.SHIFT).replace(tileX & Chunk.MASK, tileY & Chunk.MASK, type);
 	}
 	
 	/**
-	 * Gets the size of the {@link ArrayList} of {@link Tile}s
-	 * @return int representing how many Tiles are in the ArrayList
+	 * Gets the size of the World, in {@link Tile}s
+	 * @return int representing how many Tiles are in the World
 	 */
 	public int size()
 	{
-		return tiles.size();
+		return width * height;
+	}
+	
+	/**
+	 * Gets how many {@link Chunk}s are currently loaded
+	 * @return the number of loaded Chunks
+	 */
+	public int loadedChunks()
+	{
+		return chunks.size();
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets how many times {@link TileHandler#getChunk(int, int)} found the {@link Chunk} already loaded
+	 * @return the number of Chunk lookups that hit a loaded Chunk
+	 */
+	public long getChunkHits()
+	{
+		return chunkHits;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets how many times {@link TileHandler#getChunk(int, int)} had to load or generate the {@link Chunk}
+	 * @return the number of Chunk lookups that missed
+	 */
+	public long getChunkMisses()
+	{
+		return chunkMisses;
 	}
 	
 	/**
-	 * Whether or not the {@link ArrayList} of {@link Tile}s is empty
-	 * @return true if nothing is in the List, false otherwise
+	 * Whether or not there are no {@link Tile}s loaded
+	 * @return true if no {@link Chunk}s are loaded, false otherwise
 	 */
 	public boolean isEmpty()
 	{
-		return tiles.isEmpty();
+		return chunks.size() == 0;
 	}
 	
 	/**
-	 * Empties the {@link ArrayList} of {@link Tile}s.
+	 * Unloads every {@link Chunk}, including modified ones
 	 */
 	public void empty()
 	{
-		tiles.clear();
+		chunks.clear();
+		lastChunk = null;
+		centerChunkX = Integer.MIN_VALUE;
+		centerChunkY = Integer.MIN_VALUE;
 	}
 	
 	/**
-	 * Adds the supplied {@link Tile} to the end of the {@link ArrayList} of Tiles
-	 * @param t - Tile to add to the end of the ArrayList
+	 * Puts the supplied {@link Tile} into the World at its Tile coordinates. Only the Tile's type is kept, 
+	 * so the Tile object can be reused by the caller afterwards
+	 * @param t - Tile to add to the World
 	 */
 	public void addTile(Tile t)
 	{
-		tiles.add(t);
+		replaceTile(t.getTileX(), t.getTileY(), t.getType());
+	}
+	
+	/**
+	 * Whether or not the specified Tile coordinates are inside of the World
+	 * @param tileX - xTile-coord to check
+	 * @param tileY - yTile-coord to check
+	 * @return true if the coordinates are inside of the World, false otherwise
+	 */
+	public boolean inBounds(int tileX, int tileY)
+	{
+		return tileX >= 0 && tileY >= 0 && tileX < width && tileY < height;
+	}
+	
+	/* Whether or not any part of the specified Chunk is inside of the World */
+	private boolean chunkInBounds(int chunkX, int chunkY)
+	{
+		return chunkX >= 0 && chunkY >= 0 && (chunkX << Chunk.SHIFT) < width && (chunkY << Chunk.SHIFT) < height;
 	}
 	
 }
@@ -4,45 +4,150 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
+import ca.hjalmionlabs.profiling.GameMetrics;
+import ca.hjalmionlabs.profiling.Profiler;
 import ca.hjalmionlabs.world.DefaultWorld;
+import ca.hjalmionlabs.world.TileListener;
 import ca.hjalmionlabs.world.World;
 
 /**
  * Handles all of the Worlds in the Game, allowing them to be easily updated and rendered
+ * <br><br>
+ * The current World is ticked on the game thread every tick. The other Worlds keep going in the background at a 
+ * lower rate: every {@link WorldHandler#getBackgroundTickInterval()} ticks they are all ticked once on the background 
+ * thread, in place of all of those ticks (see {@link World#tickInBackground(int)}), while the game thread gets on with its own work. A World is never ticked by both threads at once. Before a 
+ * World becomes the current World, or Worlds are replaced, saved or loaded, the game thread waits for the background 
+ * tick to finish (see {@link WorldHandler#awaitBackground()})
  * @author Nick Mills
  *
  */
 public class WorldHandler implements Serializable 
 {
+	/** How many ticks there are between background ticks of the Worlds that aren't current, unless it is changed */
+	public static final int DEFAULT_BACKGROUND_TICK_INTERVAL = 4;
+	
+	/* Ticks the Worlds that aren't current, one batch at a time */
+	private static final ExecutorService background = Executors.newSingleThreadExecutor(new ThreadFactory()
+	{
+		@Override
+		public Thread newThread(Runnable r)
+		{
+			Thread thread = new Thread(r, "BACKGROUND_WORLDS");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
 	private List<World> worlds = new ArrayList<World>();
+	/* Added to every World that this handler handles */
+	private List<TileListener> tileListeners = new ArrayList<TileListener>();
 	/* Reference to the last World that was retrieved by WorldHandler#get() */
 	protected World currentWorld;
 	
+	/* Ticks between background ticks, or 0 to not tick the Worlds that aren't current */
+	private int backgroundTickInterval = DEFAULT_BACKGROUND_TICK_INTERVAL;
+	/* Ticks since the last background tick was started */
+	private transient int ticksSinceBackground;
+	/* The background tick that is running, or null if none has been started */
+	private transient Future<?> pendingBackground;
+	/* How many background ticks were put off because the one before was still running. Their ticks aren't lost, the next 
+	 * background tick that starts makes up for them */
+	private transient long skippedBackgroundTicks;
+	
 	/**
-	 * Draw all of the {@link World}s with the supplied {@link Graphics} object
-	 * @param g - Graphics object to draw this World (and its handlers) with
+	 * Updates the current {@link World}, and every {@link WorldHandler#getBackgroundTickInterval()} ticks starts 
+	 * ticking the other Worlds in the background. If the last background tick hasn't finished by then, this one is 
+	 * put off, so the background can never hold up the game thread. The next background tick that starts is told how 
+	 * many ticks went by since the last one, so the other Worlds don't fall behind
 	 */
-	public void render(java.awt.Graphics g)
+	public void tick()
 	{
-		currentWorld.renderAllHandlers(g);
+		currentWorld.tickAllHandlers();
+		
+		if(backgroundTickInterval <= 0 || ++ticksSinceBackground < backgroundTickInterval)
+			return;
+		if(pendingBackground != null && !pendingBackground.isDone())
+		{
+			if(ticksSinceBackground % backgroundTickInterval == 0)
+				skippedBackgroundTicks++;	// Once per background tick that was due, not once per tick spent waiting
+			return;
+		}
+		final int ticks = ticksSinceBackground;
+		ticksSinceBackground = 0;
+		
+		final List<World> others = new ArrayList<World>(worlds.size());
+		for(World world : worlds)
+			if(world != currentWorld)
+				others.add(world);
+		if(others.isEmpty())
+			return;
+		pendingBackground = background.submit(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				long start = System.nanoTime();
+				for(World world : others)
+				{
+					try
+					{
+						world.tickInBackground(ticks);
+					} catch(RuntimeException e)
+					{
+						System.out.println("Couldn't tick " + world + " in the background");
+						e.printStackTrace();
+					}
+				}
+				Profiler.Phase.BACKGROUND_TICK.record(start);
+			}
+		});
 	}
 	
 	/**
-	 * Updates all of the {@link World}s in the {@link ArrayList} of Worlds
+	 * Waits until the Worlds that are being ticked in the background are done, so that the calling thread can use 
+	 * every World safely until the next {@link WorldHandler#tick()}. Returns right away if nothing is running in the background
 	 */
-	public void tick()
+	public void awaitBackground()
 	{
-		currentWorld.tickAllHandlers();
+		Future<?> pending = pendingBackground;
+		if(pending == null)
+			return;
+		try
+		{
+			pending.get();
+		} catch(InterruptedException | ExecutionException e)
+		{
+			e.printStackTrace();
+		}
 	}
 	
 	/**
-	 * Add the supplied {@link World} to the end of this handler's {@link ArrayList} of Worlds
+	 * Add the supplied {@link World} to the end of this handler's {@link ArrayList} of Worlds, and publish its metrics over JMX
 	 * @param world
 	 */
 	public void add(World world)
 	{
 		worlds.add(world);
+		GameMetrics.register(world);
+		for(TileListener listener : tileListeners)
+			world.addTileListener(listener);
+	}
+	
+	/**
+	 * Adds a {@link TileListener} to every {@link World} that this handler handles, now and in the future
+	 * @param listener - The listener to add
+	 */
+	public void addTileListener(TileListener listener)
+	{
+		tileListeners.add(listener);
+		for(World world : worlds)
+			world.addTileListener(listener);
 	}
 	
 	/**
@@ -58,14 +163,92 @@ public class WorldHandler implements Serializable
 			World world = it.next();
 			if(world.getName().equals(name))
 			{
-				currentWorld = world;
+				switchTo(world);
 				return world;
 			}
 		}
-		currentWorld = new DefaultWorld("Default");
+		switchTo(new DefaultWorld("Default"));
 		return currentWorld;
 	}
 	
+	/* Makes the supplied World the current World, and tells JMX if that is a different World. The World could be in the middle of a background tick, so that has to finish first */
+	private void switchTo(World world)
+	{
+		World previous = currentWorld;
+		if(previous == world)
+			return;
+		awaitBackground();
+		currentWorld = world;
+		GameMetrics.worldSwitched(previous, world);
+	}
+	
+	/**
+	 * Replaces the {@link World} that has the same name as the supplied World. If the replaced World was the 
+	 * current World, the supplied World becomes the current World. If there is no World with that name, the World is added
+	 * @param world - The World to put in place of the old one
+	 */
+	public void replace(World world)
+	{
+		awaitBackground();
+		for(int i = 0; i < worlds.size(); i++)
+		{
+			if(worlds.get(i).getName().equals(world.getName()))
+			{
+				if(worlds.get(i) == currentWorld)
+					currentWorld = world;
+				worlds.set(i, world);
+				for(TileListener listener : tileListeners)
+					world.addTileListener(listener);
+				GameMetrics.register(world);
+				return;
+			}
+		}
+		add(world);
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets every {@link World} that this handler handles. The ones that aren't current could be in the middle of a 
+	 * background tick, unless {@link WorldHandler#awaitBackground()} was called since the last tick
+	 * @return the List of Worlds
+	 */
+	public List<World> getWorlds()
+	{
+		return worlds;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets how many ticks there are between background ticks of the {@link World}s that aren't current
+	 * @return the number of ticks, or 0 if those Worlds are paused
+	 */
+	public int getBackgroundTickInterval()
+	{
+		return backgroundTickInterval;
+	}
+	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets how many ticks there are between background ticks of the {@link World}s that aren't current. 1 ticks them as 
+	 * often as the current World, as long as the background thread keeps up
+	 * @param backgroundTickInterval - The number of ticks, or 0 to pause those Worlds
+	 */
+	public void setBackgroundTickInterval(int backgroundTickInterval)
+	{
+		this.backgroundTickInterval = backgroundTickInterval;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets how many background ticks were put off because the one before was still running. The ticks they would have 
+	 * done are done by the next background tick that starts
+	 * @return the number of skipped background ticks
+	 */
+	public long getSkippedBackgroundTicks()
+	{
+		return skippedBackgroundTicks;
+	}
+	
 	/**
 	 * <strong>Getter</strong><br>
 	 * Gets the last {@link World} that was retrieved with {@link WorldHandler#get()}
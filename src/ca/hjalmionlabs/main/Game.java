@@ -3,25 +3,36 @@ package ca.hjalmionlabs.main;
 import java.awt.BorderLayout;
 import java.awt.Canvas;
 import java.awt.Dimension;
+import java.awt.DisplayMode;
 import java.awt.Graphics;
+import java.awt.GraphicsEnvironment;
+import java.awt.HeadlessException;
 import java.awt.image.BufferStrategy;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 import javax.swing.JFrame;
 
 import ca.hjalmionlabs.entities.Player;
 import ca.hjalmionlabs.entities.Zombie;
+import ca.hjalmionlabs.handlers.FileHandler;
 import ca.hjalmionlabs.handlers.GUIHandler;
 import ca.hjalmionlabs.handlers.InputHandler;
 import ca.hjalmionlabs.handlers.WorldHandler;
+import ca.hjalmionlabs.profiling.GameMetrics;
+import ca.hjalmionlabs.profiling.Profiler;
 import ca.hjalmionlabs.rendering.Display;
+import ca.hjalmionlabs.rendering.FrameSnapshot;
 import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.Camera;
 import ca.hjalmionlabs.world.UnderWorld;
 import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.Tile;
 
 public class Game extends Canvas implements Runnable
 {
@@ -29,8 +40,10 @@ public class Game extends Canvas implements Runnable
 
 	/* The Thread to run this Game with */
 	private Thread thread;
+	/* The Thread that draws the snapshots that the Game's Thread makes */
+	private Thread renderThread;
 	/* Whether or not the Game is running */
-	private static boolean isRunning;
+	private static volatile boolean isRunning;
 
 	/* Width of the screen, in pixels */
 	public static final int WIDTH = 1080;
@@ -40,6 +53,13 @@ public class Game extends Canvas implements Runnable
 	public static final int LINUXWIDTH = 700;
 	/* Height of the screen, in pixels, if the OS running the Game is Linux / Unix based. */
 	public static final int LINUXHEIGHT = 400;
+	
+	/* How many times the Game ticks every second, no matter how long rendering takes */
+	public static final int TICKS_PER_SECOND = 60;
+	/* How many ticks the Game runs back to back to catch up before it gives up and skips the missed time */
+	private static final int MAX_CATCH_UP = 10;
+	/* How many Frames are drawn every second if the screen's refresh rate isn't known */
+	private static final int DEFAULT_FRAME_RATE = 60;
 
 	/* The name of the OS running the Game.  */
 	public static final String osName = System.getProperty("os.name");
@@ -65,6 +85,11 @@ public class Game extends Canvas implements Runnable
 	/* The Player for the game */
 	public static Player player;
 	
+	/* The last snapshot that the Game's Thread made, which the render Thread draws */
+	private volatile FrameSnapshot snapshot;
+	/* Frames drawn since the last time they were counted */
+	private final AtomicInteger frames = new AtomicInteger();
+	
 	/**
 	 * Starts the game
 	 */
@@ -108,12 +133,16 @@ public class Game extends Canvas implements Runnable
 		System.out.println("Set up the World");
 		worldHandler.add(new OverWorld("Overworld"));
 		worldHandler.add(new UnderWorld("Underworld"));
+		worldHandler.addTileListener(FileHandler.getJournal());
 		
 		currentWorld = worldHandler.get("Overworld");
 		currentWorld.createWorld();
 		
 		/* Instantiate the Player */
 		player = new Player("Player1", currentWorld, WIDTH / 2, HEIGHT / 2, 5);
+		int[] start = currentWorld.findOpenPositionNear(player.getX(), player.getY(), player.getWidth(), player.getHeight());	// Not in Water, Lava or Stone
+		player.setX(start[0]);
+		player.setY(start[1]);
 		
 		/* Create a test Zombie */
 		Zombie zombie = new Zombie("George", currentWorld, 50, 50);
@@ -150,58 +179,99 @@ public class Game extends Canvas implements Runnable
 		System.out.println("Done Initialization");
 	}
 	
+	/**
+	 * The game loop. Ticks the Game exactly {@link Game#TICKS_PER_SECOND} times a second, and makes a {@link FrameSnapshot} for 
+	 * the render Thread after each batch of ticks. Rendering happens on its own Thread, so a slow frame never holds up 
+	 * a tick, and this Thread sleeps until the next tick is due instead of spinning
+	 */
 	public void run()
 	{
-		long lastTime = System.nanoTime();
-		double nsPerTick = 1.0E9D/60D;
+		long nsPerTick = 1000000000L / TICKS_PER_SECOND;
 		
 		int ticks = 0;
-		int frames = 0;
-		
-		long lastTimer = System.currentTimeMillis();
-		double delta = 0;
 		
 		init();
 		
+		renderThread = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				renderLoop();
+			}
+		}, "RENDER_LOOP");
+		renderThread.start();
+		
 		System.out.println("Entering Game Loop...");
 		
+		long nextTick = System.nanoTime();
+		long lastTimer = System.currentTimeMillis();
 		while(isRunning)
 		{
-			long now = System.nanoTime();
-			delta += (now - lastTime) / nsPerTick;
-			lastTime = now;
-			boolean shouldRender = true;
-			while(delta >= 1)
+			int caughtUp = 0;
+			while(System.nanoTime() - nextTick >= 0 && caughtUp < MAX_CATCH_UP)
 			{
 				ticks++;
 				tick();
-				delta -=1;
-				shouldRender = true;
+				nextTick += nsPerTick;
+				caughtUp++;
 			}
-			try
+			if(caughtUp > 0)
+				snapshot = FrameSnapshot.capture(worldHandler.getCurrentWorld(), snapshot, nextTick - nsPerTick);
+			if(caughtUp == MAX_CATCH_UP && System.nanoTime() - nextTick >= 0)
 			{
-				Thread.sleep(2);
-			} catch(InterruptedException e)
-			{
-				System.err.println("Error while trying to sleep thread!");
-				System.err.println(e.getMessage());
-				e.printStackTrace();
-			}
-			if(shouldRender)
-			{
-				frames++;
-				render();
+				System.out.println("Can't keep up! Skipping " + (System.nanoTime() - nextTick) / nsPerTick + " ticks");
+				nextTick = System.nanoTime();
 			}
+			
 			if(System.currentTimeMillis() - lastTimer >= 1000)
 			{
 				lastTimer += 1000;
-				System.out.println(ticks + " ticks, " + frames + " frames");
+				System.out.println(ticks + " ticks, " + frames.getAndSet(0) + " frames");
 				System.out.println("Current World: " + worldHandler.getCurrentWorld());
 				System.out.println("X: " + player.getTileX() + "\nY: " + player.getTileY());
+				System.out.print(Profiler.report());
 
-				frames = 0;
 				ticks = 0;
 			}
+			
+			long wait = nextTick - System.nanoTime();
+			if(wait > 0)
+				LockSupport.parkNanos(wait);
+		}
+	}
+	
+	/* Draws the newest snapshot about as often as the screen refreshes, until the Game stops */
+	private void renderLoop()
+	{
+		int frameRate = DEFAULT_FRAME_RATE;
+		try
+		{
+			int refreshRate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDisplayMode().getRefreshRate();
+			if(refreshRate != DisplayMode.REFRESH_RATE_UNKNOWN)
+				frameRate = refreshRate;
+		} catch(HeadlessException e)
+		{
+			System.out.println("Couldn't find the screen's refresh rate, drawing " + frameRate + " frames a second");
+		}
+		long nsPerFrame = 1000000000L / frameRate;
+		double nsPerTick = 1.0E9D / TICKS_PER_SECOND;
+		
+		long nextFrame = System.nanoTime();
+		while(isRunning)
+		{
+			FrameSnapshot snapshot = this.snapshot;
+			if(snapshot != null)
+			{
+				render(snapshot, (System.nanoTime() - snapshot.getTime()) / nsPerTick);
+				frames.incrementAndGet();
+			}
+			nextFrame += nsPerFrame;
+			long wait = nextFrame - System.nanoTime();
+			if(wait > 0)
+				LockSupport.parkNanos(wait);
+			else
+				nextFrame = System.nanoTime();	// Fell behind, so don't try to draw the missed frames
 		}
 	}
 	
@@ -210,45 +280,83 @@ public class Game extends Canvas implements Runnable
 	 */
 	public void tick()
 	{
+		currentWorld = worldHandler.getCurrentWorld();	// Loading a save replaces the Worlds
+		inputHandler.placeQueuedTiles(currentWorld);	// Clicks come in on the AWT thread, but only the game thread changes the World
+		long start = System.nanoTime();
 		worldHandler.tick();
+		Profiler.Phase.WORLD_TICK.record(start);
+		
+		/* The Player lives in world coordinates, but whether the World scrolls depends on where the Player is on the screen */
+		Camera camera = currentWorld.getCamera();
+		int screenTileX = camera.toScreenX(player.getX()) / Tile.TILEWIDTH;
+		int screenTileY = camera.toScreenY(player.getY()) / Tile.TILEHEIGHT;
 		
 		if(inputHandler.UP.isPressed())
 		{
-			if(currentWorld.yOffset < 0 && player.getTileY() <= 4)	// If the Player is in the World (not in the void) and within the 4 Tile "square", move the World
-				currentWorld.yOffset += player.getSpeed();
-			else													// Otherwise just move the Player
-				player.setY(player.getY() - player.getSpeed());
+			int moved = movePlayerY(-player.getSpeed());
+			if(camera.getYOffset() < 0 && screenTileY <= 4)	// If the Player is in the World (not in the void) and within the 4 Tile "square", move the World with the Player
+				camera.move(0, -moved);
 		}
 		if(inputHandler.DOWN.isPressed())
 		{
-			if(currentWorld.yOffset < currentWorld.getHeight() && player.getTileY() >= 4)
-				currentWorld.yOffset -= player.getSpeed();
-			else if(player.getTileY() <= 4)						// If Player is less than or at 4 tiles away from the edge, move the Player
-				player.setY(player.getY() + player.getSpeed());	
+			if(camera.getYOffset() < currentWorld.getHeight() && screenTileY >= 4)
+			{
+				int moved = movePlayerY(player.getSpeed());
+				camera.move(0, -moved);
+			}
+			else if(screenTileY <= 4)						// If Player is less than or at 4 tiles away from the edge, move the Player
+				movePlayerY(player.getSpeed());
 		}
 		if(inputHandler.LEFT.isPressed())
 		{
-			if(currentWorld.xOffset < 0 && player.getTileX() <= 4)	// If the Player is in the World (not in the void) and within the 4 Tile "square". move the World
-				currentWorld.xOffset += player.getSpeed();
-			else
-				player.setX(player.getX() - player.getSpeed());		// Otherwise just move the Player
+			int moved = movePlayerX(-player.getSpeed());
+			if(camera.getXOffset() < 0 && screenTileX <= 4)	// If the Player is in the World (not in the void) and within the 4 Tile "square". move the World with the Player
+				camera.move(-moved, 0);
 		}
 		if(inputHandler.RIGHT.isPressed())
 		{
-			if(currentWorld.xOffset < currentWorld.getWidth() && player.getTileX() >= 4)	// If the Player is less than the width of the World and outside the 4 Tile "square", move the World
-				currentWorld.xOffset -= player.getSpeed();
-			else if(player.getTileX() <= 4)													// If the player is less than or at 4 Tiles away from the edge, move the Player
-				player.setX(player.getX() + player.getSpeed());
+			if(camera.getXOffset() < currentWorld.getWidth() && screenTileX >= 4)	// If the Player is less than the width of the World and outside the 4 Tile "square", move the World with the Player
+			{
+				int moved = movePlayerX(player.getSpeed());
+				camera.move(-moved, 0);
+			}
+			else if(screenTileX <= 4)												// If the player is less than or at 4 Tiles away from the edge, move the Player
+				movePlayerX(player.getSpeed());
 		}
 		
+		start = System.nanoTime();
 		guiHandler.tick();
+		Profiler.Phase.GUI_TICK.record(start);
+		
+		/* Saves and loads happen between ticks, so they see the World in one piece */
+		FileHandler.tick(worldHandler, player);
 			
 	}
 	
+	/* Moves the Player along the x-axis until it runs into a solid Tile, the same way Entities move. Returns how far it actually moved */
+	private int movePlayerX(int distance)
+	{
+		int x = player.getX();
+		int moved = currentWorld.getTileHandler().sweepX(x, player.getY(), player.getWidth(), player.getHeight(), distance) - x;
+		player.setX(x + moved);
+		return moved;
+	}
+	
+	/* Moves the Player along the y-axis until it runs into a solid Tile. Returns how far it actually moved */
+	private int movePlayerY(int distance)
+	{
+		int y = player.getY();
+		int moved = currentWorld.getTileHandler().sweepY(player.getX(), y, player.getWidth(), player.getHeight(), distance) - y;
+		player.setY(y + moved);
+		return moved;
+	}
+	
 	/**
-	 * Draws everything to the screen
+	 * Draws everything to the screen. Called on the render Thread, so the World itself is never touched, only the supplied {@link FrameSnapshot}
+	 * @param snapshot - The snapshot to draw
+	 * @param alpha - How far through the snapshot's tick to draw it (see {@link FrameSnapshot#render})
 	 */
-	public void render()
+	public void render(FrameSnapshot snapshot, double alpha)
 	{		
 		BufferStrategy bs = getBufferStrategy();
 		if(bs == null)
@@ -257,16 +365,19 @@ public class Game extends Canvas implements Runnable
 			return;
 		}
 		
+		long renderStart = System.nanoTime();
 		Graphics g = bs.getDrawGraphics();
 		
 		/* START DRAWING */
 		g.fillRect(0, 0, WIDTH, HEIGHT);
 		g.drawImage(image, 0, 0, null);
-		worldHandler.render(g);
+		snapshot.render(g, alpha);
 		guiHandler.render(g);
 		/* END DRAWING */
 		
 		g.dispose();
+		long start = Profiler.Phase.RENDER.record(renderStart);
 		bs.show();
+		GameMetrics.rendered(Profiler.Phase.SHOW.record(start) - renderStart);
 	}
 }
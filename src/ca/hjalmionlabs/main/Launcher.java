@@ -1,10 +1,58 @@
 package ca.hjalmionlabs.main;
 
+import java.util.Random;
+
 public class Launcher {
 
+	/**
+	 * Starts the {@link Game}, or a {@link Server} with <code>--headless</code>. <br>
+	 * Usage: <code>java ca.hjalmionlabs.main.Launcher [--headless [--tps n] [--ticks n] [--zombies n] [--seed n]]</code>
+	 * <ul>
+	 * <li><code>--tps</code> - Ticks per second, or 0 to tick as fast as possible (default {@link Game#TICKS_PER_SECOND})</li>
+	 * <li><code>--ticks</code> - How many ticks to run before stopping, or 0 to never stop (default 0)</li>
+	 * <li><code>--zombies</code> - How many Zombies to put in the Overworld (default 1000)</li>
+	 * <li><code>--seed</code> - Seed to generate the Worlds from (default random)</li>
+	 * </ul>
+	 * @param args - The command line arguments
+	 */
 	public static void main(String[] args)
 	{
-		new Game().start();
+		boolean headless = false;
+		int ticksPerSecond = Game.TICKS_PER_SECOND;
+		long maxTicks = 0;
+		int zombies = 1000;
+		long seed = new Random().nextLong();
+		try
+		{
+			for(int i = 0; i < args.length; i++)
+			{
+				if(args[i].equals("--headless"))
+					headless = true;
+				else if(args[i].equals("--tps"))
+					ticksPerSecond = Integer.parseInt(args[++i]);
+				else if(args[i].equals("--ticks"))
+					maxTicks = Long.parseLong(args[++i]);
+				else if(args[i].equals("--zombies"))
+					zombies = Integer.parseInt(args[++i]);
+				else if(args[i].equals("--seed"))
+					seed = Long.parseLong(args[++i]);
+				else
+					throw new IllegalArgumentException("Unknown option " + args[i]);
+			}
+		} catch(RuntimeException e)
+		{
+			System.out.println("Bad arguments: " + e.getMessage());
+			System.out.println("Usage: Launcher [--headless [--tps n] [--ticks n] [--zombies n] [--seed n]]");
+			return;
+		}
+
+		if(headless)
+		{
+			System.setProperty("java.awt.headless", "true");
+			new Server(ticksPerSecond, maxTicks, zombies, seed).run();
+		}
+		else
+			new Game().start();
 	}
 	
 }
@@ -0,0 +1,121 @@
+package ca.hjalmionlabs.main;
+
+import java.util.concurrent.locks.LockSupport;
+
+import ca.hjalmionlabs.entities.Player;
+import ca.hjalmionlabs.handlers.WorldHandler;
+import ca.hjalmionlabs.profiling.Profiler;
+import ca.hjalmionlabs.world.Camera;
+import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.UnderWorld;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.Tile;
+
+/**
+ * Runs the simulation without a window: no {@link Game} Canvas, no JFrame, no BufferStrategy and no input, so it works
+ * without a screen (on a build server, for example). It sets up the same Worlds as the Game, puts a Player that stands
+ * still in the middle of the Overworld with Zombies all around it, and calls {@link WorldHandler#tick()} either
+ * {@link Game#TICKS_PER_SECOND} times a second like the Game, some other number of times a second, or as fast as it
+ * can. Every second it prints how many ticks it ran and the {@link Profiler} report, and once it is done it prints the totals.
+ * Nothing is saved.
+ * @author Nick Mills
+ */
+public class Server implements Runnable
+{
+	/* Ticks per second to run at, or 0 to run as fast as possible */
+	private final int ticksPerSecond;
+	/* How many ticks to run before stopping, or 0 to run until the process is killed */
+	private final long maxTicks;
+	/* How many Zombies to put in the Overworld */
+	private final int zombies;
+	/* Seed for the Worlds */
+	private final long seed;
+
+	private final WorldHandler worldHandler = new WorldHandler();
+	private Player player;
+
+	/**
+	 * Creates a new Server. Nothing happens until it is {@link Server#run() run}
+	 * @param ticksPerSecond - How many times to tick every second, or 0 to tick as fast as possible
+	 * @param maxTicks - How many ticks to run before stopping, or 0 to never stop
+	 * @param zombies - How many Zombies to put in the Overworld
+	 * @param seed - The seed to generate the Worlds from
+	 */
+	public Server(int ticksPerSecond, long maxTicks, int zombies, long seed)
+	{
+		this.ticksPerSecond = ticksPerSecond;
+		this.maxTicks = maxTicks;
+		this.zombies = zombies;
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets up the Worlds and ticks them until {@link Server#maxTicks} ticks have run
+	 */
+	@Override
+	public void run()
+	{
+		init();
+
+		System.out.println("Running " + (ticksPerSecond > 0 ? ticksPerSecond + " ticks a second" : "as fast as possible")
+				+ (maxTicks > 0 ? " for " + maxTicks + " ticks" : ""));
+
+		long nsPerTick = ticksPerSecond > 0 ? 1000000000L / ticksPerSecond : 0;
+		long start = System.nanoTime();
+		long nextTick = start;
+		long nextReport = start + 1000000000L;
+		long ticks = 0;
+		int secondTicks = 0;
+		while(maxTicks == 0 || ticks < maxTicks)
+		{
+			if(nsPerTick > 0)
+			{
+				long wait = nextTick - System.nanoTime();
+				if(wait > 0)
+					LockSupport.parkNanos(wait);
+				else if(wait < -10 * nsPerTick)
+					nextTick = System.nanoTime();	// Too far behind to catch up, so skip the missed ticks like the Game does
+				nextTick += nsPerTick;
+			}
+
+			long tickStart = System.nanoTime();
+			worldHandler.tick();
+			long tickEnd = Profiler.Phase.WORLD_TICK.record(tickStart);
+			ticks++;
+			secondTicks++;
+
+			if(tickEnd - nextReport >= 0)
+			{
+				nextReport += 1000000000L;
+				System.out.printf("%d ticks, %d Entities in %s%n", secondTicks, worldHandler.getCurrentWorld().getEntityHandler().getStore().size(),
+						worldHandler.getCurrentWorld());
+				System.out.print(Profiler.report());
+				secondTicks = 0;
+			}
+		}
+
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.printf("Done: %d ticks in %.2f s, %.1f ticks/s%n", ticks, seconds, ticks / seconds);
+	}
+
+	/* Same Worlds as Game#init(), with a Player in the middle of the Overworld (or the nearest place it can stand), and the Camera centered on it */
+	private void init()
+	{
+		System.out.println("Set up the World");
+		worldHandler.add(new OverWorld("Overworld", seed));
+		worldHandler.add(new UnderWorld("Underworld", seed));
+
+		World world = worldHandler.get("Overworld");
+		world.createWorld();
+		player = new Player("Player1", world, world.getWidth() * Tile.TILEWIDTH / 2, world.getHeight() * Tile.TILEHEIGHT / 2, 5);
+		int[] start = world.findOpenPositionNear(player.getX(), player.getY(), player.getWidth(), player.getHeight());	// Not in Water, Lava or Stone
+		player.setX(start[0]);
+		player.setY(start[1]);
+		Camera camera = world.getCamera();
+		camera.setXOffset(camera.getViewWidth() / 2 - player.getX());
+		camera.setYOffset(camera.getViewHeight() / 2 - player.getY());
+		if(world instanceof OverWorld)
+			((OverWorld)world).populateWorld(zombies);
+		System.out.println(zombies + " Zombies added to " + world);
+	}
+}
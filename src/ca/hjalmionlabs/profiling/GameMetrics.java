@@ -0,0 +1,179 @@
+package ca.hjalmionlabs.profiling;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanServer;
+import javax.management.Notification;
+import javax.management.NotificationBroadcasterSupport;
+import javax.management.ObjectName;
+
+import ca.hjalmionlabs.world.World;
+
+/**
+ * Publishes the game's numbers over JMX, so a running game can be watched with jconsole or Java Mission Control. The
+ * game itself is <code>ca.hjalmionlabs:type=Game</code> (see {@link GameMetricsMBean}), and each {@link World} that is
+ * {@link GameMetrics#register(World) registered} is <code>ca.hjalmionlabs:type=World,name=&lt;World name&gt;</code>
+ * (see {@link WorldMetricsMBean}).
+ * <br><br>
+ * The key moments of a game (generating Chunks, saving, loading and switching Worlds) are sent as JMX notifications by
+ * the Game MBean, with how long they took (in nanoseconds, or 0 if it doesn't apply) as the user data. Anything that
+ * subscribes to the Game MBean sees them as they happen.
+ * @author Nick Mills
+ */
+public class GameMetrics extends NotificationBroadcasterSupport implements GameMetricsMBean
+{
+	/** Notification type sent after Chunks of a World were generated */
+	public static final String WORLD_GENERATED = "ca.hjalmionlabs.world.generated";
+	/** Notification type sent after a save was written */
+	public static final String SAVED = "ca.hjalmionlabs.save";
+	/** Notification type sent after a save was loaded */
+	public static final String LOADED = "ca.hjalmionlabs.load";
+	/** Notification type sent after the current World changed */
+	public static final String WORLD_SWITCHED = "ca.hjalmionlabs.world.switch";
+
+	private static final String DOMAIN = "ca.hjalmionlabs";
+	private static final GameMetrics INSTANCE = new GameMetrics();
+
+	static
+	{
+		try
+		{
+			ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(DOMAIN + ":type=Game"));
+		} catch(JMException e)
+		{
+			System.out.println("Couldn't publish the game's metrics over JMX");
+			e.printStackTrace();
+		}
+	}
+
+	private final AtomicLong sequence = new AtomicLong();
+
+	private volatile long lastRenderNanos;
+	private volatile long lastSaveNanos;
+	private final AtomicLong saveCount = new AtomicLong();
+	private volatile long lastLoadNanos;
+	private final AtomicLong loadCount = new AtomicLong();
+
+	private GameMetrics()
+	{
+		super(new MBeanNotificationInfo(new String[] {WORLD_GENERATED, SAVED, LOADED, WORLD_SWITCHED}, Notification.class.getName(),
+				"Key moments of the game, with their duration in nanoseconds as the user data"));
+	}
+
+	/**
+	 * Publishes the supplied {@link World} over JMX, replacing any World that was published with the same name
+	 * (like a World that was replaced by loading a save)
+	 * @param world - The World to publish
+	 */
+	public static void register(World world)
+	{
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(DOMAIN + ":type=World,name=" + ObjectName.quote(world.getName()));
+			if(server.isRegistered(name))
+				server.unregisterMBean(name);
+			server.registerMBean(new WorldMetrics(world), name);
+		} catch(JMException e)
+		{
+			System.out.println("Couldn't publish the metrics of " + world + " over JMX");
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Counts a frame that was drawn
+	 * @param nanos - How long drawing and showing it took, in nanoseconds
+	 */
+	public static void rendered(long nanos)
+	{
+		INSTANCE.lastRenderNanos = nanos;
+	}
+
+	/**
+	 * Counts a save that was written, and sends a {@link GameMetrics#SAVED} notification
+	 * @param checkpoint - Number of the checkpoint that was written
+	 * @param chunks - How many Chunks were written
+	 * @param nanos - How long it took, in nanoseconds
+	 */
+	public static void saved(long checkpoint, int chunks, long nanos)
+	{
+		INSTANCE.lastSaveNanos = nanos;
+		INSTANCE.saveCount.incrementAndGet();
+		INSTANCE.send(SAVED, "Checkpoint " + checkpoint + " written (" + chunks + " chunks)", nanos);
+	}
+
+	/**
+	 * Counts a save that was loaded, and sends a {@link GameMetrics#LOADED} notification
+	 * @param checkpoint - Number of the checkpoint that was loaded
+	 * @param edits - How many journaled edits were replayed on top of it
+	 * @param nanos - How long it took, in nanoseconds
+	 */
+	public static void loaded(long checkpoint, int edits, long nanos)
+	{
+		INSTANCE.lastLoadNanos = nanos;
+		INSTANCE.loadCount.incrementAndGet();
+		INSTANCE.send(LOADED, "Checkpoint " + checkpoint + " loaded, " + edits + " journaled edits replayed", nanos);
+	}
+
+	/**
+	 * Sends a {@link GameMetrics#WORLD_GENERATED} notification
+	 * @param world - The World that the Chunks are in
+	 * @param chunks - How many Chunks were generated
+	 * @param nanos - How long it took, in nanoseconds
+	 */
+	public static void worldGenerated(World world, int chunks, long nanos)
+	{
+		INSTANCE.send(WORLD_GENERATED, chunks + " chunks of " + world + " generated", nanos);
+	}
+
+	/**
+	 * Sends a {@link GameMetrics#WORLD_SWITCHED} notification
+	 * @param from - The World that was current before, or null if there wasn't one
+	 * @param to - The World that is current now
+	 */
+	public static void worldSwitched(World from, World to)
+	{
+		INSTANCE.send(WORLD_SWITCHED, "Switched from " + from + " to " + to, 0);
+	}
+
+	@Override
+	public double getLastRenderMillis()
+	{
+		return lastRenderNanos / 1e6;
+	}
+
+	@Override
+	public double getLastSaveMillis()
+	{
+		return lastSaveNanos / 1e6;
+	}
+
+	@Override
+	public long getSaveCount()
+	{
+		return saveCount.get();
+	}
+
+	@Override
+	public double getLastLoadMillis()
+	{
+		return lastLoadNanos / 1e6;
+	}
+
+	@Override
+	public long getLoadCount()
+	{
+		return loadCount.get();
+	}
+
+	private void send(String type, String message, long nanos)
+	{
+		Notification notification = new Notification(type, this, sequence.incrementAndGet(), System.currentTimeMillis(), message);
+		notification.setUserData(nanos);
+		sendNotification(notification);
+	}
+}
@@ -0,0 +1,38 @@
+package ca.hjalmionlabs.profiling;
+
+/**
+ * What JMX shows about the whole game, under <code>ca.hjalmionlabs:type=Game</code>. See {@link GameMetrics}
+ * @author Nick Mills
+ */
+public interface GameMetricsMBean
+{
+	/**
+	 * Gets how long drawing the last frame took, including showing it
+	 * @return the duration of the last frame, in milliseconds
+	 */
+	double getLastRenderMillis();
+
+	/**
+	 * Gets how long writing the last save took
+	 * @return the duration of the last save, in milliseconds, or 0 if nothing was saved yet
+	 */
+	double getLastSaveMillis();
+
+	/**
+	 * Gets how many saves were written
+	 * @return the number of saves
+	 */
+	long getSaveCount();
+
+	/**
+	 * Gets how long the last load took
+	 * @return the duration of the last load, in milliseconds, or 0 if nothing was loaded yet
+	 */
+	double getLastLoadMillis();
+
+	/**
+	 * Gets how many times a save was loaded
+	 * @return the number of loads
+	 */
+	long getLoadCount();
+}
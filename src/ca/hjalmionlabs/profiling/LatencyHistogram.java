@@ -0,0 +1,158 @@
+package ca.hjalmionlabs.profiling;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts how long something took, in nanoseconds, without locks, so any number of threads can record into it at the
+ * same time for the cost of one atomic add. Durations are counted in buckets that are {@link LatencyHistogram#SUB_BUCKETS}
+ * to a power of two, so every bucket is at most about 6% wide, from 1 ns up to {@link Long#MAX_VALUE}.
+ * <br><br>
+ * The counts only ever go up. {@link LatencyHistogram#summarize()} works out what was recorded since the last time it
+ * was called by comparing the counts with the ones it saw last time, so recording never has to wait for it. Only one
+ * thread may summarize a histogram.
+ * @author Nick Mills
+ */
+public class LatencyHistogram
+{
+	/* Buckets per power of two. Durations below this each get their own bucket */
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	/* Longest duration since the last summary */
+	private final AtomicLong max = new AtomicLong();
+
+	/* Counts at the last summary, and the counts since then. Only used by the summarizing thread */
+	private final long[] reported = new long[BUCKETS];
+	private final long[] interval = new long[BUCKETS];
+
+	/**
+	 * Counts one duration
+	 * @param nanos - How long it took, in nanoseconds. Negative durations are counted as 0
+	 */
+	public void record(long nanos)
+	{
+		if(nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(bucketOf(nanos));
+		long current = max.get();
+		while(nanos > current && !max.compareAndSet(current, nanos))
+			current = max.get();
+	}
+
+	/**
+	 * Works out the durations that were recorded since the last summary. Must always be called on the same thread
+	 * @return how many durations were recorded since then, and how long they took
+	 */
+	public Summary summarize()
+	{
+		long count = 0;
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			long total = counts.get(i);
+			interval[i] = total - reported[i];
+			reported[i] = total;
+			count += interval[i];
+		}
+		long max = this.max.getAndSet(0);
+		return new Summary(count, percentile(count, 0.50, max), percentile(count, 0.99, max), max);
+	}
+
+	/* The top of the bucket that the supplied fraction of the interval's durations are in or below, but no more than max */
+	private long percentile(long count, double fraction, long max)
+	{
+		if(count == 0)
+			return 0;
+		long rank = (long)Math.ceil(count * fraction);
+		long seen = 0;
+		for(int i = 0; i < BUCKETS; i++)
+		{
+			seen += interval[i];
+			if(seen >= rank)
+				return Math.min(max, highestIn(i));
+		}
+		return max;
+	}
+
+	/* Durations below SUB_BUCKETS get their own bucket. After that, each power of two is split into SUB_BUCKETS buckets */
+	private static int bucketOf(long nanos)
+	{
+		if(nanos < SUB_BUCKETS)
+			return (int)nanos;
+		int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+		int sub = (int)(nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+		return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+	}
+
+	/* The longest duration that goes in the supplied bucket */
+	private static long highestIn(int bucket)
+	{
+		if(bucket < SUB_BUCKETS)
+			return bucket;
+		int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+		long sub = bucket % SUB_BUCKETS;
+		long lowest = (1L << exponent) | (sub << (exponent - SUB_BITS));
+		return lowest + (1L << (exponent - SUB_BITS)) - 1;
+	}
+
+	/**
+	 * What a {@link LatencyHistogram} recorded between two summaries. Durations are in nanoseconds
+	 */
+	public static class Summary
+	{
+		private final long count;
+		private final long p50;
+		private final long p99;
+		private final long max;
+
+		private Summary(long count, long p50, long p99, long max)
+		{
+			this.count = count;
+			this.p50 = p50;
+			this.p99 = p99;
+			this.max = max;
+		}
+
+		/**
+		 * <strong>Getter</strong><br>
+		 * Gets how many durations were recorded
+		 * @return the number of durations
+		 */
+		public long getCount()
+		{
+			return count;
+		}
+
+		/**
+		 * <strong>Getter</strong><br>
+		 * Gets the median duration. Accurate to about 6%
+		 * @return half of the durations were this long or shorter, in nanoseconds
+		 */
+		public long getP50()
+		{
+			return p50;
+		}
+
+		/**
+		 * <strong>Getter</strong><br>
+		 * Gets the 99th percentile duration. Accurate to about 6%
+		 * @return 99% of the durations were this long or shorter, in nanoseconds
+		 */
+		public long getP99()
+		{
+			return p99;
+		}
+
+		/**
+		 * <strong>Getter</strong><br>
+		 * Gets the longest duration
+		 * @return the longest duration, in nanoseconds
+		 */
+		public long getMax()
+		{
+			return max;
+		}
+	}
+}
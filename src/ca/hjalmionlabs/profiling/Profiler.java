@@ -0,0 +1,100 @@
+package ca.hjalmionlabs.profiling;
+
+/**
+ * Times the phases of a tick and of a frame, each into its own {@link LatencyHistogram}. Timing a phase costs two calls
+ * to {@link System#nanoTime()} and one atomic add, so the phases are always timed:
+ * <pre>
+ * long start = System.nanoTime();
+ * tileHandler.tick();
+ * Profiler.Phase.TILE_TICK.record(start);
+ * </pre>
+ * {@link Profiler#report()} shows how long each phase took since the last report, which the game loop prints once a second.
+ * @author Nick Mills
+ */
+public class Profiler
+{
+	/**
+	 * The parts of a tick and of a frame that are timed. A phase can be timed on any thread, even on more than one at the same time. 
+	 * The Worlds that are ticked in the background have phases of their own, so the phases of the current World's tick 
+	 * only ever time the game thread
+	 */
+	public enum Phase
+	{
+		/** All of {@link ca.hjalmionlabs.handlers.WorldHandler#tick()} */
+		WORLD_TICK("world tick"),
+		/** {@link ca.hjalmionlabs.handlers.TileHandler#tick()} of the current World, which loads and unloads Chunks */
+		TILE_TICK("tile tick"),
+		/** {@link ca.hjalmionlabs.world.FlowField#update()} of the current World */
+		FLOW_FIELD("flow field"),
+		/** {@link ca.hjalmionlabs.handlers.EntityHandler#tick()} of the current World */
+		ENTITY_TICK("entity tick"),
+		/** Ticking every World that isn't current once, on the background thread */
+		BACKGROUND_TICK("bg tick"),
+		/** {@link ca.hjalmionlabs.handlers.TileHandler#tick()} of a World that is ticked in the background */
+		BACKGROUND_TILE_TICK("bg tile tick"),
+		/** {@link ca.hjalmionlabs.handlers.EntityHandler#tickInBackground(int)} of a World that is ticked in the background */
+		BACKGROUND_ENTITY_TICK("bg entities"),
+		/** {@link ca.hjalmionlabs.handlers.GUIHandler#tick()} */
+		GUI_TICK("gui tick"),
+		/** Drawing a frame, up to showing it */
+		RENDER("render"),
+		/** Showing a drawn frame with {@link java.awt.image.BufferStrategy#show()} */
+		SHOW("bs.show");
+
+		private final String name;
+		private final LatencyHistogram histogram = new LatencyHistogram();
+
+		Phase(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Counts one run of this phase, from the supplied start time until now
+		 * @param start - When the phase started, from {@link System#nanoTime()}
+		 * @return the time now, so it can be the start of the next phase
+		 */
+		public long record(long start)
+		{
+			long now = System.nanoTime();
+			histogram.record(now - start);
+			return now;
+		}
+
+		public String getName()
+		{
+			return name;
+		}
+
+		/**
+		 * <strong>Getter</strong><br>
+		 * Gets the histogram that this phase is timed into
+		 * @return the phase's histogram
+		 */
+		public LatencyHistogram getHistogram()
+		{
+			return histogram;
+		}
+	}
+
+	/**
+	 * Makes a table of how often each phase ran since the last report, and its median, 99th percentile and longest
+	 * duration in milliseconds. Phases that didn't run are left out. Must always be called on the same thread
+	 * @return the table, one line per phase, or an empty String if no phase ran
+	 */
+	public static String report()
+	{
+		StringBuilder report = new StringBuilder();
+		for(Phase phase : Phase.values())
+		{
+			LatencyHistogram.Summary summary = phase.getHistogram().summarize();
+			if(summary.getCount() == 0)
+				continue;
+			if(report.length() == 0)
+				report.append(String.format("%-12s %6s %9s %9s %9s%n", "phase", "count", "p50 ms", "p99 ms", "max ms"));
+			report.append(String.format("%-12s %6d %9.3f %9.3f %9.3f%n", phase.getName(), summary.getCount(), summary.getP50() / 1e6,
+					summary.getP99() / 1e6, summary.getMax() / 1e6));
+		}
+		return report.toString();
+	}
+}
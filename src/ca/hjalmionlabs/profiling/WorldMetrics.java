@@ -0,0 +1,73 @@
+package ca.hjalmionlabs.profiling;
+
+import ca.hjalmionlabs.world.World;
+
+/**
+ * Publishes the numbers of one {@link World} over JMX (see {@link WorldMetricsMBean}). Every value is read from the World
+ * when JMX asks for it, so nothing is done while the game runs. The values are read without locking, from whichever
+ * thread JMX uses, so they can be a tick out of date. Registered by {@link GameMetrics#register(World)}
+ * @author Nick Mills
+ */
+public class WorldMetrics implements WorldMetricsMBean
+{
+	private final World world;
+
+	/**
+	 * Creates the metrics of the supplied {@link World}
+	 * @param world - The World to publish
+	 */
+	public WorldMetrics(World world)
+	{
+		this.world = world;
+	}
+
+	@Override
+	public String getName()
+	{
+		return world.getName();
+	}
+
+	@Override
+	public int getTileCount()
+	{
+		return world.getWidth() * world.getHeight();
+	}
+
+	@Override
+	public int getLoadedChunks()
+	{
+		return world.getTileHandler().loadedChunks();
+	}
+
+	@Override
+	public int getEntityCount()
+	{
+		return world.getEntityHandler().getStore().size();
+	}
+
+	@Override
+	public double getLastTickMillis()
+	{
+		return world.getLastTickNanos() / 1e6;
+	}
+
+	@Override
+	public long getChunkCacheHits()
+	{
+		return world.getTileHandler().getChunkHits();
+	}
+
+	@Override
+	public long getChunkCacheMisses()
+	{
+		return world.getTileHandler().getChunkMisses();
+	}
+
+	@Override
+	public double getChunkCacheHitRate()
+	{
+		long hits = getChunkCacheHits();
+		long total = hits + getChunkCacheMisses();
+		return total == 0 ? 1 : (double)hits / total;
+	}
+}
@@ -0,0 +1,57 @@
+package ca.hjalmionlabs.profiling;
+
+/**
+ * What JMX shows about one {@link ca.hjalmionlabs.world.World World}, under
+ * <code>ca.hjalmionlabs:type=World,name=&lt;World name&gt;</code>. See {@link WorldMetrics}
+ * @author Nick Mills
+ */
+public interface WorldMetricsMBean
+{
+	/**
+	 * Gets the name of the World
+	 * @return the World's name
+	 */
+	String getName();
+
+	/**
+	 * Gets how many Tiles the World has, loaded or not
+	 * @return the width times the height of the World, in Tiles
+	 */
+	int getTileCount();
+
+	/**
+	 * Gets how many Chunks of the World are in memory
+	 * @return the number of loaded Chunks
+	 */
+	int getLoadedChunks();
+
+	/**
+	 * Gets how many Entities are in the World
+	 * @return the number of Entities
+	 */
+	int getEntityCount();
+
+	/**
+	 * Gets how long the World's last tick took
+	 * @return the duration of the last tick, in milliseconds
+	 */
+	double getLastTickMillis();
+
+	/**
+	 * Gets how many times a Chunk that was needed was already loaded
+	 * @return the number of Chunk lookups that didn't have to load or generate the Chunk
+	 */
+	long getChunkCacheHits();
+
+	/**
+	 * Gets how many times a Chunk that was needed had to be loaded or generated
+	 * @return the number of Chunk lookups that missed
+	 */
+	long getChunkCacheMisses();
+
+	/**
+	 * Gets the share of Chunk lookups that found the Chunk already loaded
+	 * @return hits / (hits + misses), from 0 to 1, or 1 if no Chunk was looked up yet
+	 */
+	double getChunkCacheHitRate();
+}
@@ -0,0 +1,104 @@
+package ca.hjalmionlabs.rendering;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.tiles.Tile;
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * Draws a whole {@link Chunk} into a {@link BufferedImage} once, so that a frame only has to copy one image per Chunk 
+ * instead of making two {@link java.awt.Graphics} calls per {@link Tile}. The images use one byte per pixel 
+ * (an index into the {@link TileType} colors) to keep a 32x32 Tile Chunk at about 2.5 MB.
+ * <br><br>
+ * Each Chunk has two images that take turns, like a double buffered screen: the one that {@link FrameSnapshot}s show, 
+ * and a spare that is drawn into the next time a Tile changes. The spare is only drawn over once the render thread 
+ * has moved on from every FrameSnapshot that had it, so painting Tiles doesn't make any garbage.
+ * @author Nick Mills
+ */
+public class ChunkRenderer
+{
+	/** Size of a Chunk's image, in pixels */
+	public static final int IMAGE_WIDTH = Chunk.SIZE * Tile.TILEWIDTH;
+	public static final int IMAGE_HEIGHT = Chunk.SIZE * Tile.TILEHEIGHT;
+	
+	/* Color index for Tiles outside of the World; nothing is drawn there */
+	private static final byte CLEAR = 0;
+	/* Color index for the outline around each Tile */
+	private static final byte OUTLINE = 1;
+	/* Color index of the first TileType. A TileType's color index is its id + FIRST_TYPE */
+	private static final int FIRST_TYPE = 2;
+	
+	private static final IndexColorModel COLORS = createColorModel();
+	
+	/**
+	 * Draws the Tiles of the supplied {@link Chunk} into its spare image and swaps it in (see {@link Chunk#swapImage}). 
+	 * A new image is only made the first two times a Chunk is drawn. If a {@link FrameSnapshot} that the render thread 
+	 * may still draw has the spare image, nothing is drawn, and the Chunk keeps its old image until a later capture
+	 * @param chunk - The Chunk to draw
+	 * @param worldWidth - Width of the World, in Tiles. Tiles past this are left clear
+	 * @param worldHeight - Height of the World, in Tiles. Tiles past this are left clear
+	 * @param sequence - Number of the FrameSnapshot that is being captured
+	 * @param released - Every FrameSnapshot with a number below this one is done being drawn
+	 * @return true if the Chunk was drawn, false if it has to wait for the render thread
+	 */
+	public static boolean rasterize(Chunk chunk, int worldWidth, int worldHeight, long sequence, long released)
+	{
+		BufferedImage image = chunk.getSpareImage();
+		if(image == null)
+			image = new BufferedImage(IMAGE_WIDTH, IMAGE_HEIGHT, BufferedImage.TYPE_BYTE_INDEXED, COLORS);
+		else if(chunk.getSpareLastShown() >= released)
+			return false;
+		byte[] pixels = ((DataBufferByte)image.getRaster().getDataBuffer()).getData();
+		
+		int baseX = chunk.getChunkX() << Chunk.SHIFT;
+		int baseY = chunk.getChunkY() << Chunk.SHIFT;
+		for(int localY = 0; localY < Chunk.SIZE; localY++)
+		{
+			for(int localX = 0; localX < Chunk.SIZE; localX++)
+			{
+				boolean inWorld = baseX + localX < worldWidth && baseY + localY < worldHeight;
+				byte color = inWorld ? (byte)(chunk.get(localX, localY) + FIRST_TYPE) : CLEAR;
+				byte outline = inWorld ? OUTLINE : CLEAR;
+				
+				/* Same look as Tile#render: filled, with the outline along the top and left edges */
+				int start = localY * Tile.TILEHEIGHT * IMAGE_WIDTH + localX * Tile.TILEWIDTH;
+				Arrays.fill(pixels, start, start + Tile.TILEWIDTH, outline);
+				for(int row = 1; row < Tile.TILEHEIGHT; row++)
+				{
+					int rowStart = start + row * IMAGE_WIDTH;
+					pixels[rowStart] = outline;
+					Arrays.fill(pixels, rowStart + 1, rowStart + Tile.TILEWIDTH, color);
+				}
+			}
+		}
+		chunk.swapImage(image, sequence - 1);	// The old image can be in every FrameSnapshot up to the one before this one
+		return true;
+	}
+	
+	private static IndexColorModel createColorModel()
+	{
+		TileType[] types = TileType.values();
+		int size = FIRST_TYPE + types.length;
+		byte[] r = new byte[size];
+		byte[] g = new byte[size];
+		byte[] b = new byte[size];
+		byte[] a = new byte[size];
+		
+		a[OUTLINE] = (byte)255;	// Black, not see-through. CLEAR is left as see-through
+		for(TileType type : types)
+		{
+			Color color = type.getColor();
+			int index = type.getID() + FIRST_TYPE;
+			r[index] = (byte)color.getRed();
+			g[index] = (byte)color.getGreen();
+			b[index] = (byte)color.getBlue();
+			a[index] = (byte)255;
+		}
+		return new IndexColorModel(8, size, r, g, b, a);
+	}
+}
@@ -0,0 +1,229 @@
+package ca.hjalmionlabs.rendering;
+
+import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
+import ca.hjalmionlabs.entities.Entity;
+import ca.hjalmionlabs.entities.EntityStore;
+import ca.hjalmionlabs.world.Camera;
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.ChunkMap;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.Tile;
+
+/**
+ * Everything that is needed to draw one tick of a {@link World}: where the {@link Camera} was, the images of the
+ * {@link Chunk}s on the screen, and where each {@link Entity} on the screen was before and after the tick. A FrameSnapshot is
+ * made on the game thread at the end of a tick with {@link FrameSnapshot#capture}, and never changes afterwards, so the render
+ * thread can draw it while the game thread works on the next tick.
+ * <br><br>
+ * The render thread usually draws more often than the game ticks, so it draws a FrameSnapshot part of the way between the
+ * positions before and after the tick (see {@link FrameSnapshot#render}). Everything is drawn one tick late, but moves smoothly
+ * instead of jumping once a tick.
+ * @author Nick Mills
+ */
+public class FrameSnapshot
+{
+	/* Anything this close to the edge of the screen is kept, since the Camera may be part of a tick behind */
+	private static final int MARGIN = Tile.TILEWIDTH;
+
+	/* Number of the last FrameSnapshot that was captured. Only used on the game thread */
+	private static long captured;
+	/* Every FrameSnapshot numbered below this is done being drawn: the render thread always draws the newest one, so once it 
+	 * starts on one it never goes back to an older one */
+	private static volatile long released;
+
+	private final World world;
+	private final long time;
+	private final long sequence;
+
+	/* Camera offset before and after the tick */
+	private final int previousOffsetX;
+	private final int previousOffsetY;
+	private final int offsetX;
+	private final int offsetY;
+
+	/* Images of the Chunks on the screen, and where they go in world coordinates */
+	private final BufferedImage[] images;
+	private final int[] imageXs;
+	private final int[] imageYs;
+
+	/* The Entities on the screen, with their positions before and after the tick, and their size */
+	private final Entity[] entities;
+	private final int[] previousXs;
+	private final int[] previousYs;
+	private final int[] xs;
+	private final int[] ys;
+	private final int[] widths;
+	private final int[] heights;
+
+	private FrameSnapshot(World world, long time, long sequence, Camera camera, FrameSnapshot previous, BufferedImage[] images, int[] imageXs, int[] imageYs,
+			Entity[] entities, int[] previousXs, int[] previousYs, int[] xs, int[] ys, int[] widths, int[] heights)
+	{
+		this.world = world;
+		this.time = time;
+		this.sequence = sequence;
+		this.offsetX = camera.getXOffset();
+		this.offsetY = camera.getYOffset();
+		boolean sameWorld = previous != null && previous.world == world;
+		this.previousOffsetX = sameWorld ? previous.offsetX : offsetX;
+		this.previousOffsetY = sameWorld ? previous.offsetY : offsetY;
+		this.images = images;
+		this.imageXs = imageXs;
+		this.imageYs = imageYs;
+		this.entities = entities;
+		this.previousXs = previousXs;
+		this.previousYs = previousYs;
+		this.xs = xs;
+		this.ys = ys;
+		this.widths = widths;
+		this.heights = heights;
+	}
+
+	/**
+	 * Makes a FrameSnapshot of what the supplied {@link World}'s {@link Camera} can see right now. Must be called on the game
+	 * thread, between ticks. {@link Chunk} images that are out of date are drawn again into each Chunk's spare image here 
+	 * (see {@link ChunkRenderer#rasterize}), but only once the render thread is done with every FrameSnapshot that has 
+	 * the spare image, so an image is never drawn over while it is being drawn. Until then the old image is kept
+	 * @param world - The World to capture
+	 * @param previous - The last FrameSnapshot that was captured, whose Camera position is where this FrameSnapshot's Camera starts from.
+	 * Can be null, or from another World, in which case the Camera doesn't move during this FrameSnapshot
+	 * @param time - When the tick that this FrameSnapshot shows happened, from {@link System#nanoTime()}
+	 * @return the new FrameSnapshot
+	 */
+	public static FrameSnapshot capture(World world, FrameSnapshot previous, long time)
+	{
+		long sequence = ++captured;
+		long released = FrameSnapshot.released;
+		Camera camera = world.getCamera();
+		int viewX = camera.getViewX() - MARGIN;
+		int viewY = camera.getViewY() - MARGIN;
+		int viewWidth = camera.getViewWidth() + MARGIN * 2;
+		int viewHeight = camera.getViewHeight() + MARGIN * 2;
+
+		/* The Chunks on the screen that are loaded. Chunks that aren't loaded are skipped instead of being generated */
+		int firstTileX = Math.max(0, Math.floorDiv(viewX, Tile.TILEWIDTH));
+		int firstTileY = Math.max(0, Math.floorDiv(viewY, Tile.TILEHEIGHT));
+		int lastTileX = Math.min(world.getWidth() - 1, Math.floorDiv(viewX + viewWidth - 1, Tile.TILEWIDTH));
+		int lastTileY = Math.min(world.getHeight() - 1, Math.floorDiv(viewY + viewHeight - 1, Tile.TILEHEIGHT));
+		ChunkMap chunks = world.getTileHandler().getChunks();
+		int imageCount = 0;
+		BufferedImage[] images = new BufferedImage[0];
+		int[] imageXs = new int[0];
+		int[] imageYs = new int[0];
+		if(firstTileX <= lastTileX && firstTileY <= lastTileY)
+		{
+			int capacity = ((lastTileX >> Chunk.SHIFT) - (firstTileX >> Chunk.SHIFT) + 1) * ((lastTileY >> Chunk.SHIFT) - (firstTileY >> Chunk.SHIFT) + 1);
+			images = new BufferedImage[capacity];
+			imageXs = new int[capacity];
+			imageYs = new int[capacity];
+			for(int chunkY = firstTileY >> Chunk.SHIFT; chunkY <= lastTileY >> Chunk.SHIFT; chunkY++)
+			{
+				for(int chunkX = firstTileX >> Chunk.SHIFT; chunkX <= lastTileX >> Chunk.SHIFT; chunkX++)
+				{
+					Chunk chunk = chunks.get(chunkX, chunkY);
+					if(chunk == null)
+						continue;
+					if(chunk.isImageDirty())
+						ChunkRenderer.rasterize(chunk, world.getWidth(), world.getHeight(), sequence, released);
+					if(chunk.getImage() == null)
+						continue;
+					images[imageCount] = chunk.getImage();
+					imageXs[imageCount] = chunkX * ChunkRenderer.IMAGE_WIDTH;
+					imageYs[imageCount] = chunkY * ChunkRenderer.IMAGE_HEIGHT;
+					imageCount++;
+				}
+			}
+		}
+
+		/* The Entities on the screen: count them, then copy them */
+		EntityStore store = world.getEntityHandler().getStore();
+		int count = 0;
+		for(int i = 0; i < store.size(); i++)
+			if(isVisible(store, i, viewX, viewY, viewWidth, viewHeight))
+				count++;
+		Entity[] entities = new Entity[count];
+		int[] previousXs = new int[count];
+		int[] previousYs = new int[count];
+		int[] xs = new int[count];
+		int[] ys = new int[count];
+		int[] widths = new int[count];
+		int[] heights = new int[count];
+		for(int i = 0, j = 0; j < count; i++)
+		{
+			if(!isVisible(store, i, viewX, viewY, viewWidth, viewHeight))
+				continue;
+			entities[j] = store.getEntity(i);
+			previousXs[j] = store.getPreviousX(i);
+			previousYs[j] = store.getPreviousY(i);
+			xs[j] = store.getX(i);
+			ys[j] = store.getY(i);
+			widths[j] = store.getWidth(i);
+			heights[j] = store.getHeight(i);
+			j++;
+		}
+
+		return new FrameSnapshot(world, time, sequence, camera, previous, Arrays.copyOf(images, imageCount), Arrays.copyOf(imageXs, imageCount),
+				Arrays.copyOf(imageYs, imageCount), entities, previousXs, previousYs, xs, ys, widths, heights);
+	}
+
+	/**
+	 * Draws this FrameSnapshot part of the way from before its tick to after it
+	 * @param g - Graphics object to draw with, in screen coordinates
+	 * @param alpha - How far through the tick to draw, from 0 (before the tick) to 1 (after the tick)
+	 */
+	public void render(Graphics g, double alpha)
+	{
+		if(sequence > released)
+			released = sequence;	// Only the render thread draws, so nothing older than this is drawn again
+		alpha = Math.max(0, Math.min(1, alpha));
+		double cameraX = blend(previousOffsetX, offsetX, alpha);
+		double cameraY = blend(previousOffsetY, offsetY, alpha);
+		int translateX = (int)Math.round(cameraX);
+		int translateY = (int)Math.round(cameraY);
+		g.translate(translateX, translateY);
+		for(int i = 0; i < images.length; i++)
+			g.drawImage(images[i], imageXs[i], imageYs[i], null);
+		for(int i = 0; i < entities.length; i++)
+		{
+			/* Rounded on the screen, so an Entity that moves with the Camera doesn't wobble */
+			int x = (int)Math.round(cameraX + blend(previousXs[i], xs[i], alpha)) - translateX;
+			int y = (int)Math.round(cameraY + blend(previousYs[i], ys[i], alpha)) - translateY;
+			entities[i].render(g, x, y, widths[i], heights[i]);
+		}
+		g.translate(-translateX, -translateY);
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets when the tick that this FrameSnapshot shows happened
+	 * @return the time of the tick, from {@link System#nanoTime()}
+	 */
+	public long getTime()
+	{
+		return time;
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link World} that this FrameSnapshot shows
+	 * @return the World
+	 */
+	public World getWorld()
+	{
+		return world;
+	}
+
+	/* Whether or not any part of the Entity at index i is in the supplied rectangle */
+	private static boolean isVisible(EntityStore store, int i, int x, int y, int width, int height)
+	{
+		return store.getX(i) + store.getWidth(i) > x && store.getX(i) < x + width && store.getY(i) + store.getHeight(i) > y && store.getY(i) < y + height;
+	}
+
+	/* The point alpha of the way from a to b */
+	private static double blend(int a, int b, double alpha)
+	{
+		return a + (b - a) * alpha;
+	}
+}
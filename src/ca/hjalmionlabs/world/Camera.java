@@ -0,0 +1,150 @@
+package ca.hjalmionlabs.world;
+
+/**
+ * The Camera decides which part of a {@link World} is on the screen. Everything in a World (Tiles and Entities) 
+ * lives in world coordinates, and the Camera's offset is applied once, when the World is drawn, instead of 
+ * being added to every Tile and Entity every tick.
+ * @author Nick Mills
+ */
+public class Camera
+{
+	/* How far the World is moved on the screen, in pixels. The World is moved left / up when these are negative */
+	private int xOffset;
+	private int yOffset;
+	
+	/* Size of the area the Camera can see, in pixels */
+	private final int viewWidth;
+	private final int viewHeight;
+	
+	/**
+	 * Creates a new Camera that looks at the top left corner of the World
+	 * @param viewWidth - Width of the screen, in pixels
+	 * @param viewHeight - Height of the screen, in pixels
+	 */
+	public Camera(int viewWidth, int viewHeight)
+	{
+		this.viewWidth = viewWidth;
+		this.viewHeight = viewHeight;
+	}
+	
+	/**
+	 * Moves the Camera's offset by the specified amount
+	 * @param dx - How much to add to the x offset
+	 * @param dy - How much to add to the y offset
+	 */
+	public void move(int dx, int dy)
+	{
+		xOffset += dx;
+		yOffset += dy;
+	}
+	
+	/**
+	 * Converts a world x-coord into an x-coord on the screen
+	 * @param worldX - x-coord in the World, in pixels
+	 * @return x-coord on the screen, in pixels
+	 */
+	public int toScreenX(int worldX)
+	{
+		return worldX + xOffset;
+	}
+	
+	/**
+	 * Converts a world y-coord into a y-coord on the screen
+	 * @param worldY - y-coord in the World, in pixels
+	 * @return y-coord on the screen, in pixels
+	 */
+	public int toScreenY(int worldY)
+	{
+		return worldY + yOffset;
+	}
+	
+	/**
+	 * Converts an x-coord on the screen into a world x-coord
+	 * @param screenX - x-coord on the screen, in pixels
+	 * @return x-coord in the World, in pixels
+	 */
+	public int toWorldX(int screenX)
+	{
+		return screenX - xOffset;
+	}
+	
+	/**
+	 * Converts a y-coord on the screen into a world y-coord
+	 * @param screenY - y-coord on the screen, in pixels
+	 * @return y-coord in the World, in pixels
+	 */
+	public int toWorldY(int screenY)
+	{
+		return screenY - yOffset;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the world x-coord that is in the middle of the screen
+	 * @return the x-coord in the World, in pixels
+	 */
+	public int getCenterX()
+	{
+		return toWorldX(viewWidth / 2);
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the world y-coord that is in the middle of the screen
+	 * @return the y-coord in the World, in pixels
+	 */
+	public int getCenterY()
+	{
+		return toWorldY(viewHeight / 2);
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the world x-coord of the left edge of the screen
+	 * @return the x-coord in the World, in pixels
+	 */
+	public int getViewX()
+	{
+		return -xOffset;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the world y-coord of the top edge of the screen
+	 * @return the y-coord in the World, in pixels
+	 */
+	public int getViewY()
+	{
+		return -yOffset;
+	}
+	
+	public int getXOffset()
+	{
+		return xOffset;
+	}
+	
+	public void setXOffset(int xOffset)
+	{
+		this.xOffset = xOffset;
+	}
+	
+	public int getYOffset()
+	{
+		return yOffset;
+	}
+	
+	public void setYOffset(int yOffset)
+	{
+		this.yOffset = yOffset;
+	}
+	
+	public int getViewWidth()
+	{
+		return viewWidth;
+	}
+	
+	public int getViewHeight()
+	{
+		return viewHeight;
+	}
+}
@@ -0,0 +1,318 @@
+package ca.hjalmionlabs.world;
+
+import java.awt.image.BufferedImage;
+
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * A square block of {@link Chunk#SIZE} x {@link Chunk#SIZE} Tiles. A {@link World} is split into Chunks so that
+ * only the area around the Player has to be kept in memory. The Tiles are stored as {@link TileType} ids, 
+ * indexed by <code>localY * SIZE + localX</code>. A Chunk that isn't being used can be {@link Chunk#pack() packed} 
+ * with {@link ChunkCodec} to save memory; it is unpacked again the next time one of its Tiles is used
+ * @author Nick Mills
+ */
+public class Chunk
+{
+	/** Width and height of a Chunk, in Tiles */
+	public static final int SIZE = 32;
+	/** log2 of {@link Chunk#SIZE}, used to turn Tile coordinates into Chunk coordinates */
+	public static final int SHIFT = 5;
+	/** Mask used to turn Tile coordinates into coordinates inside of a Chunk */
+	public static final int MASK = SIZE - 1;
+	
+	private final int chunkX;
+	private final int chunkY;
+	/* The Tiles, or null while the Chunk is packed */
+	private byte[] tiles = new byte[SIZE * SIZE];
+	/* The Tiles encoded with ChunkCodec, or null while the Chunk isn't packed */
+	private byte[] packed;
+	
+	/* One bit per Tile (same order as the Tiles) that is set if the Tile is solid, or null until it is first needed. 
+	 * Kept while the Chunk is packed, so collisions never have to unpack it */
+	private long[] solid;
+	
+	/* Whether or not this Chunk was changed after it was generated. Modified Chunks can't just be thrown away */
+	private boolean modified;
+	/* Whether or not this Chunk was changed since it was last written to the save file */
+	private boolean unsaved;
+	
+	/* Picture of this Chunk's Tiles, drawn once and reused every frame until a Tile changes */
+	private BufferedImage image;
+	/* The picture from before the last time the Chunk was drawn, to be drawn over next time, and the number of the last 
+	 * FrameSnapshot that can have it. Two pictures are enough, so drawing a Chunk again doesn't make any garbage */
+	private BufferedImage spareImage;
+	private long spareLastShown;
+	/* Whether or not the Tiles changed since the image was drawn */
+	private boolean imageDirty = true;
+	
+	/**
+	 * Creates a new Chunk filled with {@link TileType#NULL}
+	 * @param chunkX - x-coord of the Chunk, in Chunks
+	 * @param chunkY - y-coord of the Chunk, in Chunks
+	 */
+	public Chunk(int chunkX, int chunkY)
+	{
+		this.chunkX = chunkX;
+		this.chunkY = chunkY;
+	}
+	
+	/**
+	 * Gets the {@link TileType} id at the specified position inside of this Chunk
+	 * @param localX - x-coord inside of this Chunk (0 to {@link Chunk#SIZE} - 1)
+	 * @param localY - y-coord inside of this Chunk (0 to {@link Chunk#SIZE} - 1)
+	 * @return the id of the Tile at that position
+	 */
+	public byte get(int localX, int localY)
+	{
+		return getTiles()[(localY << SHIFT) | localX];
+	}
+	
+	/**
+	 * Sets the {@link TileType} id at the specified position inside of this Chunk. Used while generating the Chunk, 
+	 * so the Chunk is not marked as modified
+	 * @param localX - x-coord inside of this Chunk (0 to {@link Chunk#SIZE} - 1)
+	 * @param localY - y-coord inside of this Chunk (0 to {@link Chunk#SIZE} - 1)
+	 * @param id - id of the TileType to put there
+	 */
+	public void set(int localX, int localY, byte id)
+	{
+		int index = (localY << SHIFT) | localX;
+		getTiles()[index] = id;
+		imageDirty = true;
+		if(solid != null)
+		{
+			if(TileType.isSolid(id))
+				solid[index >> 6] |= 1L << index;
+			else
+				solid[index >> 6] &= ~(1L << index);
+		}
+	}
+	
+	/**
+	 * Whether or not the Tile at the specified position inside of this Chunk is {@link TileType#isSolid() solid}. Only 
+	 * tests one bit, and doesn't unpack the Chunk unless this is the first time
+	 * @param localX - x-coord inside of this Chunk (0 to {@link Chunk#SIZE} - 1)
+	 * @param localY - y-coord inside of this Chunk (0 to {@link Chunk#SIZE} - 1)
+	 * @return true if Entities can't walk on the Tile, false otherwise
+	 */
+	public boolean isSolid(int localX, int localY)
+	{
+		long[] solid = this.solid;
+		if(solid == null)
+			solid = findSolid();
+		int index = (localY << SHIFT) | localX;
+		return (solid[index >> 6] & (1L << index)) != 0;
+	}
+	
+	/**
+	 * Tells this Chunk that its Tiles were changed through the array returned by {@link Chunk#getTiles()} instead of 
+	 * {@link Chunk#set}, so anything worked out from them is out of date
+	 */
+	public void tilesChanged()
+	{
+		solid = null;
+		imageDirty = true;
+	}
+	
+	/**
+	 * Replaces the Tile at the specified position inside of this Chunk and marks this Chunk as modified
+	 * @param localX - x-coord inside of this Chunk (0 to {@link Chunk#SIZE} - 1)
+	 * @param localY - y-coord inside of this Chunk (0 to {@link Chunk#SIZE} - 1)
+	 * @param type - TileType to put there
+	 */
+	public void replace(int localX, int localY, TileType type)
+	{
+		set(localX, localY, type.getID());
+		modified = true;
+		unsaved = true;
+	}
+	
+	/**
+	 * Marks this Chunk as modified, so that it is kept in memory and saved even though none of its Tiles were 
+	 * replaced since it was created. Used when a Chunk is loaded from a save file
+	 */
+	public void markModified()
+	{
+		modified = true;
+	}
+	
+	/**
+	 * Whether or not this Chunk was changed since it was last written to the save file
+	 * @return true if the save file is missing some of this Chunk's changes, false otherwise
+	 */
+	public boolean isUnsaved()
+	{
+		return unsaved;
+	}
+	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets whether or not this Chunk has changes that aren't in the save file yet
+	 * @param unsaved - true if the Chunk needs to be written at the next save, false once it has been captured for one
+	 */
+	public void setUnsaved(boolean unsaved)
+	{
+		this.unsaved = unsaved;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the raw {@link TileType} ids of this Chunk, unpacking it if it is packed. Changing the array changes the Chunk, 
+	 * and must be followed by {@link Chunk#tilesChanged()}
+	 * @return the Tiles of this Chunk
+	 */
+	public byte[] getTiles()
+	{
+		if(tiles == null)
+		{
+			tiles = new byte[SIZE * SIZE];
+			ChunkCodec.decode(packed, tiles);
+			packed = null;
+		}
+		return tiles;
+	}
+	
+	/* Works out which Tiles are solid from scratch */
+	private long[] findSolid()
+	{
+		byte[] tiles = getTiles();
+		long[] solid = new long[SIZE * SIZE / 64];
+		for(int index = 0; index < tiles.length; index++)
+			if(TileType.isSolid(tiles[index]))
+				solid[index >> 6] |= 1L << index;
+		this.solid = solid;
+		return solid;
+	}
+	
+	/**
+	 * Gets a copy of the raw {@link TileType} ids of this Chunk, without unpacking it
+	 * @return a new array with the Tiles of this Chunk
+	 */
+	public byte[] copyTiles()
+	{
+		if(tiles != null)
+			return tiles.clone();
+		byte[] copy = new byte[SIZE * SIZE];
+		ChunkCodec.decode(packed, copy);
+		return copy;
+	}
+	
+	/**
+	 * Packs the Tiles of this Chunk with {@link ChunkCodec}, so they take less memory while the Chunk isn't being used. 
+	 * Does nothing if the Chunk is already packed
+	 */
+	public void pack()
+	{
+		if(tiles == null)
+			return;
+		packed = ChunkCodec.encode(tiles);
+		tiles = null;
+	}
+	
+	/**
+	 * Whether or not this Chunk's Tiles are packed
+	 * @return true if the Chunk is packed, false if its Tiles can be used right away
+	 */
+	public boolean isPacked()
+	{
+		return tiles == null;
+	}
+	
+	public int getChunkX()
+	{
+		return chunkX;
+	}
+	
+	public int getChunkY()
+	{
+		return chunkY;
+	}
+	
+	/**
+	 * Whether or not this Chunk was changed since it was generated
+	 * @return true if a Tile in this Chunk was replaced, false otherwise
+	 */
+	public boolean isModified()
+	{
+		return modified;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the cached picture of this Chunk's Tiles
+	 * @return the image, or null if it hasn't been drawn yet (or was thrown away)
+	 */
+	public BufferedImage getImage()
+	{
+		return image;
+	}
+	
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets the cached picture of this Chunk's Tiles, and marks it as up to date. Throwing the picture away also throws 
+	 * away the spare picture
+	 * @param image - The new image, or null to throw the old one away
+	 */
+	public void setImage(BufferedImage image)
+	{
+		this.image = image;
+		imageDirty = image == null;
+		if(image == null)
+			spareImage = null;
+	}
+	
+	/**
+	 * Makes a freshly drawn picture this Chunk's picture, and keeps the old one as the spare, to be drawn over the next 
+	 * time the Chunk changes
+	 * @param image - The new picture of this Chunk's Tiles
+	 * @param lastShown - Number of the last {@link ca.hjalmionlabs.rendering.FrameSnapshot FrameSnapshot} that can have the old picture
+	 */
+	public void swapImage(BufferedImage image, long lastShown)
+	{
+		spareImage = this.image;
+		spareLastShown = lastShown;
+		this.image = image;
+		imageDirty = false;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the picture that this Chunk had before it was last drawn, which can be drawn over once no 
+	 * {@link ca.hjalmionlabs.rendering.FrameSnapshot FrameSnapshot} that is still being drawn has it
+	 * @return the spare image, or null if there isn't one
+	 */
+	public BufferedImage getSpareImage()
+	{
+		return spareImage;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the number of the last {@link ca.hjalmionlabs.rendering.FrameSnapshot FrameSnapshot} that can have the spare picture
+	 * @return the FrameSnapshot's number
+	 */
+	public long getSpareLastShown()
+	{
+		return spareLastShown;
+	}
+	
+	/**
+	 * Whether or not the cached image needs to be drawn again because a Tile changed (or there is no image yet)
+	 * @return true if the image is out of date, false otherwise
+	 */
+	public boolean isImageDirty()
+	{
+		return imageDirty || image == null;
+	}
+	
+	/**
+	 * Packs Chunk coordinates into a single long, used as the key of a {@link ChunkMap}
+	 * @param chunkX - x-coord of the Chunk, in Chunks
+	 * @param chunkY - y-coord of the Chunk, in Chunks
+	 * @return the key of the Chunk
+	 */
+	public static long key(int chunkX, int chunkY)
+	{
+		return ((long)chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+	}
+}
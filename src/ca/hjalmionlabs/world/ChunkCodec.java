@@ -0,0 +1,181 @@
+package ca.hjalmionlabs.world;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Packs the {@link ca.hjalmionlabs.world.tiles.TileType TileType} ids of a {@link Chunk} into as few bytes as it can.
+ * Most Chunks only use a few TileTypes in long runs, so the ids are replaced by indices into a palette of the TileTypes
+ * that the Chunk actually uses, which are then either bit-packed or run-length encoded, whichever is smaller.
+ * <br><br>
+ * <strong>Format</strong>:
+ * <pre>
+ * byte   palette size - 1, then that many TileType ids
+ * if the palette has more than one TileType:
+ * byte   mode
+ *        0 PACKED  every Tile's palette index, in as few bits as the palette needs, most significant bit first
+ *        1 RLE     runs of (byte run length - 1, byte palette index), until the Chunk is full
+ * </pre>
+ * A Chunk that is all one TileType takes 2 bytes.
+ * @author Nick Mills
+ */
+public class ChunkCodec
+{
+	private static final byte PACKED = 0;
+	private static final byte RLE = 1;
+	/* Longest run that one RLE pair can hold */
+	private static final int MAX_RUN = 256;
+
+	/**
+	 * Encodes the supplied Tiles
+	 * @param tiles - {@link Chunk#SIZE} * {@link Chunk#SIZE} TileType ids, like {@link Chunk#getTiles()}
+	 * @return the encoded Tiles
+	 */
+	public static byte[] encode(byte[] tiles)
+	{
+		/* Find the palette, in order of id */
+		long[] used = new long[4];
+		for(int i = 0; i < tiles.length; i++)
+			used[(tiles[i] & 0xFF) >> 6] |= 1L << (tiles[i] & 63);
+		byte[] palette = new byte[256];
+		byte[] indexOf = new byte[256];
+		int size = 0;
+		for(int id = 0; id < 256; id++)
+		{
+			if((used[id >> 6] & (1L << (id & 63))) != 0)
+			{
+				indexOf[id] = (byte)size;
+				palette[size++] = (byte)id;
+			}
+		}
+		if(size == 1)
+			return new byte[] {0, palette[0]};
+
+		/* Work out which of the two ways is smaller */
+		int bits = 32 - Integer.numberOfLeadingZeros(size - 1);
+		int packedLength = (tiles.length * bits + 7) / 8;
+		int runs = 0;
+		for(int i = 0; i < tiles.length; runs++)
+			i += runLength(tiles, i);
+		int rleLength = runs * 2;
+
+		ByteBuffer out = ByteBuffer.allocate(1 + size + 1 + Math.min(packedLength, rleLength));
+		out.put((byte)(size - 1));
+		out.put(palette, 0, size);
+		if(rleLength <= packedLength)
+		{
+			out.put(RLE);
+			for(int i = 0; i < tiles.length;)
+			{
+				int run = runLength(tiles, i);
+				out.put((byte)(run - 1));
+				out.put(indexOf[tiles[i] & 0xFF]);
+				i += run;
+			}
+		} else
+		{
+			out.put(PACKED);
+			long buffer = 0;
+			int buffered = 0;
+			for(int i = 0; i < tiles.length; i++)
+			{
+				buffer = (buffer << bits) | indexOf[tiles[i] & 0xFF];
+				buffered += bits;
+				while(buffered >= 8)
+				{
+					buffered -= 8;
+					out.put((byte)(buffer >>> buffered));
+				}
+			}
+			if(buffered > 0)
+				out.put((byte)(buffer << (8 - buffered)));
+		}
+		return out.array();
+	}
+
+	/**
+	 * Decodes Tiles encoded with {@link ChunkCodec#encode}
+	 * @param data - The encoded Tiles. Read from its position, which is left after the encoded Tiles
+	 * @param tiles - Array to decode the TileType ids into, like {@link Chunk#getTiles()}
+	 * @throws IllegalArgumentException if the data isn't an encoded Chunk
+	 */
+	public static void decode(ByteBuffer data, byte[] tiles)
+	{
+		int size = (data.get() & 0xFF) + 1;
+		byte[] palette = new byte[size];
+		data.get(palette);
+		if(size == 1)
+		{
+			Arrays.fill(tiles, palette[0]);
+			return;
+		}
+
+		byte mode = data.get();
+		if(mode == RLE)
+		{
+			for(int i = 0; i < tiles.length;)
+			{
+				int run = (data.get() & 0xFF) + 1;
+				int index = data.get() & 0xFF;
+				if(index >= size || i + run > tiles.length)
+					throw new IllegalArgumentException("Broken run at Tile " + i);
+				Arrays.fill(tiles, i, i + run, palette[index]);
+				i += run;
+			}
+		} else if(mode == PACKED)
+		{
+			int bits = 32 - Integer.numberOfLeadingZeros(size - 1);
+			int mask = (1 << bits) - 1;
+			int buffer = 0;
+			int buffered = 0;
+			for(int i = 0; i < tiles.length; i++)
+			{
+				if(buffered < bits)
+				{
+					buffer = (buffer << 8) | (data.get() & 0xFF);
+					buffered += 8;
+				}
+				buffered -= bits;
+				int index = (buffer >>> buffered) & mask;
+				if(index >= size)
+					throw new IllegalArgumentException("Palette index " + index + " at Tile " + i + " is out of range");
+				tiles[i] = palette[index];
+			}
+		} else
+		{
+			throw new IllegalArgumentException("Unknown mode " + mode);
+		}
+	}
+
+	/**
+	 * Decodes Tiles encoded with {@link ChunkCodec#encode}
+	 * @param data - The encoded Tiles
+	 * @param tiles - Array to decode the TileType ids into, like {@link Chunk#getTiles()}
+	 */
+	public static void decode(byte[] data, byte[] tiles)
+	{
+		decode(ByteBuffer.wrap(data), tiles);
+	}
+
+	/**
+	 * Changes the TileType ids of encoded Tiles in place. Only the palette has ids in it, so this is cheap
+	 * @param data - The encoded Tiles, starting at its position. The position is not changed
+	 * @param remap - Table from old id to new id, indexed by (unsigned) old id
+	 */
+	public static void remap(ByteBuffer data, byte[] remap)
+	{
+		int start = data.position();
+		int size = (data.get(start) & 0xFF) + 1;
+		for(int i = start + 1; i <= start + size; i++)
+			data.put(i, remap[data.get(i) & 0xFF]);
+	}
+
+	/* Length of the run of equal Tiles starting at the supplied index, at most MAX_RUN */
+	private static int runLength(byte[] tiles, int start)
+	{
+		int end = start + 1;
+		while(end < tiles.length && end - start < MAX_RUN && tiles[end] == tiles[start])
+			end++;
+		return end - start;
+	}
+}
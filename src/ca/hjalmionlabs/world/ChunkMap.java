@@ -0,0 +1,154 @@
+package ca.hjalmionlabs.world;
+
+import java.util.Arrays;
+
+/**
+ * Map from Chunk coordinates to {@link Chunk}s. Uses open addressing on primitive <code>long</code> keys so that looking 
+ * up a Chunk (which happens for every Tile access) doesn't box the key.
+ * @author Nick Mills
+ */
+public class ChunkMap
+{
+	private long[] keys;
+	private Chunk[] values;
+	private int size;
+	private int mask;
+	
+	public ChunkMap()
+	{
+		keys = new long[64];
+		values = new Chunk[64];
+		mask = 63;
+	}
+	
+	/**
+	 * Gets the {@link Chunk} at the specified Chunk coordinates
+	 * @param chunkX - x-coord of the Chunk, in Chunks
+	 * @param chunkY - y-coord of the Chunk, in Chunks
+	 * @return the Chunk, or null if there is no Chunk at those coordinates
+	 */
+	public Chunk get(int chunkX, int chunkY)
+	{
+		long key = Chunk.key(chunkX, chunkY);
+		for(int slot = slotOf(key); values[slot] != null; slot = (slot + 1) & mask)
+		{
+			if(keys[slot] == key)
+				return values[slot];
+		}
+		return null;
+	}
+	
+	/**
+	 * Puts the supplied {@link Chunk} in this map, replacing any Chunk that was already at its coordinates
+	 * @param chunk - The Chunk to add
+	 */
+	public void put(Chunk chunk)
+	{
+		if((size + 1) * 2 > values.length)
+			resize(values.length * 2);
+		long key = Chunk.key(chunk.getChunkX(), chunk.getChunkY());
+		int slot = slotOf(key);
+		while(values[slot] != null)
+		{
+			if(keys[slot] == key)
+			{
+				values[slot] = chunk;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+		keys[slot] = key;
+		values[slot] = chunk;
+		size++;
+	}
+	
+	/**
+	 * Removes the {@link Chunk} at the specified Chunk coordinates
+	 * @param chunkX - x-coord of the Chunk, in Chunks
+	 * @param chunkY - y-coord of the Chunk, in Chunks
+	 * @return the Chunk that was removed, or null if there was nothing there
+	 */
+	public Chunk remove(int chunkX, int chunkY)
+	{
+		long key = Chunk.key(chunkX, chunkY);
+		for(int slot = slotOf(key); values[slot] != null; slot = (slot + 1) & mask)
+		{
+			if(keys[slot] == key)
+			{
+				Chunk removed = values[slot];
+				values[slot] = null;
+				size--;
+				/* Shift back any Chunks that were pushed past the removed one, so lookups still find them */
+				int next = (slot + 1) & mask;
+				while(values[next] != null)
+				{
+					Chunk moved = values[next];
+					values[next] = null;
+					size--;
+					put(moved);
+					next = (next + 1) & mask;
+				}
+				return removed;
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Removes every {@link Chunk} from this map
+	 */
+	public void clear()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	/**
+	 * Gets how many {@link Chunk}s are in this map
+	 * @return the number of Chunks
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * Gets how many slots this map has. Used together with {@link ChunkMap#at(int)} to go over every Chunk without 
+	 * creating an Iterator
+	 * @return the number of slots
+	 */
+	public int capacity()
+	{
+		return values.length;
+	}
+	
+	/**
+	 * Gets the {@link Chunk} in the specified slot
+	 * @param slot - The slot (0 to {@link ChunkMap#capacity()} - 1)
+	 * @return the Chunk in that slot, or null if the slot is empty
+	 */
+	public Chunk at(int slot)
+	{
+		return values[slot];
+	}
+	
+	private void resize(int capacity)
+	{
+		Chunk[] old = values;
+		keys = new long[capacity];
+		values = new Chunk[capacity];
+		mask = capacity - 1;
+		size = 0;
+		for(Chunk chunk : old)
+		{
+			if(chunk != null)
+				put(chunk);
+		}
+	}
+	
+	private int slotOf(long key)
+	{
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32)) & mask;
+	}
+}
@@ -1,7 +1,10 @@
 package ca.hjalmionlabs.world;
 
+import java.util.Random;
+
 import ca.hjalmionlabs.handlers.EntityHandler;
 import ca.hjalmionlabs.handlers.TileHandler;
+import ca.hjalmionlabs.main.Game;
 import ca.hjalmionlabs.world.tiles.Tile;
 import ca.hjalmionlabs.world.tiles.TileType;
 
@@ -9,18 +12,28 @@ public class DefaultWorld extends World
 {
 
 	public DefaultWorld(String name) {
-		super(name, 160, 160 / 12 * 9);
-		this.tileHandler = new TileHandler();
-		this.entityHandler = new EntityHandler();
+		this(name, new Random().nextLong());
+	}
+	
+	public DefaultWorld(String name, long seed) {
+		super(name, 160, 160 / 12 * 9, seed);
+		this.tileHandler = new TileHandler(this);
+		this.entityHandler = new EntityHandler(this);
 		
 	}
 
 	@Override
 	public void createWorld()
 	{
-		for(int i = 0; i < this.WIDTH; i++)
-			for(int j = 0; j < this.HEIGHT; j++)
-				this.tileHandler.addTile(new Tile(TileType.DIRT, this, i * Tile.TILEWIDTH, j * Tile.TILEHEIGHT));
+		this.tileHandler.empty();
+		this.tileHandler.loadAround(Game.WIDTH / 2 / Tile.TILEWIDTH, Game.HEIGHT / 2 / Tile.TILEHEIGHT);
+		System.out.println(this.tileHandler.loadedChunks() + " chunks loaded for " + this.name + " (size of: " + this.tileHandler.size() + " tiles)");
+	}
+	
+	@Override
+	public void generateChunk(Chunk chunk)
+	{
+		fillChunk(chunk, TileType.DIRT);
 	}
 
 }
@@ -0,0 +1,351 @@
+package ca.hjalmionlabs.world;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import ca.hjalmionlabs.entities.Entity;
+import ca.hjalmionlabs.world.tiles.Tile;
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * How many steps it takes to walk from each Tile near a target {@link Entity} (normally the Player) to the target,
+ * going around {@link TileType#isSolid() solid} Tiles. Every Mob that wants to get to the target just steps to the
+ * neighbouring Tile that is closest to it, so one field is enough for any number of Mobs, instead of each Mob
+ * looking for its own path.
+ * <br><br>
+ * The field covers the {@link FlowField#SIZE} x {@link FlowField#SIZE} Tiles around the target, and is worked out
+ * again (with a breadth-first search) only when the target steps onto a different Tile. When a Tile in the field
+ * changes type, only the distances that depend on that Tile are fixed. Tile changes can come from any thread, but are
+ * only applied by {@link FlowField#update()} on the game thread, so the field never changes while Mobs are reading it.
+ * @author Nick Mills
+ */
+public class FlowField implements TileListener
+{
+	/** How far the field reaches from the target, in Tiles */
+	public static final int RADIUS = 48;
+	/** Width and height of the field, in Tiles */
+	public static final int SIZE = RADIUS * 2 + 1;
+	/** Distance of a Tile that the target can't be reached from */
+	public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+	/** Directions returned by {@link FlowField#getDirection} */
+	public static final int NONE = -1, UP = 0, LEFT = 1, RIGHT = 2, DOWN = 3;
+	private static final int[] STEP_X = {0, -1, 1, 0};
+	private static final int[] STEP_Y = {-1, 0, 0, 1};
+
+	private final World world;
+	/* The Entity that the field leads to, and the Tile it was on when the field was worked out */
+	private volatile Entity target;
+	private int targetTileX;
+	private int targetTileY;
+	private boolean valid;
+
+	/* Tile coordinates of the top-left Tile of the field */
+	private int originX;
+	private int originY;
+	/* For each Tile of the field, row by row: whether or not it can be walked on, and how far it is from the target */
+	private final boolean[] open = new boolean[SIZE * SIZE];
+	private final int[] distances = new int[SIZE * SIZE];
+
+	/* Working space for the searches */
+	private final int[] queue = new int[SIZE * SIZE];
+	private final long[] seeds = new long[SIZE * SIZE];
+	private final int[] marks = new int[SIZE * SIZE];
+	private int mark;
+
+	/* Tiles that changed type since the last update, by Chunk.key(tileX, tileY) */
+	private final ConcurrentLinkedQueue<Long> changes = new ConcurrentLinkedQueue<Long>();
+
+	/**
+	 * Creates an empty field for the supplied {@link World}. It has to be added to the World as a {@link TileListener}
+	 * @param world - The World whose Tiles the field is worked out from
+	 */
+	public FlowField(World world)
+	{
+		this.world = world;
+		Arrays.fill(distances, UNREACHABLE);
+	}
+
+	/**
+	 * <strong>Setter</strong><br>
+	 * Sets the {@link Entity} that the field leads to. The field is worked out for it by the next {@link FlowField#update()}
+	 * @param target - The Entity to lead to, or null to lead nowhere
+	 */
+	public void setTarget(Entity target)
+	{
+		this.target = target;
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link Entity} that the field leads to
+	 * @return the target, or null if there isn't one
+	 */
+	public Entity getTarget()
+	{
+		return target;
+	}
+
+	/**
+	 * Whether or not the field leads anywhere. It doesn't until it has been worked out for a target that is in the field's World
+	 * @return true if Mobs can follow the field, false otherwise
+	 */
+	public boolean isValid()
+	{
+		return valid;
+	}
+
+	/**
+	 * Stops the field from leading anywhere, without working anything out, until the next {@link FlowField#update()}. 
+	 * Used instead of updating it while the World isn't the current World, since the Player isn't in there to lead to
+	 */
+	public void clear()
+	{
+		valid = false;
+		changes.clear();
+	}
+
+	/**
+	 * Brings the field up to date with the target and the Tiles that changed. Must be called on the game thread,
+	 * before the Mobs are ticked
+	 */
+	public void update()
+	{
+		Entity target = this.target;
+		if(target == null || target.getWorld() != world)
+		{
+			valid = false;	// Nothing to lead to in this World
+			changes.clear();
+			return;
+		}
+
+		int tileX = Math.floorDiv(target.getX() + target.getWidth() / 2, Tile.TILEWIDTH);
+		int tileY = Math.floorDiv(target.getY() + target.getHeight() / 2, Tile.TILEHEIGHT);
+		if(!valid || tileX != targetTileX || tileY != targetTileY)
+		{
+			changes.clear();
+			rebuild(tileX, tileY);
+			return;
+		}
+
+		Long key;
+		while((key = changes.poll()) != null)
+			repair((int)(key >> 32), (int)(long)key);
+	}
+
+	@Override
+	public void tileChanged(World world, int tileX, int tileY, TileType oldType, TileType newType)
+	{
+		if(valid && oldType.isSolid() != newType.isSolid())
+			changes.add(Chunk.key(tileX, tileY));
+	}
+
+	/**
+	 * Gets how many steps it takes to walk from the specified Tile to the target
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return the number of steps, or {@link FlowField#UNREACHABLE} if the Tile is outside of the field or the target can't be reached from it
+	 */
+	public int getDistance(int tileX, int tileY)
+	{
+		int x = tileX - originX;
+		int y = tileY - originY;
+		if(!valid || x < 0 || y < 0 || x >= SIZE || y >= SIZE)
+			return UNREACHABLE;
+		return distances[y * SIZE + x];
+	}
+
+	/**
+	 * Gets which way to step from the specified Tile to get closer to the target
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return {@link FlowField#UP}, {@link FlowField#LEFT}, {@link FlowField#RIGHT} or {@link FlowField#DOWN}, or
+	 * {@link FlowField#NONE} if the Tile is the target's Tile, or the target can't be reached from it
+	 */
+	public int getDirection(int tileX, int tileY)
+	{
+		int x = tileX - originX;
+		int y = tileY - originY;
+		if(!valid || x < 0 || y < 0 || x >= SIZE || y >= SIZE)
+			return NONE;
+		int best = distances[y * SIZE + x];
+		int direction = NONE;
+		for(int d = 0; d < 4; d++)
+		{
+			int nx = x + STEP_X[d];
+			int ny = y + STEP_Y[d];
+			if(nx < 0 || ny < 0 || nx >= SIZE || ny >= SIZE)
+				continue;
+			if(distances[ny * SIZE + nx] < best)
+			{
+				best = distances[ny * SIZE + nx];
+				direction = d;
+			}
+		}
+		return direction;
+	}
+
+	/**
+	 * Gets how far a direction moves along the x-axis
+	 * @param direction - A direction returned by {@link FlowField#getDirection}
+	 * @return -1, 0 or 1
+	 */
+	public static int stepX(int direction)
+	{
+		return direction == NONE ? 0 : STEP_X[direction];
+	}
+
+	/**
+	 * Gets how far a direction moves along the y-axis
+	 * @param direction - A direction returned by {@link FlowField#getDirection}
+	 * @return -1, 0 or 1
+	 */
+	public static int stepY(int direction)
+	{
+		return direction == NONE ? 0 : STEP_Y[direction];
+	}
+
+	/* Centers the field on the supplied Tile, reads every Tile of it and works out every distance again */
+	private void rebuild(int tileX, int tileY)
+	{
+		targetTileX = tileX;
+		targetTileY = tileY;
+		originX = tileX - RADIUS;
+		originY = tileY - RADIUS;
+		for(int y = 0; y < SIZE; y++)
+			for(int x = 0; x < SIZE; x++)
+				open[y * SIZE + x] = !world.isSolid(originX + x, originY + y);
+		int center = RADIUS * SIZE + RADIUS;
+		open[center] = true;	// Whatever the target is standing on can be reached
+
+		Arrays.fill(distances, UNREACHABLE);
+		seeds[0] = center;	// Distance 0
+		spread(1);
+		valid = true;
+	}
+
+	/* Fixes the distances after the specified Tile changed type */
+	private void repair(int tileX, int tileY)
+	{
+		int x = tileX - originX;
+		int y = tileY - originY;
+		if(x < 0 || y < 0 || x >= SIZE || y >= SIZE || (x == RADIUS && y == RADIUS))
+			return;
+		int cell = y * SIZE + x;
+		boolean nowOpen = !world.isSolid(tileX, tileY);
+		if(nowOpen == open[cell])
+			return;
+		open[cell] = nowOpen;
+
+		if(nowOpen)
+		{
+			/* A new way through: spread out from the Tile's closest neighbour */
+			int best = closestNeighbour(cell, -1);
+			if(best == UNREACHABLE)
+				return;
+			seeds[0] = ((long)(best + 1) << 32) | cell;
+			spread(1);
+			return;
+		}
+
+		if(distances[cell] == UNREACHABLE)
+			return;
+		/* Find every Tile whose only shortest path went through this one. Tiles are looked at one distance at a time,
+		 * so all of the cut off Tiles one step closer are already known when a Tile is checked */
+		int count = 0;
+		mark++;
+		marks[cell] = mark;
+		queue[count++] = cell;
+		for(int head = 0; head < count; head++)
+		{
+			int from = queue[head];
+			int next = distances[from] + 1;
+			for(int d = 0; d < 4; d++)
+			{
+				int neighbour = neighbour(from, d);
+				if(neighbour < 0 || marks[neighbour] == mark || !open[neighbour] || distances[neighbour] != next)
+					continue;
+				if(closestNeighbour(neighbour, mark) == next - 1)
+					continue;	// Still has another way to the target
+				marks[neighbour] = mark;
+				queue[count++] = neighbour;
+			}
+		}
+		for(int i = 0; i < count; i++)
+			distances[queue[i]] = UNREACHABLE;
+
+		/* Spread back into them from the Tiles around them that weren't cut off */
+		int seedCount = 0;
+		for(int i = 0; i < count; i++)
+		{
+			int cutOff = queue[i];
+			if(!open[cutOff])
+				continue;
+			int best = closestNeighbour(cutOff, mark);
+			if(best != UNREACHABLE)
+				seeds[seedCount++] = ((long)(best + 1) << 32) | cutOff;
+		}
+		Arrays.sort(seeds, 0, seedCount);
+		spread(seedCount);
+	}
+
+	/*
+	 * Breadth-first search from the first count seeds (each one is distance << 32 | cell, sorted by distance). The seeds
+	 * and the queue are both in order of distance, so always taking the closer of the two visits Tiles in order
+	 */
+	private void spread(int count)
+	{
+		int next = 0;
+		int head = 0;
+		int tail = 0;
+		while(next < count || head < tail)
+		{
+			int cell;
+			int distance;
+			if(head == tail || (next < count && (int)(seeds[next] >>> 32) <= distances[queue[head]]))
+			{
+				cell = (int)seeds[next];
+				distance = (int)(seeds[next++] >>> 32);
+				if(distance >= distances[cell])
+					continue;	// Already reached some shorter way
+				distances[cell] = distance;
+			} else
+			{
+				cell = queue[head++];
+				distance = distances[cell];
+			}
+			for(int d = 0; d < 4; d++)
+			{
+				int neighbour = neighbour(cell, d);
+				if(neighbour >= 0 && open[neighbour] && distances[neighbour] > distance + 1)
+				{
+					distances[neighbour] = distance + 1;
+					queue[tail++] = neighbour;
+				}
+			}
+		}
+	}
+
+	/* Smallest distance of the open neighbours of a cell that aren't marked with the supplied mark */
+	private int closestNeighbour(int cell, int skipMark)
+	{
+		int best = UNREACHABLE;
+		for(int d = 0; d < 4; d++)
+		{
+			int neighbour = neighbour(cell, d);
+			if(neighbour >= 0 && open[neighbour] && marks[neighbour] != skipMark)
+				best = Math.min(best, distances[neighbour]);
+		}
+		return best;
+	}
+
+	/* The cell next to the supplied cell in a direction, or -1 if that is outside of the field */
+	private int neighbour(int cell, int direction)
+	{
+		int x = cell % SIZE + STEP_X[direction];
+		int y = cell / SIZE + STEP_Y[direction];
+		if(x < 0 || y < 0 || x >= SIZE || y >= SIZE)
+			return -1;
+		return y * SIZE + x;
+	}
+}
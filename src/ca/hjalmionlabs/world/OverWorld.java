@@ -1,39 +1,67 @@
 package ca.hjalmionlabs.world;
 
-import ca.hjalmionlabs.entities.Zombie;
+import java.util.Random;
+
+import ca.hjalmionlabs.entities.EntityType;
 import ca.hjalmionlabs.handlers.EntityHandler;
 import ca.hjalmionlabs.handlers.TileHandler;
 import ca.hjalmionlabs.main.Game;
+import ca.hjalmionlabs.world.gen.TerrainGenerator;
 import ca.hjalmionlabs.world.tiles.Tile;
 import ca.hjalmionlabs.world.tiles.TileType;
 
 public class OverWorld extends World 
 {
 	
+	/* Places the Tiles of this World */
+	private final TerrainGenerator generator;
+	
 	public OverWorld(String name)
 	{
-		super(name, 250, 200);
-		this.tileHandler = new TileHandler();
-		this.entityHandler = new EntityHandler();
+		this(name, new Random().nextLong());
+	}
+	
+	public OverWorld(String name, long seed)
+	{
+		super(name, 250, 200, seed);
+		generator = new TerrainGenerator(seed, TileType.GRASS)
+				.addFeature(TileType.DIRT, 12, 0.62)
+				.addFeature(TileType.WATER, 24, 0.68)
+				.addFeature(TileType.LAVA, 10, 0.78);
+		this.tileHandler = new TileHandler(this);
+		this.entityHandler = new EntityHandler(this);
 	}
 	
 	public void createWorld()
 	{
-		int temp = 0;
-		for(int i = 0; i < WIDTH; i++)
-		{
-			for(int j = 0; j < HEIGHT; j++)
-			{
-				tileHandler.addTile(new Tile(TileType.GRASS, this, i * Tile.TILEWIDTH, j * Tile.TILEHEIGHT));
-				temp++;
-			}
-		}
-		System.out.println(temp + " tiles added to " + this.name + " (size of: " + tileHandler.size() + ")");
+		tileHandler.empty();
+		tileHandler.loadAround(Game.WIDTH / 2 / Tile.TILEWIDTH, Game.HEIGHT / 2 / Tile.TILEHEIGHT);
+		System.out.println(tileHandler.loadedChunks() + " chunks loaded for " + this.name + " (size of: " + tileHandler.size() + " tiles)");
+	}
+	
+	@Override
+	public void generateChunk(Chunk chunk)
+	{
+		generator.generate(chunk, WIDTH, HEIGHT);
 	}
 	
+	/**
+	 * Adds the specified number of Zombies to this World, spread out over the whole World on Tiles that they can walk 
+	 * on (see {@link World#findOpenPosition}). The same seed always puts them in the same places
+	 * @param numEntities - How many Zombies to add
+	 */
 	public void populateWorld(int numEntities)
 	{
+		Random random = new Random(seed);
 		for(int i = 0; i < numEntities; i++)
-			entityHandler.addEntity(new Zombie("Zombie", this, Game.WIDTH/2, Game.HEIGHT/2));
+		{
+			int[] position = findOpenPosition(random, EntityType.ZOMBIE.getWidth(), EntityType.ZOMBIE.getHeight());
+			if(position == null)
+			{
+				System.out.println("No room for any more Zombies in " + this + " after " + i + " of them");
+				return;
+			}
+			entityHandler.spawn(EntityType.ZOMBIE, position[0], position[1]);
+		}
 	}
 }
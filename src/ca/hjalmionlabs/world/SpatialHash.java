@@ -0,0 +1,349 @@
+package ca.hjalmionlabs.world;
+
+import java.util.Arrays;
+
+/**
+ * Uniform grid of cells (one {@link ca.hjalmionlabs.world.tiles.Tile Tile} each, normally) that knows which things are
+ * in which cell, so that finding the things near a point or the pairs of things that overlap only looks at a few cells
+ * instead of at every thing. Things are identified by small, non-negative int ids and are kept in the cell that their
+ * top-left corner is in; only the occupied cells are stored, in an open addressing map keyed by cell coordinates.
+ * <br><br>
+ * Call {@link SpatialHash#update} whenever a thing moves. It only does real work when the thing changes cells.
+ * Don't change the hash from inside of a query.
+ * @author Nick Mills
+ */
+public class SpatialHash
+{
+	/**
+	 * Gets called for every id that a query finds
+	 */
+	public interface Visitor
+	{
+		public void visit(int id);
+	}
+
+	/**
+	 * Gets called for every pair of ids that overlap
+	 */
+	public interface PairVisitor
+	{
+		public void visit(int first, int second);
+	}
+
+	private static final int NONE = -1;
+
+	private final int cellWidth;
+	private final int cellHeight;
+
+	/* Bounds of each id, and the cell it is stored in */
+	private int[] xs = new int[64];
+	private int[] ys = new int[64];
+	private int[] widths = new int[64];
+	private int[] heights = new int[64];
+	private int[] cellXs = new int[64];
+	private int[] cellYs = new int[64];
+	/* The other ids in the same cell, as a doubly linked list */
+	private int[] next = new int[64];
+	private int[] prev = new int[64];
+	private boolean[] present = new boolean[64];
+	private int size;
+
+	/* How many cells the biggest thing so far reaches past the cell it is stored in. Queries look that much further */
+	private int reachX;
+	private int reachY;
+
+	/* Occupied cells: cell key -> first id in the cell */
+	private long[] cellKeys = new long[64];
+	private int[] cellHeads = new int[64];
+	private int cellCount;
+	private int cellMask = 63;
+
+	/**
+	 * Creates an empty hash with cells of the supplied size
+	 * @param cellWidth - Width of a cell, in pixels
+	 * @param cellHeight - Height of a cell, in pixels
+	 */
+	public SpatialHash(int cellWidth, int cellHeight)
+	{
+		this.cellWidth = cellWidth;
+		this.cellHeight = cellHeight;
+		Arrays.fill(cellHeads, NONE);
+	}
+
+	/**
+	 * Adds the supplied id with the specified bounds, or moves it if it was already added
+	 * @param id - The id (0 or more)
+	 * @param x - x-coord of the top-left corner, in pixels
+	 * @param y - y-coord of the top-left corner, in pixels
+	 * @param width - Width, in pixels
+	 * @param height - Height, in pixels
+	 */
+	public void update(int id, int x, int y, int width, int height)
+	{
+		if(id >= present.length)
+			grow(Math.max(id + 1, present.length * 2));
+		xs[id] = x;
+		ys[id] = y;
+		widths[id] = width;
+		heights[id] = height;
+		reachX = Math.max(reachX, (width + cellWidth - 1) / cellWidth);
+		reachY = Math.max(reachY, (height + cellHeight - 1) / cellHeight);
+
+		int cellX = Math.floorDiv(x, cellWidth);
+		int cellY = Math.floorDiv(y, cellHeight);
+		if(present[id])
+		{
+			if(cellX == cellXs[id] && cellY == cellYs[id])
+				return;
+			unlink(id);
+		} else
+		{
+			present[id] = true;
+			size++;
+		}
+		cellXs[id] = cellX;
+		cellYs[id] = cellY;
+		link(id);
+	}
+
+	/**
+	 * Removes the supplied id. Does nothing if it isn't in the hash
+	 * @param id - The id to remove
+	 */
+	public void remove(int id)
+	{
+		if(id >= present.length || !present[id])
+			return;
+		unlink(id);
+		present[id] = false;
+		size--;
+	}
+
+	/**
+	 * Whether or not the supplied id is in the hash
+	 * @param id - The id to look for
+	 * @return true if it was added and not removed, false otherwise
+	 */
+	public boolean contains(int id)
+	{
+		return id < present.length && present[id];
+	}
+
+	/**
+	 * Gets how many ids are in the hash
+	 * @return the number of ids
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Removes every id
+	 */
+	public void clear()
+	{
+		Arrays.fill(present, false);
+		Arrays.fill(cellHeads, NONE);
+		size = 0;
+		cellCount = 0;
+	}
+
+	/**
+	 * Finds every id whose bounds overlap the specified rectangle
+	 * @param x - x-coord of the rectangle, in pixels
+	 * @param y - y-coord of the rectangle, in pixels
+	 * @param width - Width of the rectangle, in pixels
+	 * @param height - Height of the rectangle, in pixels
+	 * @param visitor - Called once for every id that was found
+	 */
+	public void queryRect(int x, int y, int width, int height, Visitor visitor)
+	{
+		int firstX = Math.floorDiv(x, cellWidth) - reachX;
+		int firstY = Math.floorDiv(y, cellHeight) - reachY;
+		int lastX = Math.floorDiv(x + width - 1, cellWidth);
+		int lastY = Math.floorDiv(y + height - 1, cellHeight);
+		for(int cellY = firstY; cellY <= lastY; cellY++)
+		{
+			for(int cellX = firstX; cellX <= lastX; cellX++)
+			{
+				for(int id = head(cellX, cellY); id != NONE; id = next[id])
+				{
+					if(xs[id] < x + width && x < xs[id] + widths[id] && ys[id] < y + height && y < ys[id] + heights[id])
+						visitor.visit(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds every id whose bounds are within the specified distance of a point
+	 * @param x - x-coord of the point, in pixels
+	 * @param y - y-coord of the point, in pixels
+	 * @param radius - The distance, in pixels
+	 * @param visitor - Called once for every id that was found
+	 */
+	public void queryRadius(int x, int y, int radius, Visitor visitor)
+	{
+		long radiusSquared = (long)radius * radius;
+		int firstX = Math.floorDiv(x - radius, cellWidth) - reachX;
+		int firstY = Math.floorDiv(y - radius, cellHeight) - reachY;
+		int lastX = Math.floorDiv(x + radius, cellWidth);
+		int lastY = Math.floorDiv(y + radius, cellHeight);
+		for(int cellY = firstY; cellY <= lastY; cellY++)
+		{
+			for(int cellX = firstX; cellX <= lastX; cellX++)
+			{
+				for(int id = head(cellX, cellY); id != NONE; id = next[id])
+				{
+					/* Distance from the point to the closest point of the bounds */
+					long dx = Math.max(0, Math.max(xs[id] - x, x - (xs[id] + widths[id])));
+					long dy = Math.max(0, Math.max(ys[id] - y, y - (ys[id] + heights[id])));
+					if(dx * dx + dy * dy <= radiusSquared)
+						visitor.visit(id);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds every pair of ids whose bounds overlap. Each pair is visited once, in no particular order. Only the cells
+	 * next to each occupied cell are looked at, so this is close to linear in the number of ids as long as they are
+	 * spread out
+	 * @param visitor - Called once for every overlapping pair
+	 */
+	public void queryPairs(PairVisitor visitor)
+	{
+		for(int slot = 0; slot < cellHeads.length; slot++)
+		{
+			int first = cellHeads[slot];
+			if(first == NONE)
+				continue;
+			int cellX = cellXs[first];
+			int cellY = cellYs[first];
+			for(int a = first; a != NONE; a = next[a])
+			{
+				/* The rest of this cell */
+				for(int b = next[a]; b != NONE; b = next[b])
+					if(overlaps(a, b))
+						visitor.visit(a, b);
+
+				/* The cells after this one (further right on this row, and the rows below), so each pair of cells is only checked once */
+				for(int dy = 0; dy <= reachY; dy++)
+				{
+					for(int dx = dy == 0 ? 1 : -reachX; dx <= reachX; dx++)
+					{
+						for(int b = head(cellX + dx, cellY + dy); b != NONE; b = next[b])
+							if(overlaps(a, b))
+								visitor.visit(a, b);
+					}
+				}
+			}
+		}
+	}
+
+	private boolean overlaps(int a, int b)
+	{
+		return xs[a] < xs[b] + widths[b] && xs[b] < xs[a] + widths[a] && ys[a] < ys[b] + heights[b] && ys[b] < ys[a] + heights[a];
+	}
+
+	/* Adds the id to the front of its cell's list */
+	private void link(int id)
+	{
+		int slot = findSlot(cellXs[id], cellYs[id]);
+		if(cellHeads[slot] == NONE)
+		{
+			cellKeys[slot] = Chunk.key(cellXs[id], cellYs[id]);
+			cellCount++;
+			next[id] = NONE;
+		} else
+		{
+			next[id] = cellHeads[slot];
+			prev[cellHeads[slot]] = id;
+		}
+		prev[id] = NONE;
+		cellHeads[slot] = id;
+		if(cellCount * 2 > cellHeads.length)
+			resize(cellHeads.length * 2);
+	}
+
+	/* Takes the id out of its cell's list, and forgets the cell if it is empty now */
+	private void unlink(int id)
+	{
+		if(next[id] != NONE)
+			prev[next[id]] = prev[id];
+		if(prev[id] != NONE)
+		{
+			next[prev[id]] = next[id];
+			return;
+		}
+		int slot = findSlot(cellXs[id], cellYs[id]);
+		cellHeads[slot] = next[id];
+		if(next[id] == NONE)
+			removeSlot(slot);
+	}
+
+	/* First id in the cell, or NONE */
+	private int head(int cellX, int cellY)
+	{
+		return cellHeads[findSlot(cellX, cellY)];
+	}
+
+	/* Slot that holds the cell, or the empty slot where it would go */
+	private int findSlot(int cellX, int cellY)
+	{
+		long key = Chunk.key(cellX, cellY);
+		long h = key * 0x9E3779B97F4A7C15L;
+		int slot = (int)(h ^ (h >>> 32)) & cellMask;
+		while(cellHeads[slot] != NONE && cellKeys[slot] != key)
+			slot = (slot + 1) & cellMask;
+		return slot;
+	}
+
+	/* Empties a slot, and shifts back any cells that were pushed past it so lookups still find them */
+	private void removeSlot(int slot)
+	{
+		cellHeads[slot] = NONE;
+		cellCount--;
+		for(int s = (slot + 1) & cellMask; cellHeads[s] != NONE; s = (s + 1) & cellMask)
+		{
+			long key = cellKeys[s];
+			int head = cellHeads[s];
+			cellHeads[s] = NONE;
+			int target = findSlot((int)(key >> 32), (int)key);
+			cellKeys[target] = key;
+			cellHeads[target] = head;
+		}
+	}
+
+	private void resize(int capacity)
+	{
+		long[] oldKeys = cellKeys;
+		int[] oldHeads = cellHeads;
+		cellKeys = new long[capacity];
+		cellHeads = new int[capacity];
+		Arrays.fill(cellHeads, NONE);
+		cellMask = capacity - 1;
+		for(int slot = 0; slot < oldHeads.length; slot++)
+		{
+			if(oldHeads[slot] == NONE)
+				continue;
+			int target = findSlot((int)(oldKeys[slot] >> 32), (int)oldKeys[slot]);
+			cellKeys[target] = oldKeys[slot];
+			cellHeads[target] = oldHeads[slot];
+		}
+	}
+
+	private void grow(int capacity)
+	{
+		xs = Arrays.copyOf(xs, capacity);
+		ys = Arrays.copyOf(ys, capacity);
+		widths = Arrays.copyOf(widths, capacity);
+		heights = Arrays.copyOf(heights, capacity);
+		cellXs = Arrays.copyOf(cellXs, capacity);
+		cellYs = Arrays.copyOf(cellYs, capacity);
+		next = Arrays.copyOf(next, capacity);
+		prev = Arrays.copyOf(prev, capacity);
+		present = Arrays.copyOf(present, capacity);
+	}
+}
@@ -0,0 +1,21 @@
+package ca.hjalmionlabs.world;
+
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * Gets told whenever a Tile in a {@link World} is replaced through {@link World#replaceTile}. 
+ * Called on whichever thread replaced the Tile (normally the game thread).
+ * @author Nick Mills
+ */
+public interface TileListener
+{
+	/**
+	 * Called after a Tile was replaced
+	 * @param world - The World that the Tile is in
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @param oldType - The TileType that was there before
+	 * @param newType - The TileType that is there now
+	 */
+	public void tileChanged(World world, int tileX, int tileY, TileType oldType, TileType newType);
+}
@@ -1,39 +1,87 @@
 package ca.hjalmionlabs.world;
 
-import ca.hjalmionlabs.entities.Zombie;
+import java.util.Random;
+
+import ca.hjalmionlabs.entities.EntityType;
 import ca.hjalmionlabs.handlers.EntityHandler;
 import ca.hjalmionlabs.handlers.TileHandler;
 import ca.hjalmionlabs.main.Game;
+import ca.hjalmionlabs.world.gen.CaveGenerator;
+import ca.hjalmionlabs.world.gen.TerrainGenerator;
 import ca.hjalmionlabs.world.tiles.Tile;
 import ca.hjalmionlabs.world.tiles.TileType;
 
 public class UnderWorld extends World {
 
+	/* Carves the caves out of the Stone */
+	private final CaveGenerator caves;
+	/* Places the floor of the caves */
+	private final TerrainGenerator generator;
+	
 	public UnderWorld(String name)
 	{
-		super(name, 160, 100);
-		tileHandler = new TileHandler();
-		entityHandler = new EntityHandler();
+		this(name, new Random().nextLong());
+	}
+	
+	public UnderWorld(String name, long seed)
+	{
+		super(name, 160, 100, seed);
+		caves = new CaveGenerator(seed, 0.45, 5);	// Most of the floor is one cave, so the FlowField reaches it
+		generator = new TerrainGenerator(seed, TileType.DIRT)
+				.addFeature(TileType.WATER, 16, 0.72)
+				.addFeature(TileType.LAVA, 14, 0.74);
+		tileHandler = new TileHandler(this);
+		entityHandler = new EntityHandler(this);
 	}
 
 	public void createWorld()
 	{
-		int temp = 0;
-		for(int i = 0; i < WIDTH; i++)
+		tileHandler.empty();
+		tileHandler.loadAround(Game.WIDTH / 2 / Tile.TILEWIDTH, Game.HEIGHT / 2 / Tile.TILEHEIGHT);
+		System.out.println(tileHandler.loadedChunks() + " chunks loaded for " + this.name + " (size of: " + tileHandler.size() + " tiles)");
+	}
+	
+	/**
+	 * Fills the supplied {@link Chunk} with Stone walls, and caves with a Dirt floor and the odd pool of Water or Lava
+	 */
+	@Override
+	public void generateChunk(Chunk chunk)
+	{
+		byte[] cells = new byte[Chunk.SIZE * Chunk.SIZE];
+		int baseX = chunk.getChunkX() << Chunk.SHIFT;
+		int baseY = chunk.getChunkY() << Chunk.SHIFT;
+		caves.generate(baseX, baseY, Chunk.SIZE, Chunk.SIZE, WIDTH, HEIGHT, cells);
+		
+		for(int localY = 0; localY < Chunk.SIZE && baseY + localY < HEIGHT; localY++)
 		{
-			for(int j = 0; j < HEIGHT; j++)
+			for(int localX = 0; localX < Chunk.SIZE && baseX + localX < WIDTH; localX++)
 			{
-				tileHandler.addTile(new Tile(TileType.STONE, this, i * Tile.TILEWIDTH, j * Tile.TILEHEIGHT));
-				temp++;
+				if(cells[(localY << Chunk.SHIFT) | localX] == CaveGenerator.WALL)
+					chunk.set(localX, localY, TileType.STONE.getID());
+				else
+					chunk.set(localX, localY, generator.typeAt(baseX + localX, baseY + localY));
 			}
 		}
-		System.out.println(temp + " tiles added to " + this.name + " (size of: " + tileHandler.size() + ")");
 	}
 	
+	/**
+	 * Adds the specified number of Zombies to this World, spread out over the whole World on Tiles that they can walk 
+	 * on (see {@link World#findOpenPosition}). The same seed always puts them in the same places
+	 * @param numEntities - How many Zombies to add
+	 */
 	public void populateWorld(int numEntities)
 	{
+		Random random = new Random(seed);
 		for(int i = 0; i < numEntities; i++)
-			entityHandler.addEntity(new Zombie("Zombie", this, Game.WIDTH/2, Game.HEIGHT/2));
+		{
+			int[] position = findOpenPosition(random, EntityType.ZOMBIE.getWidth(), EntityType.ZOMBIE.getHeight());
+			if(position == null)
+			{
+				System.out.println("No room for any more Zombies in " + this + " after " + i + " of them");
+				return;
+			}
+			entityHandler.spawn(EntityType.ZOMBIE, position[0], position[1]);
+		}
 	}
 	
 }
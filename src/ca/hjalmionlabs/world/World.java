@@ -1,10 +1,15 @@
 package ca.hjalmionlabs.world;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
 
 import ca.hjalmionlabs.entities.Entity;
 import ca.hjalmionlabs.handlers.EntityHandler;
 import ca.hjalmionlabs.handlers.TileHandler;
+import ca.hjalmionlabs.main.Game;
+import ca.hjalmionlabs.profiling.Profiler;
 import ca.hjalmionlabs.world.tiles.Tile;
 import ca.hjalmionlabs.world.tiles.TileType;
 
@@ -16,17 +21,43 @@ public abstract class World implements Serializable
 	protected int WIDTH;
 	protected int HEIGHT;
 	
-	public int xOffset = 0;
-	public int yOffset = 0;
+	/* Decides which part of this World is on the screen */
+	protected Camera camera = new Camera(Game.WIDTH, Game.HEIGHT);
 	
 	public int x = 0;
 	public int y = 0;
 	
+	/* The seed that this World's Tiles are generated from */
+	protected final long seed;
+	
+	/* How many random places are tried for an Entity before giving up on finding one that isn't solid */
+	private static final int SPAWN_ATTEMPTS = 1000;
+	
+	/**
+	 * Creates a new World with a random seed
+	 * @param name - Name of the World
+	 * @param width - Width of the World, in Tiles
+	 * @param height - Height of the World, in Tiles
+	 */
 	public World(String name, int width, int height)
+	{
+		this(name, width, height, new Random().nextLong());
+	}
+	
+	/**
+	 * Creates a new World
+	 * @param name - Name of the World
+	 * @param width - Width of the World, in Tiles
+	 * @param height - Height of the World, in Tiles
+	 * @param seed - The seed to generate the World's Tiles from. The same seed always generates the same Tiles
+	 */
+	public World(String name, int width, int height, long seed)
 	{
 		this.name = name;
 		WIDTH = width;
 		HEIGHT = height;
+		this.seed = seed;
+		addTileListener(flowField);
 	}
 	
 	public String getName()
@@ -34,38 +65,142 @@ public abstract class World implements Serializable
 		return name;
 	}
 	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the seed that this World's Tiles are generated from
+	 * @return the seed of this World
+	 */
+	public long getSeed()
+	{
+		return seed;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link Camera} that decides which part of this World is on the screen
+	 * @return this World's Camera
+	 */
+	public Camera getCamera()
+	{
+		return camera;
+	}
+	
 	protected TileHandler tileHandler;
 	protected EntityHandler entityHandler;
 	
+	/* Told about every Tile that is replaced */
+	private final List<TileListener> tileListeners = new ArrayList<TileListener>();
+	
+	/* Leads this World's Mobs to the Player */
+	protected final FlowField flowField = new FlowField(this);
+	
+	/* How long the last tickAllHandlers() took, in nanoseconds. Read by the World's JMX metrics */
+	private transient volatile long lastTickNanos;
+	
 	public void replaceTile(int index, TileType type)
 	{
-		tileHandler.replaceTile(index, type);
+		replaceTile(index % WIDTH, index / WIDTH, type);
+	}
+	
+	/**
+	 * Replaces the {@link Tile} at the specified Tile coordinates with a Tile of the supplied type, and tells 
+	 * every {@link TileListener}. Does nothing if the Tile is outside of this World
+	 * @param tileX - xTile-coord of the Tile to replace
+	 * @param tileY - yTile-coord of the Tile to replace
+	 * @param type - TileType to place
+	 */
+	public void replaceTile(int tileX, int tileY, TileType type)
+	{
+		if(!tileHandler.inBounds(tileX, tileY))
+			return;
+		TileType old = tileHandler.getTypeAt(tileX, tileY);
+		tileHandler.replaceTile(tileX, tileY, type);
+		for(int i = 0; i < tileListeners.size(); i++)
+			tileListeners.get(i).tileChanged(this, tileX, tileY, old, type);
+	}
+	
+	/**
+	 * Adds a {@link TileListener} that is told about every Tile that is replaced in this World
+	 * @param listener - The listener to add
+	 */
+	public void addTileListener(TileListener listener)
+	{
+		if(!tileListeners.contains(listener))
+			tileListeners.add(listener);
 	}
 	
 	public abstract void createWorld();
 	
-	public void destroyWorld()
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link TileHandler} that holds this World's Tiles
+	 * @return this World's TileHandler
+	 */
+	public TileHandler getTileHandler()
 	{
-		tileHandler.empty();
+		return tileHandler;
 	}
 	
 	/**
-	 * Runs the render method for each of this World's handlers
-	 * @param g - Graphics object to draw with
+	 * Fills the supplied {@link Chunk} with this World's Tiles. Called by the {@link TileHandler} the first time 
+	 * the Chunk is needed, so it must always give the same Tiles for the same Chunk. Different Chunks may be 
+	 * generated at the same time on different threads
+	 * @param chunk - The Chunk to fill
 	 */
-	public void renderAllHandlers(java.awt.Graphics g)
+	public abstract void generateChunk(Chunk chunk);
+	
+	/**
+	 * Fills every Tile of the supplied {@link Chunk} that is inside of this World with the supplied {@link TileType}. 
+	 * Tiles outside of the World are left as {@link TileType#NULL}
+	 * @param chunk - The Chunk to fill
+	 * @param type - The TileType to fill it with
+	 */
+	protected void fillChunk(Chunk chunk, TileType type)
+	{
+		int baseX = chunk.getChunkX() << Chunk.SHIFT;
+		int baseY = chunk.getChunkY() << Chunk.SHIFT;
+		for(int localY = 0; localY < Chunk.SIZE && baseY + localY < HEIGHT; localY++)
+			for(int localX = 0; localX < Chunk.SIZE && baseX + localX < WIDTH; localX++)
+				chunk.set(localX, localY, type.getID());
+	}
+	
+	public void destroyWorld()
 	{
-		tileHandler.render(g);
-		entityHandler.render(g);
+		tileHandler.empty();
 	}
 	
 	/**
-	 * Runs the tick method for each of this World's handlers
+	 * Runs the tick method for each of this World's handlers, and times each of them with the {@link Profiler}
 	 */
 	public void tickAllHandlers()
 	{
+		long tickStart = System.nanoTime();
+		long start = tickStart;
 		tileHandler.tick();
+		start = Profiler.Phase.TILE_TICK.record(start);
+		flowField.update();
+		start = Profiler.Phase.FLOW_FIELD.record(start);
 		entityHandler.tick();
+		lastTickNanos = Profiler.Phase.ENTITY_TICK.record(start) - tickStart;
+	}
+	
+	/**
+	 * Ticks this World while it isn't the current World, in place of the supplied number of ticks. The Chunks around 
+	 * the {@link Camera} are loaded as usual, but the {@link FlowField} is cleared instead of being worked out (the 
+	 * Player isn't in here to lead to), so the Mobs wander, and the Entities are ticked once for all of the ticks 
+	 * (see {@link EntityHandler#tickInBackground(int)}). Called on the background thread by the 
+	 * {@link ca.hjalmionlabs.handlers.WorldHandler WorldHandler}, and timed with the background phases of the {@link Profiler}
+	 * @param ticks - How many ticks this stands in for
+	 */
+	public void tickInBackground(int ticks)
+	{
+		long tickStart = System.nanoTime();
+		long start = tickStart;
+		tileHandler.tick();
+		start = Profiler.Phase.BACKGROUND_TILE_TICK.record(start);
+		flowField.clear();
+		entityHandler.tickInBackground(ticks);
+		lastTickNanos = Profiler.Phase.BACKGROUND_ENTITY_TICK.record(start) - tickStart;
 	}
 	
 	public void addEntity(Entity ent)
@@ -73,11 +208,138 @@ public abstract class World implements Serializable
 		entityHandler.addEntity(ent);
 	}
 	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets how long the last {@link World#tickAllHandlers()} took
+	 * @return the duration of the last tick, in nanoseconds, or 0 if this World hasn't been ticked
+	 */
+	public long getLastTickNanos()
+	{
+		return lastTickNanos;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link FlowField} that leads this World's Mobs to the Player
+	 * @return this World's FlowField
+	 */
+	public FlowField getFlowField()
+	{
+		return flowField;
+	}
+	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the {@link EntityHandler} that holds this World's Entities
+	 * @return this World's EntityHandler
+	 */
+	public EntityHandler getEntityHandler()
+	{
+		return entityHandler;
+	}
+	
 	public Tile getTile(int index)
 	{
 		return tileHandler.getTileAt(index);
 	}
 	
+	/**
+	 * Gets the {@link Tile} at the specified Tile coordinates. The returned Tile is a reused view, so don't hold on to it
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return the Tile at that position
+	 */
+	public Tile getTile(int tileX, int tileY)
+	{
+		return tileHandler.getTileAt(tileX, tileY);
+	}
+	
+	/**
+	 * Gets the {@link TileType} at the specified Tile coordinates
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return the TileType at that position, or {@link TileType#NULL} if it is outside of this World
+	 */
+	public TileType getTypeAt(int tileX, int tileY)
+	{
+		return tileHandler.getTypeAt(tileX, tileY);
+	}
+	
+	/**
+	 * Whether or not the Tile at the specified Tile coordinates is {@link TileType#isSolid() solid}
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return true if Entities can't walk on the Tile (or it is outside of this World), false otherwise
+	 */
+	public boolean isSolid(int tileX, int tileY)
+	{
+		return tileHandler.isSolid(tileX, tileY);
+	}
+	
+	/**
+	 * Whether or not a box of the supplied size can stand at the specified position, without overlapping a 
+	 * {@link TileType#isSolid() solid} Tile
+	 * @param x - x-coord of the box, in world coordinates
+	 * @param y - y-coord of the box, in world coordinates
+	 * @param width - Width of the box, in pixels
+	 * @param height - Height of the box, in pixels
+	 * @return true if the box only covers Tiles that can be walked on, false otherwise
+	 */
+	public boolean isOpen(int x, int y, int width, int height)
+	{
+		return !tileHandler.overlapsSolid(x, y, width, height);
+	}
+	
+	/**
+	 * Picks random positions in this World until one is {@link World#isOpen open} for a box of the supplied size, so 
+	 * that Entities aren't spawned in Water, Lava or Stone
+	 * @param random - Where the positions come from. The same Random always picks the same position
+	 * @param width - Width of the box, in pixels
+	 * @param height - Height of the box, in pixels
+	 * @return the x and y coords of the position, in world coordinates, or null if no open position was found
+	 */
+	public int[] findOpenPosition(Random random, int width, int height)
+	{
+		for(int i = 0; i < SPAWN_ATTEMPTS; i++)
+		{
+			int x = random.nextInt(WIDTH * Tile.TILEWIDTH - width + 1);
+			int y = random.nextInt(HEIGHT * Tile.TILEHEIGHT - height + 1);
+			if(isOpen(x, y, width, height))
+				return new int[] {x, y};
+		}
+		return null;
+	}
+	
+	/**
+	 * Finds the {@link World#isOpen open} position closest to the supplied one, moving a whole number of Tiles at a time 
+	 * in rings around it, so that an Entity that is put there doesn't start out stuck in Water, Lava or Stone
+	 * @param x - x-coord of the position to start at, in world coordinates
+	 * @param y - y-coord of the position to start at, in world coordinates
+	 * @param width - Width of the box, in pixels
+	 * @param height - Height of the box, in pixels
+	 * @return the x and y coords of the open position, or of the supplied position if nothing in this World is open
+	 */
+	public int[] findOpenPositionNear(int x, int y, int width, int height)
+	{
+		int maxRing = Math.max(WIDTH, HEIGHT);
+		for(int ring = 0; ring <= maxRing; ring++)
+		{
+			for(int dy = -ring; dy <= ring; dy++)
+			{
+				/* Only the edge of the ring, everything inside of it was checked already */
+				int step = dy == -ring || dy == ring ? 1 : 2 * ring;
+				for(int dx = -ring; dx <= ring; dx += step)
+				{
+					int openX = x + dx * Tile.TILEWIDTH;
+					int openY = y + dy * Tile.TILEHEIGHT;
+					if(isOpen(openX, openY, width, height))
+						return new int[] {openX, openY};
+				}
+			}
+		}
+		return new int[] {x, y};
+	}
+	
 	public int getSize()
 	{
 		return tileHandler.size();
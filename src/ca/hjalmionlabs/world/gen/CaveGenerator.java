@@ -0,0 +1,175 @@
+package ca.hjalmionlabs.world.gen;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Carves caves with a cellular automaton. Every cell starts out as wall or open at random (from seeded {@link Noise}), 
+ * then a few smoothing passes turn each cell into a wall if most of its neighbours are walls, and open if most 
+ * of them are open. <br><br>
+ * The passes read from one grid and write into another (then swap), so every cell in a pass can be worked out 
+ * at the same time. Big areas are split into bands of rows that run on a {@link ForkJoinPool}. <br><br>
+ * Each pass needs the cells around the area from the pass before, so the area is padded by one cell per pass. 
+ * That way any area (like one Chunk) comes out exactly the same as if the whole World had been carved at once, 
+ * which lets Chunks be carved one at a time, in any order.
+ * @author Nick Mills
+ */
+public class CaveGenerator
+{
+	/** Value of a wall cell in the grid that {@link CaveGenerator#generate} fills */
+	public static final byte WALL = 1;
+	/** Value of an open cell in the grid that {@link CaveGenerator#generate} fills */
+	public static final byte OPEN = 0;
+	
+	/* Areas with less cells than this are smoothed on the calling thread */
+	private static final int PARALLEL_THRESHOLD = 256 * 256;
+	/* Rows per band when a pass is split across threads */
+	private static final int BAND_ROWS = 64;
+	/* Noise layer used for the starting cells, so they don't line up with TerrainGenerator's features */
+	private static final int LAYER = 101;
+	
+	private final Noise noise;
+	private final double wallChance;
+	private final int passes;
+	private final ForkJoinPool pool;
+	
+	/**
+	 * Creates a CaveGenerator that runs on the common {@link ForkJoinPool}
+	 * @param seed - The World's seed
+	 * @param wallChance - How likely a cell is to start out as a wall, from 0 to 1. Around 0.45 makes connected caves
+	 * @param passes - How many smoothing passes to run. More passes make smoother caves
+	 */
+	public CaveGenerator(long seed, double wallChance, int passes)
+	{
+		this(seed, wallChance, passes, ForkJoinPool.commonPool());
+	}
+	
+	/**
+	 * Creates a CaveGenerator that runs on the supplied {@link ForkJoinPool}
+	 * @param seed - The World's seed
+	 * @param wallChance - How likely a cell is to start out as a wall, from 0 to 1. Around 0.45 makes connected caves
+	 * @param passes - How many smoothing passes to run. More passes make smoother caves
+	 * @param pool - The pool to split big areas across
+	 */
+	public CaveGenerator(long seed, double wallChance, int passes, ForkJoinPool pool)
+	{
+		this.noise = new Noise(seed);
+		this.wallChance = wallChance;
+		this.passes = passes;
+		this.pool = pool;
+	}
+	
+	/**
+	 * Carves the caves for a rectangle of the World
+	 * @param originX - xTile-coord of the top left corner of the rectangle
+	 * @param originY - yTile-coord of the top left corner of the rectangle
+	 * @param width - Width of the rectangle, in Tiles
+	 * @param height - Height of the rectangle, in Tiles
+	 * @param worldWidth - Width of the World, in Tiles. Everything outside of the World is solid wall
+	 * @param worldHeight - Height of the World, in Tiles
+	 * @param out - Filled with {@link CaveGenerator#WALL} or {@link CaveGenerator#OPEN} for every Tile in the 
+	 * rectangle, indexed by <code>y * width + x</code>. Must hold at least <code>width * height</code> cells
+	 */
+	public void generate(int originX, int originY, int width, int height, int worldWidth, int worldHeight, byte[] out)
+	{
+		/* Pad the rectangle by one cell per pass */
+		int gridWidth = width + 2 * passes;
+		int gridHeight = height + 2 * passes;
+		int gridX = originX - passes;
+		int gridY = originY - passes;
+		byte[] current = new byte[gridWidth * gridHeight];
+		byte[] next = new byte[gridWidth * gridHeight];
+		
+		for(int y = 0; y < gridHeight; y++)
+		{
+			int tileY = gridY + y;
+			for(int x = 0; x < gridWidth; x++)
+			{
+				int tileX = gridX + x;
+				boolean inWorld = tileX >= 0 && tileY >= 0 && tileX < worldWidth && tileY < worldHeight;
+				current[y * gridWidth + x] = !inWorld || noise.random(tileX, tileY, LAYER) < wallChance ? WALL : OPEN;
+			}
+		}
+		
+		boolean parallel = gridWidth * gridHeight >= PARALLEL_THRESHOLD && pool.getParallelism() > 1;
+		for(int pass = 1; pass <= passes; pass++)
+		{
+			/* Each pass can only work out the cells that still have all of their neighbours from the pass before */
+			int firstRow = pass;
+			int lastRow = gridHeight - pass;
+			if(parallel)
+				pool.invoke(new SmoothBand(current, next, gridWidth, pass, firstRow, lastRow));
+			else
+				smooth(current, next, gridWidth, pass, firstRow, lastRow);
+			byte[] swap = current;
+			current = next;
+			next = swap;
+		}
+		
+		for(int y = 0; y < height; y++)
+			System.arraycopy(current, (y + passes) * gridWidth + passes, out, y * width, width);
+	}
+	
+	/**
+	 * Runs one smoothing pass over rows <i>firstRow</i> up to (but not including) <i>lastRow</i>, skipping 
+	 * <i>margin</i> cells at each end of the row
+	 */
+	private static void smooth(byte[] from, byte[] to, int gridWidth, int margin, int firstRow, int lastRow)
+	{
+		for(int y = firstRow; y < lastRow; y++)
+		{
+			int row = y * gridWidth;
+			for(int x = margin; x < gridWidth - margin; x++)
+			{
+				int i = row + x;
+				int walls = from[i - gridWidth - 1] + from[i - gridWidth] + from[i - gridWidth + 1]
+						+ from[i - 1] + from[i + 1]
+						+ from[i + gridWidth - 1] + from[i + gridWidth] + from[i + gridWidth + 1];
+				if(walls > 4)
+					to[i] = WALL;
+				else if(walls < 4)
+					to[i] = OPEN;
+				else
+					to[i] = from[i];
+			}
+		}
+	}
+	
+	/**
+	 * One smoothing pass over a band of rows. Splits itself in half until the band is {@link CaveGenerator#BAND_ROWS} rows or less
+	 */
+	private static class SmoothBand extends RecursiveAction
+	{
+		private static final long serialVersionUID = -4468830339617434405L;
+		
+		private final byte[] from;
+		private final byte[] to;
+		private final int gridWidth;
+		private final int margin;
+		private final int firstRow;
+		private final int lastRow;
+		
+		private SmoothBand(byte[] from, byte[] to, int gridWidth, int margin, int firstRow, int lastRow)
+		{
+			this.from = from;
+			this.to = to;
+			this.gridWidth = gridWidth;
+			this.margin = margin;
+			this.firstRow = firstRow;
+			this.lastRow = lastRow;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if(lastRow - firstRow <= BAND_ROWS)
+			{
+				smooth(from, to, gridWidth, margin, firstRow, lastRow);
+				return;
+			}
+			int middle = (firstRow + lastRow) >>> 1;
+			invokeAll(new SmoothBand(from, to, gridWidth, margin, firstRow, middle), 
+					new SmoothBand(from, to, gridWidth, margin, middle, lastRow));
+		}
+	}
+}
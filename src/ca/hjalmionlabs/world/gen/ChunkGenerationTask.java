@@ -0,0 +1,68 @@
+package ca.hjalmionlabs.world.gen;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.World;
+
+/**
+ * Generates a batch of {@link Chunk}s on a {@link ForkJoinPool}. The batch is split in half until each task only 
+ * has a few Chunks left, which are then generated one after another by {@link World#generateChunk(Chunk)}. 
+ * The World must be able to generate different Chunks at the same time.
+ * @author Nick Mills
+ */
+public class ChunkGenerationTask extends RecursiveAction
+{
+	private static final long serialVersionUID = 2712095406126001735L;
+
+	/* Batches with this many Chunks or less are generated without splitting them any further */
+	private static final int THRESHOLD = 2;
+	
+	private final World world;
+	private final Chunk[] chunks;
+	private final int from;
+	private final int to;
+	
+	/**
+	 * Creates a task that generates <code>chunks[from]</code> up to (but not including) <code>chunks[to]</code>
+	 * @param world - The World that the Chunks belong to
+	 * @param chunks - The Chunks to generate
+	 * @param from - Index of the first Chunk to generate
+	 * @param to - Index after the last Chunk to generate
+	 */
+	public ChunkGenerationTask(World world, Chunk[] chunks, int from, int to)
+	{
+		this.world = world;
+		this.chunks = chunks;
+		this.from = from;
+		this.to = to;
+	}
+	
+	/**
+	 * Generates the first <i>count</i> Chunks of the supplied array on the common {@link ForkJoinPool}, and waits for them
+	 * @param world - The World that the Chunks belong to
+	 * @param chunks - The Chunks to generate
+	 * @param count - How many of the Chunks to generate
+	 */
+	public static void generate(World world, Chunk[] chunks, int count)
+	{
+		if(count <= THRESHOLD)
+			new ChunkGenerationTask(world, chunks, 0, count).compute();
+		else
+			ForkJoinPool.commonPool().invoke(new ChunkGenerationTask(world, chunks, 0, count));
+	}
+	
+	@Override
+	protected void compute()
+	{
+		if(to - from <= THRESHOLD)
+		{
+			for(int i = from; i < to; i++)
+				world.generateChunk(chunks[i]);
+			return;
+		}
+		int middle = (from + to) >>> 1;
+		invokeAll(new ChunkGenerationTask(world, chunks, from, middle), new ChunkGenerationTask(world, chunks, middle, to));
+	}
+}
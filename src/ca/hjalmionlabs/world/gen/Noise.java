@@ -0,0 +1,109 @@
+package ca.hjalmionlabs.world.gen;
+
+/**
+ * Seeded 2D value noise. Every value only depends on the seed and the coordinates, so the same point always gives 
+ * the same value no matter which thread asks or in which order the points are asked for.
+ * @author Nick Mills
+ */
+public class Noise
+{
+	private final long seed;
+	
+	/**
+	 * Creates a new noise function
+	 * @param seed - The seed. Two Noise objects with the same seed give the same values
+	 */
+	public Noise(long seed)
+	{
+		this.seed = seed;
+	}
+	
+	/**
+	 * Gets smooth noise at the specified point, made of several octaves (layers of finer and finer detail)
+	 * @param x - x-coord of the point
+	 * @param y - y-coord of the point
+	 * @param scale - Size of the biggest features, in the same units as <i>x</i> and <i>y</i>
+	 * @param octaves - How many layers of detail to add together
+	 * @return a value from 0 (inclusive) to 1 (exclusive)
+	 */
+	public double fractal(double x, double y, double scale, int octaves)
+	{
+		double total = 0;
+		double amplitude = 1;
+		double max = 0;
+		double frequency = 1 / scale;
+		for(int i = 0; i < octaves; i++)
+		{
+			total += value(x * frequency, y * frequency, i) * amplitude;
+			max += amplitude;
+			amplitude *= 0.5;
+			frequency *= 2;
+		}
+		return total / max;
+	}
+	
+	/**
+	 * Gets smooth noise at the specified point, by blending the random values of the four closest whole-number points
+	 * @param x - x-coord of the point
+	 * @param y - y-coord of the point
+	 * @param layer - Which octave this is, so that every octave gets different random values
+	 * @return a value from 0 (inclusive) to 1 (exclusive)
+	 */
+	public double value(double x, double y, int layer)
+	{
+		int x0 = (int)Math.floor(x);
+		int y0 = (int)Math.floor(y);
+		double fx = smooth(x - x0);
+		double fy = smooth(y - y0);
+		
+		double top = lerp(random(x0, y0, layer), random(x0 + 1, y0, layer), fx);
+		double bottom = lerp(random(x0, y0 + 1, layer), random(x0 + 1, y0 + 1, layer), fx);
+		return lerp(top, bottom, fy);
+	}
+	
+	/**
+	 * Gets the random value of a single whole-number point
+	 * @param x - x-coord of the point
+	 * @param y - y-coord of the point
+	 * @param layer - Extra input so that different users of the same seed get different values
+	 * @return a value from 0 (inclusive) to 1 (exclusive)
+	 */
+	public double random(int x, int y, int layer)
+	{
+		return (hash(x, y, layer) >>> 11) * 0x1.0p-53;
+	}
+	
+	/**
+	 * Mixes the seed and the supplied values into 64 random-looking bits
+	 * @param x - x-coord of the point
+	 * @param y - y-coord of the point
+	 * @param layer - Extra input so that different users of the same seed get different values
+	 * @return the hash
+	 */
+	public long hash(int x, int y, int layer)
+	{
+		long h = seed;
+		h = mix(h ^ (x * 0x9E3779B97F4A7C15L));
+		h = mix(h ^ (y * 0xC2B2AE3D27D4EB4FL));
+		h = mix(h ^ (layer * 0x165667B19E3779F9L));
+		return h;
+	}
+	
+	/* The SplitMix64 finalizer */
+	private static long mix(long z)
+	{
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+	
+	private static double smooth(double t)
+	{
+		return t * t * (3 - 2 * t);
+	}
+	
+	private static double lerp(double a, double b, double t)
+	{
+		return a + (b - a) * t;
+	}
+}
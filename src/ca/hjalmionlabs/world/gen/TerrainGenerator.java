@@ -0,0 +1,101 @@
+package ca.hjalmionlabs.world.gen;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * Generates the Tiles of a {@link Chunk} from seeded {@link Noise}. The World is filled with a base {@link TileType}, 
+ * and then each feature (lakes, pools, patches) is placed wherever its own noise is above a threshold. 
+ * Later features are placed on top of earlier ones. Because every Tile only depends on the seed and its 
+ * coordinates, Chunks can be generated in any order and on any number of threads.
+ * @author Nick Mills
+ */
+public class TerrainGenerator
+{
+	/**
+	 * A TileType that is placed in blobs wherever its noise is high enough
+	 */
+	private static class Feature
+	{
+		private final byte id;
+		private final double scale;
+		private final double threshold;
+		private final int layer;
+		
+		private Feature(TileType type, double scale, double threshold, int layer)
+		{
+			this.id = type.getID();
+			this.scale = scale;
+			this.threshold = threshold;
+			this.layer = layer;
+		}
+	}
+	
+	private final Noise noise;
+	private final byte base;
+	private final List<Feature> features = new ArrayList<Feature>();
+	
+	/**
+	 * Creates a new TerrainGenerator with no features
+	 * @param seed - The World's seed
+	 * @param base - The TileType that is everywhere that no feature is placed
+	 */
+	public TerrainGenerator(long seed, TileType base)
+	{
+		this.noise = new Noise(seed);
+		this.base = base.getID();
+	}
+	
+	/**
+	 * Adds a feature that is placed on top of the base and any features that were added before it
+	 * @param type - The TileType of the feature
+	 * @param scale - About how big the blobs are, in Tiles
+	 * @param threshold - How rare the feature is, from 0 (everywhere) to 1 (nowhere). Around 0.7 makes scattered blobs
+	 * @return this TerrainGenerator, so calls can be chained
+	 */
+	public TerrainGenerator addFeature(TileType type, double scale, double threshold)
+	{
+		features.add(new Feature(type, scale, threshold, features.size() * 8));
+		return this;
+	}
+	
+	/**
+	 * Fills the supplied {@link Chunk}. Tiles outside of the World are left as {@link TileType#NULL}
+	 * @param chunk - The Chunk to fill
+	 * @param worldWidth - Width of the World, in Tiles
+	 * @param worldHeight - Height of the World, in Tiles
+	 */
+	public void generate(Chunk chunk, int worldWidth, int worldHeight)
+	{
+		int baseX = chunk.getChunkX() << Chunk.SHIFT;
+		int baseY = chunk.getChunkY() << Chunk.SHIFT;
+		for(int localY = 0; localY < Chunk.SIZE && baseY + localY < worldHeight; localY++)
+		{
+			for(int localX = 0; localX < Chunk.SIZE && baseX + localX < worldWidth; localX++)
+			{
+				chunk.set(localX, localY, typeAt(baseX + localX, baseY + localY));
+			}
+		}
+	}
+	
+	/**
+	 * Gets the {@link TileType} id that this generator puts at the specified Tile
+	 * @param tileX - xTile-coord of the Tile
+	 * @param tileY - yTile-coord of the Tile
+	 * @return the id of the TileType at that Tile
+	 */
+	public byte typeAt(int tileX, int tileY)
+	{
+		byte id = base;
+		for(int i = 0; i < features.size(); i++)
+		{
+			Feature feature = features.get(i);
+			if(noise.fractal(tileX, tileY, feature.scale, 3) > feature.threshold)
+				id = feature.id;
+		}
+		return id;
+	}
+}
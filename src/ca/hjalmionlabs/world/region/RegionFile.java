@@ -0,0 +1,243 @@
+package ca.hjalmionlabs.world.region;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import ca.hjalmionlabs.handlers.FileHandler;
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.ChunkCodec;
+
+/**
+ * One file holding the saved {@link Chunk}s of a {@link RegionFile#SIZE} x {@link RegionFile#SIZE} block of Chunks.
+ * The whole file is mapped into memory with a {@link MappedByteBuffer}, so reading a Chunk is a copy out of the
+ * OS page cache and only the parts of the file that are actually read get loaded from the disk.
+ * <br><br>
+ * <strong>Format (version 2)</strong>, big-endian:
+ * <pre>
+ * int    magic ("HJRG")
+ * short  version
+ * byte   palette size, then for each TileType: byte id, string name
+ * ...    (padding up to byte 512)
+ * then for each Chunk, in row-major order: int offset (in sectors), int length (in bytes, 0 if the Chunk isn't saved)
+ * then the Chunk data, in {@link RegionFile#SECTOR_SIZE} byte sectors, each Chunk encoded with {@link ChunkCodec}
+ * </pre>
+ * A Chunk that is written again goes into free sectors, and the offset table only points at it once
+ * {@link RegionFile#flush()} has put the data on the disk. The old sectors are only reused after that, so after a crash
+ * every Chunk is either completely old or completely new.
+ * @author Nick Mills
+ */
+public class RegionFile
+{
+	/** Shift to go from Chunk coordinates to region coordinates */
+	public static final int SHIFT = 4;
+	/** Width and height of a region, in Chunks */
+	public static final int SIZE = 1 << SHIFT;
+	/** Mask to go from Chunk coordinates to the Chunk's position inside of its region */
+	public static final int MASK = SIZE - 1;
+	/** Size of the blocks that the Chunk data is stored in, in bytes */
+	public static final int SECTOR_SIZE = 32;
+
+	/* "HJRG" */
+	private static final int MAGIC = 0x484A5247;
+	private static final short VERSION = 2;
+	/* Where the offset table starts */
+	private static final int TABLE_START = 512;
+	/* Size of everything before the Chunk data */
+	private static final int HEADER_SIZE = TABLE_START + SIZE * SIZE * 8;
+	private static final int HEADER_SECTORS = HEADER_SIZE / SECTOR_SIZE;
+	/* The file grows by at least this much at a time, so it doesn't have to be mapped again for every Chunk */
+	private static final int GROWTH = 64 * 1024;
+
+	private final File file;
+	private final FileChannel channel;
+	private MappedByteBuffer map;
+
+	/* Sectors that hold the header or the data of a Chunk in the offset table (including the ones about to be replaced) */
+	private final BitSet used = new BitSet();
+	/* Chunks written since the last flush(): where their new data is, or -1 if they weren't written */
+	private final int[] newOffsets = new int[SIZE * SIZE];
+	private final int[] newLengths = new int[SIZE * SIZE];
+
+	/**
+	 * Opens the supplied region file, creating it if it doesn't exist. A file that was written with a different
+	 * {@link ca.hjalmionlabs.world.tiles.TileType TileType} palette has its Chunks converted to the current ids
+	 * @param file - The region file
+	 * @throws IOException if the file couldn't be opened, or isn't a region file
+	 */
+	public RegionFile(File file) throws IOException
+	{
+		this.file = file;
+		this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		Arrays.fill(newOffsets, -1);
+
+		boolean created = channel.size() == 0;
+		map(Math.max(channel.size(), HEADER_SIZE + GROWTH));
+		used.set(0, HEADER_SECTORS);
+		if(created)
+		{
+			map.putInt(0, MAGIC);
+			map.putShort(4, VERSION);
+			ByteBuffer header = map.duplicate();
+			header.position(6);
+			FileHandler.putPalette(header);
+			map.force();
+			return;
+		}
+
+		ByteBuffer header = map.duplicate();
+		if(header.getInt() != MAGIC || header.getShort() != VERSION)
+		{
+			channel.close();
+			throw new IOException(file + " is not a region file (or was made by an old version of the game)");
+		}
+		byte[] remap = FileHandler.getPalette(header);
+		boolean sameIds = true;
+		for(int id = 0; id < 256; id++)
+			sameIds &= remap[id] == (byte)id || remap[id] == 0;
+
+		for(int i = 0; i < SIZE * SIZE; i++)
+		{
+			int offset = map.getInt(TABLE_START + i * 8);
+			int length = map.getInt(TABLE_START + i * 8 + 4);
+			if(length > 0)
+				used.set(offset, offset + sectors(length));
+		}
+
+		if(!sameIds)
+			convert(remap);
+	}
+
+	/**
+	 * Gets the saved data of the Chunk at the specified position in this region
+	 * @param localX - x-coord of the Chunk inside of the region (0 to {@link RegionFile#MASK})
+	 * @param localY - y-coord of the Chunk inside of the region (0 to {@link RegionFile#MASK})
+	 * @return a read-only view of the Chunk's data in the mapped file, or null if the Chunk isn't saved
+	 */
+	public synchronized ByteBuffer read(int localX, int localY)
+	{
+		int index = localY * SIZE + localX;
+		int offset = map.getInt(TABLE_START + index * 8);
+		int length = map.getInt(TABLE_START + index * 8 + 4);
+		if(length <= 0)
+			return null;
+		ByteBuffer data = map.asReadOnlyBuffer();
+		data.position(offset * SECTOR_SIZE);
+		data.limit(offset * SECTOR_SIZE + length);
+		return data.slice();
+	}
+
+	/**
+	 * Writes the data of the Chunk at the specified position in this region into free sectors. Reads still get the
+	 * old data until {@link RegionFile#flush()} is called
+	 * @param localX - x-coord of the Chunk inside of the region (0 to {@link RegionFile#MASK})
+	 * @param localY - y-coord of the Chunk inside of the region (0 to {@link RegionFile#MASK})
+	 * @param data - The Chunk's data
+	 * @throws IOException if the file couldn't grow
+	 */
+	public synchronized void write(int localX, int localY, byte[] data) throws IOException
+	{
+		int index = localY * SIZE + localX;
+		if(newOffsets[index] >= 0)	// Written twice before a flush, the first copy is never pointed at
+			used.clear(newOffsets[index], newOffsets[index] + sectors(newLengths[index]));
+
+		int count = sectors(data.length);
+		int start = used.nextClearBit(HEADER_SECTORS);
+		for(int end = used.nextSetBit(start); end >= 0 && end - start < count; end = used.nextSetBit(start))
+			start = used.nextClearBit(end);
+		if((long)(start + count) * SECTOR_SIZE > map.capacity())
+			map(Math.max((long)(start + count) * SECTOR_SIZE, map.capacity() + (long)GROWTH));
+		used.set(start, start + count);
+
+		ByteBuffer target = map.duplicate();
+		target.position(start * SECTOR_SIZE);
+		target.put(data);
+		newOffsets[index] = start;
+		newLengths[index] = data.length;
+	}
+
+	/**
+	 * Puts everything written since the last flush on the disk, then points the offset table at it and frees the
+	 * sectors of the data it replaced
+	 * @throws IOException if the file couldn't be flushed
+	 */
+	public synchronized void flush() throws IOException
+	{
+		map.force();	// The data has to be on the disk before anything points at it
+		boolean changed = false;
+		for(int i = 0; i < SIZE * SIZE; i++)
+		{
+			if(newOffsets[i] < 0)
+				continue;
+			int oldOffset = map.getInt(TABLE_START + i * 8);
+			int oldLength = map.getInt(TABLE_START + i * 8 + 4);
+			map.putInt(TABLE_START + i * 8, newOffsets[i]);
+			map.putInt(TABLE_START + i * 8 + 4, newLengths[i]);
+			if(oldLength > 0)
+				used.clear(oldOffset, oldOffset + sectors(oldLength));
+			newOffsets[i] = -1;
+			changed = true;
+		}
+		if(changed)
+			map.force();
+	}
+
+	/**
+	 * Closes the file. Anything written since the last {@link RegionFile#flush()} is lost
+	 */
+	public synchronized void close()
+	{
+		try
+		{
+			channel.close();
+		} catch(IOException ioe)
+		{
+			ioe.printStackTrace();
+		}
+	}
+
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the file that this region is stored in
+	 * @return the region file
+	 */
+	public File getFile()
+	{
+		return file;
+	}
+
+	/* Maps the first size bytes of the file, making the file longer if it isn't long enough */
+	private void map(long size) throws IOException
+	{
+		size = (size + SECTOR_SIZE - 1) / SECTOR_SIZE * SECTOR_SIZE;
+		map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+	}
+
+	/* Converts every saved Chunk from the ids of an old palette to the current ids, in place */
+	private void convert(byte[] remap)
+	{
+		for(int i = 0; i < SIZE * SIZE; i++)
+		{
+			if(map.getInt(TABLE_START + i * 8 + 4) <= 0)
+				continue;
+			ByteBuffer data = map.duplicate();
+			data.position(map.getInt(TABLE_START + i * 8) * SECTOR_SIZE);
+			ChunkCodec.remap(data, remap);
+		}
+		ByteBuffer header = map.duplicate();
+		header.position(6);
+		FileHandler.putPalette(header);
+		map.force();
+	}
+
+	/* How many sectors it takes to hold the specified number of bytes */
+	private static int sectors(int bytes)
+	{
+		return (bytes + SECTOR_SIZE - 1) / SECTOR_SIZE;
+	}
+}
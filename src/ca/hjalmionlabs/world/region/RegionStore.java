@@ -0,0 +1,198 @@
+package ca.hjalmionlabs.world.region;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.ChunkCodec;
+
+/**
+ * The saved {@link Chunk}s of one {@link ca.hjalmionlabs.world.World World}, stored in a directory of {@link RegionFile}s
+ * that are opened the first time one of their Chunks is needed. Chunks handed to {@link RegionStore#stage} on the game
+ * thread can be read back right away, and stay in memory until the save thread has written them with
+ * {@link RegionStore#write()}, so a saved Chunk can be unloaded before it is actually on the disk. Chunks are stored
+ * encoded with {@link ChunkCodec}, so a Chunk that is all one TileType only takes one sector.
+ * @author Nick Mills
+ */
+public class RegionStore
+{
+	private final File directory;
+
+	/* Opened regions by region key, or null for regions that don't have a file */
+	private final Map<Long, RegionFile> regions = new HashMap<Long, RegionFile>();
+	/* Chunks waiting to be written, by Chunk key */
+	private final Map<Long, byte[]> staged = new HashMap<Long, byte[]>();
+
+	/**
+	 * Creates a store for the region files in the supplied directory
+	 * @param directory - Where the region files are kept. Created when the first region is written
+	 */
+	public RegionStore(File directory)
+	{
+		this.directory = directory;
+	}
+
+	/**
+	 * Fills the supplied {@link Chunk} with its saved Tiles, if it was saved
+	 * @param chunk - The Chunk to fill, at the coordinates to load
+	 * @return true if the Chunk was saved (it is now marked as modified), false if it has to be generated instead
+	 */
+	public boolean load(Chunk chunk)
+	{
+		int chunkX = chunk.getChunkX();
+		int chunkY = chunk.getChunkY();
+		ByteBuffer data;
+		synchronized(this)
+		{
+			byte[] tiles = staged.get(Chunk.key(chunkX, chunkY));
+			if(tiles != null)
+			{
+				System.arraycopy(tiles, 0, chunk.getTiles(), 0, tiles.length);
+				chunk.tilesChanged();
+				chunk.markModified();
+				return true;
+			}
+			try
+			{
+				RegionFile region = region(chunkX >> RegionFile.SHIFT, chunkY >> RegionFile.SHIFT, false);
+				if(region == null)
+					return false;
+				data = region.read(chunkX & RegionFile.MASK, chunkY & RegionFile.MASK);
+			} catch(IOException ioe)
+			{
+				System.err.println(ioe.getMessage());
+				ioe.printStackTrace();
+				regions.put(Chunk.key(chunkX >> RegionFile.SHIFT, chunkY >> RegionFile.SHIFT), null);	// Generate its Chunks instead
+				return false;
+			}
+		}
+		if(data == null)
+			return false;
+		try
+		{
+			ChunkCodec.decode(data, chunk.getTiles());
+			chunk.tilesChanged();
+		} catch(RuntimeException e)
+		{
+			System.out.println("Chunk " + chunkX + ", " + chunkY + " in " + directory + " is broken, generating it again: " + e);
+			return false;
+		}
+		chunk.markModified();
+		return true;
+	}
+
+	/**
+	 * Hands a copy of a {@link Chunk}'s Tiles to the store, to be written by the next {@link RegionStore#write()}.
+	 * Until then {@link RegionStore#load} reads the Chunk from here
+	 * @param chunkX - x-coord of the Chunk, in Chunks
+	 * @param chunkY - y-coord of the Chunk, in Chunks
+	 * @param tiles - The Chunk's Tiles. Must not be changed afterwards
+	 */
+	public synchronized void stage(int chunkX, int chunkY, byte[] tiles)
+	{
+		staged.put(Chunk.key(chunkX, chunkY), tiles);
+	}
+
+	/**
+	 * Writes every staged {@link Chunk} to its region file and flushes the regions to the disk. Chunks that fail to be
+	 * written stay staged and are tried again by the next call
+	 * @return the number of Chunks that were written
+	 * @throws IOException if a region couldn't be written
+	 */
+	public int write() throws IOException
+	{
+		Map<Long, byte[]> writing;
+		synchronized(this)
+		{
+			writing = new HashMap<Long, byte[]>(staged);
+		}
+		if(writing.isEmpty())
+			return 0;
+		if(!directory.exists())
+			directory.mkdirs();
+
+		List<RegionFile> written = new ArrayList<RegionFile>();
+		for(Map.Entry<Long, byte[]> entry : writing.entrySet())
+		{
+			int chunkX = (int)(entry.getKey() >> 32);
+			int chunkY = (int)(long)entry.getKey();
+			RegionFile region;
+			synchronized(this)
+			{
+				region = region(chunkX >> RegionFile.SHIFT, chunkY >> RegionFile.SHIFT, true);
+			}
+			region.write(chunkX & RegionFile.MASK, chunkY & RegionFile.MASK, ChunkCodec.encode(entry.getValue()));
+			if(!written.contains(region))
+				written.add(region);
+		}
+		for(RegionFile region : written)
+			region.flush();
+
+		synchronized(this)
+		{
+			for(Map.Entry<Long, byte[]> entry : writing.entrySet())
+				if(staged.get(entry.getKey()) == entry.getValue())	// Not staged again while it was being written
+					staged.remove(entry.getKey());
+		}
+		return writing.size();
+	}
+
+	/**
+	 * Throws away every staged {@link Chunk} that wasn't written yet
+	 */
+	public synchronized void discardStaged()
+	{
+		staged.clear();
+	}
+
+	/**
+	 * Closes and deletes every region file, and throws away every staged {@link Chunk}. Used when a new game is saved
+	 * over an old one
+	 */
+	public synchronized void delete()
+	{
+		close();
+		staged.clear();
+		File[] files = directory.listFiles();
+		if(files == null)
+			return;
+		for(File file : files)
+			if(file.getName().endsWith(".region") && !file.delete())
+				System.out.println("Couldn't delete " + file);
+	}
+
+	/**
+	 * Closes every open region file. They are opened again when they are needed
+	 */
+	public synchronized void close()
+	{
+		for(RegionFile region : regions.values())
+			if(region != null)
+				region.close();
+		regions.clear();
+	}
+
+	/* Gets the region at the specified region coordinates, opening its file. Returns null if it has no file and create is false */
+	private RegionFile region(int regionX, int regionY, boolean create) throws IOException
+	{
+		long key = Chunk.key(regionX, regionY);
+		RegionFile region = regions.get(key);
+		if(region != null || (regions.containsKey(key) && !create))
+			return region;
+
+		File file = new File(directory, "r." + regionX + "." + regionY + ".region");
+		if(!file.exists() && !create)
+		{
+			regions.put(key, null);	// So the disk isn't asked again for every Chunk in this region
+			return null;
+		}
+		region = new RegionFile(file);
+		regions.put(key, region);
+		return region;
+	}
+}
@@ -3,14 +3,17 @@ package ca.hjalmionlabs.world.tiles;
 import java.awt.Color;
 import java.io.Serializable;
 
+import ca.hjalmionlabs.handlers.TileHandler;
+import ca.hjalmionlabs.world.Camera;
 import ca.hjalmionlabs.world.World;
 
+/**
+ * A lightweight view of a single cell in a {@link World}. The World itself only stores {@link TileType} ids 
+ * (see {@link TileHandler}), so a Tile is just the type plus the coordinates of the cell it describes.
+ */
 public class Tile implements Serializable 
 {
-	protected String name;
 	protected TileType type;
-	protected int x;
-	protected int y;
 	protected int oX;
 	protected int oY;
 	protected int tileX;
@@ -22,18 +25,30 @@ public class Tile implements Serializable
 	
 	public Tile(TileType type, World world, int x, int y)
 	{
-		this.type = type;
 		this.world = world;
-		this.oX = x;
-		this.oY = y;
-		tileX = x / TILEWIDTH;
-		tileY = y / TILEHEIGHT;
-		TILECOLOR = type.getColor();
+		moveTo(type, x / TILEWIDTH, y / TILEHEIGHT);
 	}
 
+	/**
+	 * Points this Tile at a different cell. Used by {@link TileHandler} so that it can hand out one reusable Tile 
+	 * instead of creating a new one every time a Tile is looked up
+	 * @param type - The TileType of the cell
+	 * @param tileX - The xTile-coord of the cell
+	 * @param tileY - The yTile-coord of the cell
+	 */
+	public void moveTo(TileType type, int tileX, int tileY)
+	{
+		this.type = type;
+		this.tileX = tileX;
+		this.tileY = tileY;
+		this.oX = tileX * TILEWIDTH;
+		this.oY = tileY * TILEHEIGHT;
+		TILECOLOR = type.getColor();
+	}
+	
 	public boolean contains(int x, int y)
 	{
-		if((x >= this.x && x < Tile.TILEWIDTH) && (y >= this.y && y < Tile.TILEHEIGHT))
+		if((x >= getX() && x < getX() + Tile.TILEWIDTH) && (y >= getY() && y < getY() + Tile.TILEHEIGHT))
 				return true;
 		return false;
 	}
@@ -44,9 +59,14 @@ public class Tile implements Serializable
 		TILECOLOR = type.getColor();
 	}
 	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the x-coord of this Tile on the screen, taking the {@link World}'s {@link Camera} into account
+	 * @return the x-coord of this Tile on the screen
+	 */
 	public int getX()
 	{
-		return x;
+		return world.getCamera().toScreenX(oX);
 	}
 	
 	public int getTileX()
@@ -54,9 +74,14 @@ public class Tile implements Serializable
 		return tileX;
 	}
 	
+	/**
+	 * <strong>Getter</strong><br>
+	 * Gets the y-coord of this Tile on the screen, taking the {@link World}'s {@link Camera} into account
+	 * @return the y-coord of this Tile on the screen
+	 */
 	public int getY()
 	{
-		return y;
+		return world.getCamera().toScreenY(oY);
 	}
 
 	public int getTileY()
@@ -74,18 +99,16 @@ public class Tile implements Serializable
 		return type;
 	}
 	
+	/**
+	 * Draw this Tile in world coordinates. The {@link Camera} must already be applied to the supplied {@link Graphics} object
+	 * @param g - Graphics object to draw this Tile with
+	 */
 	public void render(java.awt.Graphics g)
 	{
 		g.setColor(TILECOLOR);
-		g.fillRect(x, y, TILEWIDTH, TILEHEIGHT);
+		g.fillRect(oX, oY, TILEWIDTH, TILEHEIGHT);
 		g.setColor(Color.BLACK);
-		g.drawRect(x, y, TILEWIDTH, TILEHEIGHT);
-	}
-	
-	public void tick()
-	{
-		x = oX + world.xOffset;
-		y = oY + world.yOffset;
+		g.drawRect(oX, oY, TILEWIDTH, TILEHEIGHT);
 	}
 	
 }
@@ -4,22 +4,38 @@ import java.awt.Color;
 
 public enum TileType
 {
-	NULL("NULL", (byte)00, Color.WHITE),
-	DIRT("DIRT", (byte)01, new Color(139, 69, 19)),
-	STONE("STONE", (byte)02, Color.GRAY),
-	GRASS("GRASS", (byte)03, Color.GREEN.darker()),
-	WATER("WATER", (byte)04, Color.BLUE),
-	LAVA("LAVA", (byte)05, Color.RED);
+	NULL("NULL", (byte)00, Color.WHITE, true),
+	DIRT("DIRT", (byte)01, new Color(139, 69, 19), false),
+	STONE("STONE", (byte)02, Color.GRAY, true),
+	GRASS("GRASS", (byte)03, Color.GREEN.darker(), false),
+	WATER("WATER", (byte)04, Color.BLUE, true),
+	LAVA("LAVA", (byte)05, Color.RED, true);
+	
+	/* Lookup tables from a TileType's id to the TileType itself, and to whether or not it is solid */
+	private static final TileType[] BY_ID = new TileType[values().length];
+	private static final boolean[] SOLID = new boolean[values().length];
+	
+	static
+	{
+		for(TileType type : values())
+		{
+			BY_ID[type.id] = type;
+			SOLID[type.id] = type.solid;
+		}
+	}
 	
 	private String name;
 	private byte id;
 	private Color tileColor;
+	/* Whether or not Entities are kept out of Tiles of this type */
+	private boolean solid;
 	
-	TileType(String name, byte id, Color color)
+	TileType(String name, byte id, Color color, boolean solid)
 	{
 		this.name = name;
 		this.id = id;
 		this.tileColor = color;
+		this.solid = solid;
 	}
 	
 	public String getName()
@@ -36,4 +52,37 @@ public enum TileType
 	{
 		return tileColor;
 	}
+	
+	/**
+	 * Whether or not Tiles of this type block Entities. Mobs find their way around solid Tiles
+	 * @return true if Entities can't walk on this TileType, false otherwise
+	 */
+	public boolean isSolid()
+	{
+		return solid;
+	}
+	
+	/**
+	 * Whether or not the TileType with the specified id is solid, without looking up the TileType
+	 * @param id - The id of the TileType, as returned by {@link TileType#getID()}
+	 * @return true if Tiles of that type block Entities (or no TileType has that id), false otherwise
+	 */
+	public static boolean isSolid(byte id)
+	{
+		if(id < 0 || id >= SOLID.length)
+			return true;
+		return SOLID[id];
+	}
+	
+	/**
+	 * Gets the TileType that has the specified id
+	 * @param id - The id of the TileType, as returned by {@link TileType#getID()}
+	 * @return the matching TileType, or {@link TileType#NULL} if no TileType has that id
+	 */
+	public static TileType fromID(byte id)
+	{
+		if(id < 0 || id >= BY_ID.length)
+			return NULL;
+		return BY_ID[id];
+	}
 }
@@ -0,0 +1,100 @@
+package ca.hjalmionlabs.entities;
+
+import ca.hjalmionlabs.world.Chunk;
+import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.Tile;
+
+/**
+ * Checks that {@link EntityTickTask} sorts Entities by Chunk, row by row, when Chunk coordinates are negative, and that
+ * each Chunk ends up in a group of its own.
+ * <br><br>
+ * Usage: <code>java ca.hjalmionlabs.entities.EntityTickTaskTest</code>
+ * @author Nick Mills
+ */
+public class EntityTickTaskTest
+{
+	private static final int CHUNK_WIDTH = Tile.TILEWIDTH << Chunk.SHIFT;
+	private static final int CHUNK_HEIGHT = Tile.TILEHEIGHT << Chunk.SHIFT;
+
+	public static void main(String[] args)
+	{
+		keysOrderNegativeChunks();
+		sortOrdersNegativeChunks();
+		System.out.println("EntityTickTaskTest passed");
+	}
+
+	private static void keysOrderNegativeChunks()
+	{
+		check(EntityTickTask.key(-1, 0, 5) < EntityTickTask.key(0, 0, 0), "Chunk -1 sorts after Chunk 0 in a row");
+		check(EntityTickTask.key(5, -1, 0) < EntityTickTask.key(-5, 0, 0), "Row -1 sorts after row 0");
+		check(EntityTickTask.key(-2, -3, 0) < EntityTickTask.key(-1, -3, 0), "Chunk -2 sorts after Chunk -1 in a row");
+		check(EntityTickTask.key(0, 0, 0) >= 0 && EntityTickTask.key(Integer.MAX_VALUE, Integer.MAX_VALUE, EntityStore.MAX_ENTITIES - 1) > 0,
+				"Keys aren't positive");
+		check(EntityTickTask.key(Integer.MIN_VALUE, Integer.MIN_VALUE, 0) < EntityTickTask.key(-1, -1, 0), "Far away Chunks aren't clamped in order");
+	}
+
+	private static void sortOrdersNegativeChunks()
+	{
+		World world = new OverWorld("Overworld", 1);
+		EntityStore store = world.getEntityHandler().getStore();
+		int[][] chunks = {{0, 0}, {-1, -1}, {3, -2}, {-1, 0}, {0, -1}, {-4, 2}, {-1, -1}, {2, 0}, {-100000, 0}, {0, 100000}, {-3, -2}};
+		for(int i = 0; i < chunks.length; i++)
+			new Zombie("Zombie" + i, world, 0, 0);
+		store.setSteps(0, 0);	// Not due, so not sorted
+		for(int i = 0; i < store.size(); i++)
+		{
+			if(store.getType(i) != EntityType.ZOMBIE)
+				continue;
+			int[] chunk = chunks[i % chunks.length];
+			/* Somewhere inside of the Chunk, not just on its corner */
+			store.setX(i, chunk[0] * CHUNK_WIDTH + (i * 37) % CHUNK_WIDTH);
+			store.setY(i, chunk[1] * CHUNK_HEIGHT + (i * 53) % CHUNK_HEIGHT);
+			if(i != 0)
+				store.setSteps(i, 1);
+		}
+
+		long[] keys = new long[store.size()];
+		int count = EntityTickTask.sort(store, keys, CHUNK_WIDTH, CHUNK_HEIGHT);
+		int due = 0;
+		for(int i = 0; i < store.size(); i++)
+			if(store.getSteps(i) != 0)
+				due++;
+		check(count == due, count + " keys for " + due + " Entities that are due");
+
+		int[] starts = new int[count + 1];
+		int groups = EntityTickTask.group(keys, count, starts);
+		int lastX = 0;
+		int lastY = 0;
+		int lastIndex = -1;
+		for(int g = 0; g < groups; g++)
+		{
+			for(int k = starts[g]; k < starts[g + 1]; k++)
+			{
+				int index = (int)(keys[k] & (EntityStore.MAX_ENTITIES - 1));
+				check(store.getSteps(index) != 0, "Entity " + index + " isn't due, but was sorted");
+				int chunkX = Math.floorDiv(store.getX(index), CHUNK_WIDTH);
+				int chunkY = Math.floorDiv(store.getY(index), CHUNK_HEIGHT);
+				if(k == starts[g])
+				{
+					check(g == 0 || chunkY > lastY || chunkY == lastY && chunkX > lastX,
+							"Chunk (" + chunkX + ", " + chunkY + ") sorted after (" + lastX + ", " + lastY + ")");
+				}
+				else
+				{
+					check(chunkX == lastX && chunkY == lastY, "Chunk (" + chunkX + ", " + chunkY + ") is in the group of (" + lastX + ", " + lastY + ")");
+					check(index > lastIndex, "Entity " + index + " sorted after Entity " + lastIndex + " in the same Chunk");
+				}
+				lastX = chunkX;
+				lastY = chunkY;
+				lastIndex = index;
+			}
+		}
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}
@@ -0,0 +1,101 @@
+package ca.hjalmionlabs.handlers;
+
+import java.io.File;
+import java.util.concurrent.Future;
+
+import ca.hjalmionlabs.entities.Player;
+import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.UnderWorld;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * Checks that a Tile edit made after a save was snapshotted (which starts a new {@link EditJournal}), but before the 
+ * save thread committed that save, is still there after the game is loaded again; and that an edit made before a 
+ * save that failed to be written is still there too, since it was journaled before the new journal started. The save is 
+ * set up and thrown away by the {@link SaveFixture}.
+ * <br><br>
+ * Usage: <code>java ca.hjalmionlabs.handlers.EditJournalTest</code>
+ * @author Nick Mills
+ */
+public class EditJournalTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		SaveFixture.requireNoSave();
+		try
+		{
+			editBeforeCommitSurvivesLoad();
+			SaveFixture.deleteSave();
+			editBeforeFailedSaveSurvivesLoad();
+		} finally
+		{
+			SaveFixture.deleteSave();
+		}
+		System.out.println("EditJournalTest passed");
+	}
+
+	private static void editBeforeCommitSurvivesLoad() throws Exception
+	{
+		WorldHandler wh = new WorldHandler();
+		wh.add(new OverWorld("Overworld", 1));
+		wh.add(new UnderWorld("Underworld", 1));
+		wh.addTileListener(FileHandler.getJournal());
+		World world = wh.get("Overworld");
+		Player player = new Player("Player1", world, 100, 100, 5);
+		FileHandler.saveGame(wh, player);	// The journal only records once there is a save for it to follow
+
+		int tileX = 3;
+		int tileY = 4;
+		TileType type = world.getTypeAt(tileX, tileY) == TileType.LAVA ? TileType.WATER : TileType.LAVA;
+		Future<?> save;
+		synchronized(FileHandler.class)	// Writing a save locks FileHandler, so the save can't be committed until the edit is journaled
+		{
+			save = FileHandler.saveGameAsync(wh, player);
+			world.replaceTile(tileX, tileY, type);
+			FileHandler.flushJournal();
+			SaveFixture.check(!save.isDone(), "The save was committed before the edit was made");
+		}
+		save.get();
+
+		SaveFixture.check(FileHandler.loadGame(wh, player), "The save couldn't be loaded");
+		World loaded = wh.get("Overworld");
+		SaveFixture.check(loaded != world, "Loading didn't replace the Overworld");
+		SaveFixture.check(loaded.getTypeAt(tileX, tileY) == type, "The edit was lost: expected " + type + ", found " + loaded.getTypeAt(tileX, tileY));
+	}
+
+	private static void editBeforeFailedSaveSurvivesLoad() throws Exception
+	{
+		WorldHandler wh = new WorldHandler();
+		wh.add(new OverWorld("Overworld", 1));
+		wh.add(new UnderWorld("Underworld", 1));
+		wh.addTileListener(FileHandler.getJournal());
+		World world = wh.get("Overworld");
+		Player player = new Player("Player1", world, 100, 100, 5);
+		FileHandler.saveGame(wh, player);
+
+		/* Not flushed yet when the save is snapshotted */
+		int tileX = 5;
+		int tileY = 6;
+		TileType type = world.getTypeAt(tileX, tileY) == TileType.LAVA ? TileType.WATER : TileType.LAVA;
+		world.replaceTile(tileX, tileY, type);
+
+		/* A directory where the edit's region file goes, so the save can't write its Chunk */
+		File region = new File(new File(FileHandler.SAVE_FILE.getParentFile(), "Overworld"), "r.0.0.region");
+		SaveFixture.check(!region.exists(), "The region of the edit was already saved");
+		region.mkdirs();
+		try
+		{
+			FileHandler.saveGameAsync(wh, player).get();
+		} finally
+		{
+			region.delete();
+		}
+
+		/* Loading throws away the Chunks that weren't written, like a crash would */
+		SaveFixture.check(FileHandler.loadGame(wh, player), "The save couldn't be loaded");
+		World loaded = wh.get("Overworld");
+		SaveFixture.check(loaded != world, "Loading didn't replace the Overworld");
+		SaveFixture.check(loaded.getTypeAt(tileX, tileY) == type, "The edit before the failed save was lost: expected " + type + ", found " + loaded.getTypeAt(tileX, tileY));
+	}
+}
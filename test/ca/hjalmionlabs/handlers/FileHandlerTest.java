@@ -0,0 +1,58 @@
+package ca.hjalmionlabs.handlers;
+
+import ca.hjalmionlabs.entities.EntityType;
+import ca.hjalmionlabs.entities.Player;
+import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.UnderWorld;
+import ca.hjalmionlabs.world.World;
+
+/**
+ * Checks that saving and loading the game keeps every Entity in the World it was in. The save is set up 
+ * and thrown away by the {@link SaveFixture}.
+ * <br><br>
+ * Usage: <code>java ca.hjalmionlabs.handlers.FileHandlerTest</code>
+ * @author Nick Mills
+ */
+public class FileHandlerTest
+{
+	public static void main(String[] args) throws Exception
+	{
+		SaveFixture.requireNoSave();
+		try
+		{
+			entitiesSurviveLoad();
+		} finally
+		{
+			SaveFixture.deleteSave();
+		}
+		System.out.println("FileHandlerTest passed");
+	}
+
+	private static void entitiesSurviveLoad()
+	{
+		WorldHandler wh = new WorldHandler();
+		wh.add(new OverWorld("Overworld", 1));
+		wh.add(new UnderWorld("Underworld", 1));
+		World under = wh.get("Underworld");
+		for(int i = 0; i < 5; i++)
+			under.getEntityHandler().spawn(EntityType.ZOMBIE, 100 + i * 60, 300);
+		World over = wh.get("Overworld");
+		for(int i = 0; i < 25; i++)
+			over.getEntityHandler().spawn(EntityType.ZOMBIE, 100 + i * 60, 500);
+		Player player = new Player("Player1", over, 100, 100, 5);
+		int overCount = over.getEntityHandler().getStore().size();
+		int underCount = under.getEntityHandler().getStore().size();
+
+		FileHandler.saveGame(wh, player);
+		SaveFixture.check(FileHandler.loadGame(wh, player), "The save couldn't be loaded");
+
+		World loadedOver = wh.get("Overworld");
+		World loadedUnder = wh.get("Underworld");
+		SaveFixture.check(loadedOver != over && loadedUnder != under, "Loading didn't replace the Worlds");
+		SaveFixture.check(loadedOver.getEntityHandler().getStore().size() == overCount,
+				"The Overworld has " + loadedOver.getEntityHandler().getStore().size() + " Entities after loading, not " + overCount);
+		SaveFixture.check(loadedUnder.getEntityHandler().getStore().size() == underCount,
+				"The Underworld has " + loadedUnder.getEntityHandler().getStore().size() + " Entities after loading, not " + underCount);
+		SaveFixture.check(player.getWorld() == loadedOver, "The Player isn't in the loaded Overworld");
+	}
+}
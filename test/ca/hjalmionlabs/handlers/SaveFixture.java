@@ -0,0 +1,58 @@
+package ca.hjalmionlabs.handlers;
+
+import java.io.File;
+
+/**
+ * What the tests that save and load the game have in common. They write to {@link FileHandler#SAVE_FILE}, so they 
+ * won't run if there already is a save there, and throw their save away afterwards.
+ * @author Nick Mills
+ */
+final class SaveFixture
+{
+	private SaveFixture()
+	{
+	}
+
+	/**
+	 * Stops a test before it overwrites a save that is already there
+	 * @throws IllegalStateException if there is a save in {@link FileHandler#SAVE_FILE}
+	 */
+	static void requireNoSave()
+	{
+		if(FileHandler.SAVE_FILE.exists())
+			throw new IllegalStateException("Won't overwrite the save in " + FileHandler.SAVE_FILE);
+	}
+
+	/**
+	 * Deletes the save file, the journal and the regions of the test's Worlds (the Overworld and the Underworld)
+	 */
+	static void deleteSave()
+	{
+		FileHandler.getJournal().close();
+		FileHandler.SAVE_FILE.delete();
+		FileHandler.JOURNAL_FILE.delete();
+		delete(new File(FileHandler.SAVE_FILE.getParentFile(), "Overworld"));
+		delete(new File(FileHandler.SAVE_FILE.getParentFile(), "Underworld"));
+	}
+
+	/**
+	 * Fails the test if the condition doesn't hold
+	 * @param condition - What has to be true
+	 * @param message - What went wrong otherwise
+	 * @throws AssertionError if the condition is false
+	 */
+	static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+
+	private static void delete(File file)
+	{
+		File[] children = file.listFiles();
+		if(children != null)
+			for(File child : children)
+				delete(child);
+		file.delete();
+	}
+}
@@ -0,0 +1,110 @@
+package ca.hjalmionlabs.handlers;
+
+import java.util.concurrent.CountDownLatch;
+
+import ca.hjalmionlabs.entities.EntityStore;
+import ca.hjalmionlabs.entities.Player;
+import ca.hjalmionlabs.entities.Zombie;
+import ca.hjalmionlabs.world.OverWorld;
+import ca.hjalmionlabs.world.UnderWorld;
+import ca.hjalmionlabs.world.World;
+import ca.hjalmionlabs.world.tiles.Tile;
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * Checks that a {@link World} that isn't the current World keeps going in the background: its Entities aren't put to 
+ * sleep, and a Zombie in there walks around even though the Player is in another World. When the background thread 
+ * falls behind, the background tick that starts next makes up for every tick that went by, so no time is lost.
+ * <br><br>
+ * Usage: <code>java ca.hjalmionlabs.handlers.WorldHandlerTest</code>
+ * @author Nick Mills
+ */
+public class WorldHandlerTest
+{
+	public static void main(String[] args)
+	{
+		backgroundEntitiesMove();
+		backgroundKeepsUp();
+		System.out.println("WorldHandlerTest passed");
+	}
+
+	private static void backgroundEntitiesMove()
+	{
+		WorldHandler wh = new WorldHandler();
+		wh.add(new OverWorld("Overworld", 1));
+		wh.add(new UnderWorld("Underworld", 1));
+
+		/* A Zombie in an open field in the Overworld */
+		World over = wh.get("Overworld");
+		int tileX = 40;
+		int tileY = 40;
+		for(int y = tileY - 10; y <= tileY + 10; y++)
+			for(int x = tileX - 10; x <= tileX + 10; x++)
+				over.replaceTile(x, y, TileType.DIRT);
+		Zombie zombie = new Zombie("George", over, tileX * Tile.TILEWIDTH, tileY * Tile.TILEHEIGHT);
+		int startX = zombie.getX();
+		int startY = zombie.getY();
+
+		/* The Player is in the Underworld, so the Overworld is ticked in the background */
+		World under = wh.get("Underworld");
+		new Player("Player1", under, 100, 100, 5);
+		check(wh.getCurrentWorld() == under, "The Underworld isn't the current World");
+
+		for(int i = 0; i < 60 * WorldHandler.DEFAULT_BACKGROUND_TICK_INTERVAL; i++)
+		{
+			wh.tick();
+			wh.awaitBackground();
+		}
+
+		EntityHandler entities = over.getEntityHandler();
+		check(entities.getLevelCount(EntityStore.SLEEPING) == 0, entities.getLevelCount(EntityStore.SLEEPING) + " Entities sleep in the background");
+		check(entities.getLevelCount(EntityStore.REDUCED) == 1, "The Zombie isn't ticked at the reduced level");
+		check(zombie.getX() != startX || zombie.getY() != startY, "The Zombie didn't move in the background");
+		check(over.getLastTickNanos() > 0, "The Overworld wasn't ticked");
+	}
+
+	private static void backgroundKeepsUp()
+	{
+		final CountDownLatch release = new CountDownLatch(1);
+		final long[] backgroundTicks = new long[1];
+		WorldHandler wh = new WorldHandler();
+		wh.add(new OverWorld("Overworld", 1)
+		{
+			@Override
+			public void tickInBackground(int ticks)
+			{
+				try
+				{
+					release.await();	// The first background tick runs until the game thread lets it go
+				} catch(InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				backgroundTicks[0] += ticks;
+			}
+		});
+		wh.add(new UnderWorld("Underworld", 1));
+		World under = wh.get("Underworld");
+		new Player("Player1", under, 100, 100, 5);
+		check(wh.getCurrentWorld() == under, "The Underworld isn't the current World");
+
+		int interval = WorldHandler.DEFAULT_BACKGROUND_TICK_INTERVAL;
+		int gameTicks = 10 * interval;
+		for(int i = 0; i < gameTicks; i++)
+			wh.tick();
+		check(wh.getSkippedBackgroundTicks() == 9, wh.getSkippedBackgroundTicks() + " background ticks were skipped instead of 9");
+
+		release.countDown();
+		wh.awaitBackground();
+		wh.tick();
+		gameTicks++;
+		wh.awaitBackground();
+		check(backgroundTicks[0] == gameTicks, "The background ticked " + backgroundTicks[0] + " ticks of " + gameTicks);
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}
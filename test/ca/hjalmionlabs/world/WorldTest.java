@@ -0,0 +1,65 @@
+package ca.hjalmionlabs.world;
+
+import ca.hjalmionlabs.entities.EntityStore;
+import ca.hjalmionlabs.entities.EntityType;
+import ca.hjalmionlabs.world.tiles.Tile;
+import ca.hjalmionlabs.world.tiles.TileType;
+
+/**
+ * Checks that Entities are only spawned where they can stand: {@link OverWorld#populateWorld} and 
+ * {@link UnderWorld#populateWorld} put no Zombie on Water, Lava or Stone, and {@link World#findOpenPositionNear} 
+ * moves a box off of solid Tiles.
+ * <br><br>
+ * Usage: <code>java ca.hjalmionlabs.world.WorldTest</code>
+ * @author Nick Mills
+ */
+public class WorldTest
+{
+	public static void main(String[] args)
+	{
+		for(long seed : new long[] {7, 42, 123})
+		{
+			OverWorld over = new OverWorld("Overworld", seed);
+			over.populateWorld(1000);
+			zombiesAreOpen(over, 1000);
+			UnderWorld under = new UnderWorld("Underworld", seed);
+			under.populateWorld(1000);
+			zombiesAreOpen(under, 1000);
+		}
+		openPositionNear();
+		System.out.println("WorldTest passed");
+	}
+
+	private static void zombiesAreOpen(World world, int zombies)
+	{
+		EntityStore store = world.getEntityHandler().getStore();
+		check(store.size() == zombies, store.size() + " Zombies in " + world + " instead of " + zombies);
+		for(int i = 0; i < store.size(); i++)
+			check(world.isOpen(store.getX(i), store.getY(i), store.getWidth(i), store.getHeight(i)),
+					"A Zombie in " + world + " was spawned on a solid Tile at " + store.getX(i) + ", " + store.getY(i));
+	}
+
+	private static void openPositionNear()
+	{
+		World world = new OverWorld("Overworld", 1);
+		for(int tileY = 0; tileY < 7; tileY++)
+			for(int tileX = 0; tileX < 7; tileX++)
+				world.replaceTile(tileX, tileY, tileX == 6 && tileY == 5 ? TileType.GRASS : TileType.LAVA);
+		int width = EntityType.PLAYER.getWidth();
+		int height = EntityType.PLAYER.getHeight();
+		int x = 3 * Tile.TILEWIDTH + 10;
+		int y = 3 * Tile.TILEHEIGHT + 10;
+		check(!world.isOpen(x, y, width, height), "Lava is open");
+
+		int[] position = world.findOpenPositionNear(x, y, width, height);
+		check(world.isOpen(position[0], position[1], width, height), "The position that was found isn't open");
+		check(position[0] == 6 * Tile.TILEWIDTH + 10 && position[1] == 5 * Tile.TILEHEIGHT + 10,
+				"Expected the only Grass Tile nearby, found " + position[0] + ", " + position[1]);
+	}
+
+	private static void check(boolean condition, String message)
+	{
+		if(!condition)
+			throw new AssertionError(message);
+	}
+}